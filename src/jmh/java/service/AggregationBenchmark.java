@@ -0,0 +1,130 @@
+package service;
+
+import model.LogEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import service.stats.BrowserAggregator;
+import service.stats.DistinctCountAggregator;
+import service.stats.HourlyAggregator;
+import service.stats.IpAggregator;
+import service.stats.KeyField;
+import service.stats.LogAggregator;
+import service.stats.MethodAggregator;
+import service.stats.ResponseCodeAggregator;
+import service.stats.ResponseSizeAggregator;
+import service.stats.StatisticsAggregator;
+import service.stats.TopKeyAggregator;
+import service.stats.TrafficAggregator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Каждый отчет StatisticsCalculator отдельно и все вместе на уже разобранных записях.
+// Результат - записи в секунду.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AggregationBenchmark {
+
+    static final int ENTRIES = 100_000;
+
+    private List<LogEntry> entries;
+
+    @Setup
+    public void setUp() {
+        CombinedLogGenerator generator = new CombinedLogGenerator(CombinedLogGenerator.DEFAULT_SEED);
+        LogParser parser = new LogParser();
+        entries = new ArrayList<>(ENTRIES);
+        while (entries.size() < ENTRIES) {
+            LogEntry entry = parser.parseLine(generator.nextLine());
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public ResponseCodeAggregator responseCodes() {
+        return feed(new ResponseCodeAggregator());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public TopKeyAggregator topIpsExact() {
+        return feed(TopKeyAggregator.exact(KeyField.IP));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public IpAggregator topIpsPacked() {
+        return feed(new IpAggregator());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public TopKeyAggregator topIpsSketch() {
+        return feed(TopKeyAggregator.approximate(KeyField.IP, 1000));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public TrafficAggregator traffic() {
+        return feed(new TrafficAggregator());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public MethodAggregator methods() {
+        return feed(new MethodAggregator());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public HourlyAggregator hourly() {
+        return feed(new HourlyAggregator());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public BrowserAggregator browsers() {
+        return feed(new BrowserAggregator());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public DistinctCountAggregator distinctIps() {
+        return feed(new DistinctCountAggregator(KeyField.IP));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public ResponseSizeAggregator responseSizes() {
+        return feed(new ResponseSizeAggregator());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES)
+    public StatisticsAggregator all() {
+        return feed(new StatisticsAggregator());
+    }
+
+    private <A extends LogAggregator<A>> A feed(A aggregator) {
+        for (LogEntry entry : entries) {
+            aggregator.accept(entry);
+        }
+        return aggregator;
+    }
+}
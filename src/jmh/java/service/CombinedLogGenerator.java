@@ -0,0 +1,206 @@
+package service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Random;
+
+// Синтетический access-лог в combined-формате для воспроизводимых замеров.
+// Распределения полей похожи на настоящий трафик: немногие клиенты и страницы дают
+// большую часть запросов, время идет вперед с несколькими запросами в секунду,
+// размеры ответов логнормальные, среди user agent есть мобильные браузеры и боты,
+// около 0.1% строк испорчены. Одинаковый seed дает одинаковый лог.
+public final class CombinedLogGenerator {
+
+    public static final long DEFAULT_SEED = 42;
+
+    private static final int CLIENTS = 50_000;
+    private static final int PAGES = 5_000;
+    private static final DateTimeFormatter DATE_FORMATTER =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss", Locale.ENGLISH);
+
+    private static final String[] METHODS = {"GET", "POST", "HEAD", "PUT", "DELETE", "OPTIONS"};
+    private static final int[] METHOD_WEIGHTS = {82, 11, 4, 1, 1, 1};
+
+    private static final int[] STATUSES = {200, 304, 301, 302, 404, 403, 500, 502, 503};
+    private static final int[] STATUS_WEIGHTS = {840, 50, 30, 20, 40, 5, 10, 3, 2};
+
+    private static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/116.0.0.0 Safari/537.36",
+            "Mozilla/5.0 (Linux; Android 13; SM-A536B) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/116.0.5845.163 Mobile Safari/537.36",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 16_6 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/16.6 Mobile/15E148 Safari/604.1",
+            "Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/117.0",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/116.0.0.0 Safari/537.36 Edg/116.0.1938.69",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/115.0.0.0 Safari/537.36 OPR/101.0.0.0",
+            "Mozilla/5.0 (compatible; YandexBot/3.0; +http://yandex.com/bots)",
+            "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+            "curl/7.88.1",
+            "python-requests/2.31.0",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/16.5 Safari/605.1.15"
+    };
+    private static final int[] USER_AGENT_WEIGHTS = {38, 20, 12, 8, 6, 2, 3, 4, 2, 1, 4};
+
+    private static final String[] SEARCH_WORDS = {"news", "weather", "java", "nginx", "football", "recipes", "music", "travel"};
+
+    private final Random random;
+    private final String[] ips = new String[CLIENTS];
+    private final String[] pages = new String[PAGES];
+    private LocalDateTime time = LocalDateTime.of(2022, 9, 25, 0, 0, 0);
+    private String timestamp;
+
+    public CombinedLogGenerator(long seed) {
+        this.random = new Random(seed);
+        for (int i = 0; i < CLIENTS; i++) {
+            ips[i] = random.nextInt(10) == 0
+                    ? "10.0." + (i >> 8 & 0xFF) + "." + (i & 0xFF)
+                    : (1 + random.nextInt(223)) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + (1 + random.nextInt(254));
+        }
+        for (int i = 0; i < PAGES; i++) {
+            pages[i] = page(i);
+        }
+        this.timestamp = formatTime();
+    }
+
+    public String nextLine() {
+        StringBuilder line = new StringBuilder(320);
+        appendLine(line);
+        return line.toString();
+    }
+
+    public void appendLine(StringBuilder line) {
+        // В среднем несколько запросов в секунду
+        if (random.nextInt(10) >= 7) {
+            time = time.plusSeconds(1 + random.nextInt(3));
+            timestamp = formatTime();
+        }
+        if (random.nextInt(1000) == 0) {
+            line.append("garbage ").append(random.nextInt()).append(" [").append(timestamp).append("]");
+            return;
+        }
+
+        int status = STATUSES[weighted(STATUS_WEIGHTS)];
+        long bytes = status == 304 || status == 301 || status == 302
+                ? random.nextInt(200)
+                : Math.min(50_000_000L, (long) Math.exp(8 + 1.5 * random.nextGaussian()));
+
+        line.append(ips[skewed(CLIENTS)]).append(" - - [").append(timestamp).append("] \"")
+                .append(METHODS[weighted(METHOD_WEIGHTS)]).append(' ').append(pages[skewed(PAGES)])
+                .append(" HTTP/1.1\" ").append(status).append(' ').append(bytes).append(" \"");
+        int referer = random.nextInt(100);
+        if (referer < 45) {
+            line.append('-');
+        } else if (referer < 85) {
+            line.append("https://example.com").append(pages[skewed(PAGES)]);
+        } else {
+            line.append("https://www.google.com/search?q=").append(SEARCH_WORDS[random.nextInt(SEARCH_WORDS.length)]);
+        }
+        line.append("\" \"").append(USER_AGENTS[weighted(USER_AGENT_WEIGHTS)]).append('"');
+    }
+
+    // Файл заданного размера; одинаковые размер и seed дают одинаковый файл
+    public static void write(Path file, long bytes, long seed) throws IOException {
+        CombinedLogGenerator generator = new CombinedLogGenerator(seed);
+        StringBuilder line = new StringBuilder(512);
+        long written = 0;
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+            while (written < bytes) {
+                line.setLength(0);
+                generator.appendLine(line);
+                line.append('\n');
+                out.append(line);
+                written += line.length();
+            }
+        }
+    }
+
+    // Корпус во временном каталоге: создается один раз и переиспользуется между запусками
+    public static Path corpus(String size) throws IOException {
+        long bytes = parseSize(size);
+        Path file = Paths.get(System.getProperty("java.io.tmpdir"),
+                "log-analyzer-corpus-" + size + "-" + DEFAULT_SEED + ".log");
+        if (!Files.exists(file) || Files.size(file) < bytes) {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            write(temp, bytes, DEFAULT_SEED);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return file;
+    }
+
+    // "1MB", "100MB", "1GB" или число байт
+    public static long parseSize(String size) {
+        String value = size.trim().toUpperCase(Locale.ROOT);
+        long unit = 1;
+        if (value.endsWith("GB")) {
+            unit = 1L << 30;
+        } else if (value.endsWith("MB")) {
+            unit = 1L << 20;
+        } else if (value.endsWith("KB")) {
+            unit = 1L << 10;
+        }
+        if (unit > 1) {
+            value = value.substring(0, value.length() - 2);
+        }
+        return Long.parseLong(value) * unit;
+    }
+
+    // java -cp target/benchmarks.jar service.CombinedLogGenerator файл размер [seed]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Использование: CombinedLogGenerator <файл> <размер, например 100MB> [seed]");
+            return;
+        }
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        write(Paths.get(args[0]), parseSize(args[1]), seed);
+        System.out.println("✅ Записан " + args[0]);
+    }
+
+    private String formatTime() {
+        return DATE_FORMATTER.format(time) + " +0300";
+    }
+
+    private String page(int i) {
+        switch (i % 6) {
+            case 0:
+                return i == 0 ? "/" : "/news/" + i + ".html";
+            case 1:
+                return "/static/js/app." + Integer.toHexString(i * 7919) + ".js";
+            case 2:
+                return "/api/v1/items/" + i;
+            case 3:
+                return "/search?q=" + SEARCH_WORDS[i % SEARCH_WORDS.length] + "&page=" + (i % 20);
+            case 4:
+                return "/engine.php?rss=1&json=1&p=" + i + "&lg=1";
+            default:
+                return "/images/photo_" + i + ".jpg";
+        }
+    }
+
+    // Номер от 0 до n с сильным перекосом к маленьким, как у популярных клиентов и страниц
+    private int skewed(int n) {
+        double u = random.nextDouble();
+        return (int) (n * u * u * u);
+    }
+
+    private int weighted(int[] weights) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int value = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            value -= weights[i];
+            if (value < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+}
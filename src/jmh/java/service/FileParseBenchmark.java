@@ -0,0 +1,80 @@
+package service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import service.stats.StatisticsAggregator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Разбор файла целиком со сбором всей статистики. Основной результат - файлы в секунду,
+// счетчики lines и bytes показывают строки и байты в секунду.
+// Корпуса создаются CombinedLogGenerator во временном каталоге при первом запуске.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FileParseBenchmark {
+
+    @Param({"1MB", "100MB", "1GB"})
+    public String size;
+
+    private Path corpus;
+    private long corpusBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        corpus = CombinedLogGenerator.corpus(size);
+        corpusBytes = Files.size(corpus);
+    }
+
+    // Отображение в память и токенайзер в одном потоке
+    @Benchmark
+    public StatisticsAggregator mapped(ThroughputCounters counters) throws IOException {
+        StatisticsAggregator stats = new StatisticsAggregator();
+        LogParser parser = new LogParser();
+        parser.parse(corpus, stats);
+        count(counters, parser.getLinesRead());
+        return stats;
+    }
+
+    // Построчное чтение через BufferedReader, как было до отображения в память
+    @Benchmark
+    public StatisticsAggregator bufferedReader(ThroughputCounters counters) throws IOException {
+        StatisticsAggregator stats = new StatisticsAggregator();
+        LogParser parser = new LogParser();
+        try (BufferedReader reader = Files.newBufferedReader(corpus, StandardCharsets.UTF_8)) {
+            parser.parse(reader, stats);
+        }
+        count(counters, parser.getLinesRead());
+        return stats;
+    }
+
+    // Все ядра: диапазоны файла разбираются параллельно и сливаются
+    @Benchmark
+    public StatisticsAggregator parallel(ThroughputCounters counters) throws IOException {
+        StatisticsAggregator stats = new ParallelLogParser(Runtime.getRuntime().availableProcessors())
+                .parse(corpus, StatisticsAggregator::new);
+        count(counters, stats.getTotalRequests());
+        return stats;
+    }
+
+    private void count(ThroughputCounters counters, long lines) {
+        counters.lines += lines;
+        counters.bytes += corpusBytes;
+    }
+}
@@ -0,0 +1,94 @@
+package service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Разбор одной строки: токенайзер против регулярного выражения. Результат - строки в секунду.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseLineBenchmark {
+
+    static final int LINES = 10_000;
+
+    private String[] lines;
+    private ByteSlice[] slices;
+    private long totalBytes;
+    private LogParser parser;
+    private LineTokenizer tokenizer;
+
+    @Setup
+    public void setUp() {
+        CombinedLogGenerator generator = new CombinedLogGenerator(CombinedLogGenerator.DEFAULT_SEED);
+        lines = new String[LINES];
+        slices = new ByteSlice[LINES];
+        for (int i = 0; i < LINES; i++) {
+            lines[i] = generator.nextLine();
+            byte[] bytes = lines[i].getBytes(StandardCharsets.UTF_8);
+            slices[i] = new ByteSlice(bytes, 0, bytes.length);
+            totalBytes += bytes.length + 1;
+        }
+        parser = new LogParser();
+        tokenizer = new LineTokenizer();
+    }
+
+    // Полный разбор в LogEntry быстрым путем
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void tokenizer(Blackhole blackhole, ThroughputCounters counters) {
+        for (String line : lines) {
+            blackhole.consume(parser.parseLine(line));
+        }
+        count(counters);
+    }
+
+    // Полный разбор в LogEntry регулярным выражением
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void regex(Blackhole blackhole, ThroughputCounters counters) {
+        for (String line : lines) {
+            blackhole.consume(parser.parseLineStrict(line, 0));
+        }
+        count(counters);
+    }
+
+    // Только поиск границ полей, без создания строк
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void tokenizeOnly(Blackhole blackhole, ThroughputCounters counters) {
+        for (String line : lines) {
+            blackhole.consume(tokenizer.tokenize(line));
+        }
+        count(counters);
+    }
+
+    // Поиск границ полей прямо в байтах, как при чтении через MappedLogReader
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void tokenizeBytes(Blackhole blackhole, ThroughputCounters counters) {
+        for (ByteSlice slice : slices) {
+            blackhole.consume(tokenizer.tokenize(slice));
+        }
+        count(counters);
+    }
+
+    private void count(ThroughputCounters counters) {
+        counters.lines += LINES;
+        counters.bytes += totalBytes;
+    }
+}
@@ -0,0 +1,77 @@
+package service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Разбор времени строки: TimestampDecoder против DateTimeFormatter. Результат - значения в секунду.
+// В порядке лога соседние строки часто приходятся на одну секунду и попадают в кэш декодера,
+// в перемешанном порядке кэш почти не помогает.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TimestampBenchmark {
+
+    static final int VALUES = 10_000;
+
+    private String[] ordered;
+    private String[] shuffled;
+    private TimestampDecoder decoder;
+
+    @Setup
+    public void setUp() {
+        CombinedLogGenerator generator = new CombinedLogGenerator(CombinedLogGenerator.DEFAULT_SEED);
+        LineTokenizer tokenizer = new LineTokenizer();
+        List<String> values = new ArrayList<>();
+        while (values.size() < VALUES) {
+            if (tokenizer.tokenize(generator.nextLine())) {
+                values.add(tokenizer.dateTime());
+            }
+        }
+        ordered = values.toArray(new String[0]);
+        Collections.shuffle(values, new Random(CombinedLogGenerator.DEFAULT_SEED));
+        shuffled = values.toArray(new String[0]);
+        decoder = new TimestampDecoder();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void decoderInLogOrder(Blackhole blackhole) {
+        for (String value : ordered) {
+            blackhole.consume(decoder.decode(value));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void decoderShuffled(Blackhole blackhole) {
+        for (String value : shuffled) {
+            blackhole.consume(decoder.decode(value));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void dateTimeFormatter(Blackhole blackhole) {
+        for (String value : ordered) {
+            blackhole.consume(LogParser.parseTimestampFallback(value));
+        }
+    }
+}
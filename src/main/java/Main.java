@@ -1,16 +1,77 @@
+import service.BatchLogParser;
+import service.ConsoleDiagnostics;
+import service.ErrorBudget;
+import service.ErrorBudgetExceededException;
+import service.FailureReason;
+import service.FieldDictionaries;
+import service.FileSummary;
+import service.IncrementalParser;
+import service.LogFollower;
 import service.LogParser;
+import service.ParallelLogParser;
+import service.ParseListener;
+import service.PipelineLogParser;
+import service.QuarantineWriter;
 import service.StatisticsCalculator;
+import service.TimestampDecoder;
+import service.format.LogFormat;
+import service.index.RangeSummary;
+import service.index.TimeIndex;
+import service.query.LogQuery;
+import service.rate.RateAlert;
+import service.rate.RateLimits;
+import service.rate.RateTracker;
+import service.metrics.MetricsReporter;
+import service.metrics.ParseMetrics;
+import service.store.ColumnarFileReader;
+import service.store.ColumnarFileWriter;
+import service.stats.GroupedAggregator;
+import service.stats.LogAggregator;
+import service.stats.PairAggregator;
+import service.stats.RollingAggregator;
+import service.stats.StatisticsAggregator;
+import service.stats.StatisticsReport;
+import service.stats.TrafficAggregator;
 import model.LogEntry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
 
+    private static final int FOLLOW_WINDOW_MINUTES = 5;
+    private static final long FOLLOW_POLL_MILLIS = 200;
+    private static final String COLUMNAR_EXTENSION = ".lacf";
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final int MAX_QUERY_GROUPS = 10000;
+    private static final int SHOWN_QUERY_GROUPS = 20;
+    private static final int FORMAT_SAMPLE_LINES = 1000;
+    private static final int SHOWN_RATE_ALERTS = 20;
+    private static final int SHOWN_RATE_CLIENTS = 5;
+
     public static void main(String[] args) {
         System.out.println("🚀 Запуск анализатора лог-файлов");
         System.out.println("=================================");
 
         Scanner scanner = new Scanner(System.in);
+        MetricsReporter metricsReporter = null;
+        QuarantineWriter quarantine = null;
+        ConsoleDiagnostics console = null;
 
         try {
             System.out.print("Введите путь к лог-файлу: ");
@@ -21,29 +82,166 @@ public class Main {
                 return;
             }
 
+            // Парсим файл с прогрессом; -Danalyzer.failureSample=N выводит каждую N-ю ошибочную строку
+            int failureSample = Integer.getInteger("analyzer.failureSample", 0);
+            console = failureSample > 0
+                    ? new ConsoleDiagnostics(ConsoleDiagnostics.Level.SAMPLED, failureSample)
+                    : new ConsoleDiagnostics(ConsoleDiagnostics.Level.PROGRESS, 1);
+            ParseListener diagnostics = console;
+            // -Danalyzer.quarantine=файл сохраняет отвергнутые строки с номером, смещением и причиной
+            String quarantineFile = System.getProperty("analyzer.quarantine");
+            if (quarantineFile != null) {
+                quarantine = new QuarantineWriter(Paths.get(quarantineFile), diagnostics);
+                diagnostics = quarantine;
+            }
+            // -Danalyzer.errorBudget=5%|1000|5%,1000 прерывает разбор, если ошибок слишком много
+            String errorBudget = System.getProperty("analyzer.errorBudget");
+            if (errorBudget != null) {
+                diagnostics = ErrorBudget.parse(errorBudget, diagnostics);
+            }
+            // -Danalyzer.topIpSketch=N считает топ IP приближенно в N счетчиках
+            int topIpSketch = Integer.getInteger("analyzer.topIpSketch", 0);
+            // -Danalyzer.metrics=файл.json|файл.prom включает метрики разбора: JMX и выгрузку в файл
+            // раз в -Danalyzer.metricsPeriod=N секунд (по умолчанию 10)
+            String metricsFile = System.getProperty("analyzer.metrics");
+            if (metricsFile != null) {
+                metricsReporter = startMetrics(Paths.get(metricsFile));
+            }
+
+            // -Danalyzer.format=nginx:<log_format>|apache:<LogFormat>|combined|nginx-timed|...|auto -
+            // формат строк, если он не combined; auto выбирает известный формат по первым строкам
+            String formatSpec = System.getProperty("analyzer.format");
+            LogFormat format = formatSpec == null ? null : resolveFormat(filePath, formatSpec);
+
+            // -Danalyzer.rate[=10s=100,1m=300 errors=50% prefix=24] следит за частотой запросов каждого
+            // клиента в скользящих окнах и помечает превысивших пороги (синтаксис см. RateLimits.parse)
+            String rateSpec = System.getProperty("analyzer.rate");
+            RateLimits rateLimits = rateSpec == null ? null
+                    : rateSpec.isEmpty() || rateSpec.equals("true") ? RateLimits.DEFAULT : RateLimits.parse(rateSpec);
+
+            // -Danalyzer.follow=end|start следит за дописываемым файлом вместо однократного разбора
+            String follow = System.getProperty("analyzer.follow");
+            if (follow != null) {
+                followFile(Paths.get(filePath), follow.equals("start"), diagnostics, topIpSketch, format, rateLimits);
+                return;
+            }
+
+            // -Danalyzer.range=2022-09-25T06:30/2022-09-25T06:45 - статистика за интервал по индексу
+            String range = System.getProperty("analyzer.range");
+            if (range != null) {
+                if (rateLimits != null) {
+                    throw new IllegalArgumentException("-Danalyzer.rate не работает вместе с -Danalyzer.range");
+                }
+                queryRange(Paths.get(filePath), range, scanner, topIpSketch);
+                return;
+            }
+
             System.out.println("\n⏳ Начинаем парсинг файла...");
             System.out.println("Файл большой (36.7 МБ), это займет время...");
             System.out.println("Для отмены нажми Ctrl+C");
 
             long startTime = System.currentTimeMillis();
 
-            // Парсим файл с прогрессом
-            LogParser parser = new LogParser();
-            List<LogEntry> logEntries = parser.parseLogFile(filePath);
+            // Записи не копятся в памяти: статистика считается прямо во время чтения.
+            // -Danalyzer.threads=N задает число потоков, 1 - последовательный разбор
+            int threads = Integer.getInteger("analyzer.threads", Runtime.getRuntime().availableProcessors());
+            // -Danalyzer.checkpoint[=файл] продолжает разбор с прошлой контрольной точки
+            // (по умолчанию <лог>.checkpoint рядом с логом)
+            String checkpoint = System.getProperty("analyzer.checkpoint");
+            // -Danalyzer.export=файл.lacf заодно сохраняет записи в колоночный файл;
+            // такой файл можно потом передать вместо лога, и текст разбирать не придется
+            String export = System.getProperty("analyzer.export");
+            // -Danalyzer.query="status=5xx path=/engine.php* client=mobile time=06:00-07:00 by=path"
+            // оставляет только подходящие записи (синтаксис см. LogQuery.parse)
+            String queryText = System.getProperty("analyzer.query");
+            if (rateLimits != null && checkpoint != null) {
+                throw new IllegalArgumentException(
+                        "-Danalyzer.rate не работает вместе с -Danalyzer.checkpoint: окна не сохраняются в контрольной точке");
+            }
+            List<RateAlert> rateAlerts = new ArrayList<>();
+            RateTracker rateTracker = rateLimits == null ? null : new RateTracker(rateLimits, alert -> {
+                if (rateAlerts.size() < SHOWN_RATE_ALERTS) {
+                    rateAlerts.add(alert);
+                }
+            });
+            StatisticsAggregator stats;
+            if (queryText != null || format != null) {
+                // Настраиваемый формат идет тем же путем, что и запрос, но без отбора записей
+                stats = runQuery(filePath, queryText == null ? null : LogQuery.parse(queryText), format,
+                        threads, diagnostics, topIpSketch, rateTracker);
+            } else if (rateTracker != null) {
+                // Окнам нужны записи по порядку времени, поэтому любой вход разбирается в один поток
+                stats = new StatisticsAggregator(topIpSketch);
+                Consumer<LogEntry> consumer = stats.andThen(rateTracker);
+                if (export == null) {
+                    parseInOrder(filePath, null, null, diagnostics, consumer);
+                } else {
+                    try (ColumnarFileWriter writer = new ColumnarFileWriter(Paths.get(export))) {
+                        parseInOrder(filePath, null, null, diagnostics, consumer.andThen(writer));
+                    }
+                    System.out.printf("💾 Записи сохранены в %s%n", export);
+                }
+            } else if (BatchLogParser.isBatch(filePath)) {
+                // Каталог или шаблон вроде logs/access.log* - все файлы сразу, .gz распаковываются на лету
+                stats = parseBatch(filePath, threads, diagnostics, topIpSketch);
+            } else if (filePath.endsWith(GZIP_EXTENSION) || Boolean.getBoolean("analyzer.pipeline")) {
+                // Конвейер: чтение и распаковка .gz идут параллельно с разбором;
+                // -Danalyzer.pipeline=true включает его и для обычного файла
+                stats = new PipelineLogParser(threads, diagnostics)
+                        .parse(Paths.get(filePath), () -> new StatisticsAggregator(topIpSketch));
+            } else if (filePath.endsWith(COLUMNAR_EXTENSION)) {
+                stats = new StatisticsAggregator(topIpSketch);
+                try (ColumnarFileReader reader = new ColumnarFileReader(Paths.get(filePath))) {
+                    reader.scan(ColumnarFileReader.ALL_COLUMNS, stats);
+                }
+            } else if (export != null) {
+                // Запись в файл последовательная, поэтому и разбор в один поток
+                stats = new StatisticsAggregator(topIpSketch);
+                try (ColumnarFileWriter writer = new ColumnarFileWriter(Paths.get(export))) {
+                    new LogParser(diagnostics).parse(Paths.get(filePath), stats.andThen(writer));
+                }
+                System.out.printf("💾 Записи сохранены в %s%n", export);
+            } else if (checkpoint != null) {
+                Path log = Paths.get(filePath);
+                Path checkpointFile = checkpoint.isEmpty() || checkpoint.equals("true")
+                        ? log.resolveSibling(log.getFileName() + ".checkpoint")
+                        : Paths.get(checkpoint);
+                IncrementalParser parser = new IncrementalParser(threads, diagnostics);
+                stats = parser.parse(log, checkpointFile, () -> new StatisticsAggregator(topIpSketch));
+                if (parser.getResumedFrom() > 0) {
+                    System.out.printf("♻️ Продолжено с байта %,d по контрольной точке %s%n",
+                            parser.getResumedFrom(), checkpointFile);
+                }
+            } else if (threads > 1) {
+                stats = new ParallelLogParser(threads, diagnostics)
+                        .parse(Paths.get(filePath), () -> new StatisticsAggregator(topIpSketch));
+            } else {
+                stats = new StatisticsAggregator(topIpSketch);
+                new LogParser(diagnostics).parse(Paths.get(filePath), stats);
+            }
 
             long parseTime = System.currentTimeMillis() - startTime;
+            if (quarantine != null || errorBudget != null) {
+                showFailureReasons(console, quarantine);
+            }
 
-            if (logEntries == null || logEntries.isEmpty()) {
+            if (stats.getTotalRequests() == 0) {
                 System.out.println("❌ Не удалось распарсить файл");
                 return;
             }
 
             System.out.printf("✅ Парсинг завершен за %,d мс%n", parseTime);
-            System.out.printf("📊 Найдено записей: %,d%n", logEntries.size());
+            System.out.printf("📊 Найдено записей: %,d%n", stats.getTotalRequests());
+
+            if (rateTracker != null) {
+                showRateSummary(rateTracker, rateAlerts);
+            }
+
+            StatisticsReport report = stats.report();
 
             // Быстрая статистика без детального анализа
             System.out.println("\n📈 Базовая статистика:");
-            showQuickStats(logEntries);
+            showQuickStats(report);
 
             // Предлагаем полный анализ
             System.out.print("\n🔍 Выполнить полный анализ статистики? (y/n): ");
@@ -52,33 +250,352 @@ public class Main {
             if (choice.equals("y") || choice.equals("yes")) {
                 System.out.println("\n⏳ Выполняем полный анализ...");
                 StatisticsCalculator calculator = new StatisticsCalculator();
-                calculator.calculateStatistics(logEntries);
+                calculator.printReport(report);
             }
 
+        } catch (ErrorBudgetExceededException e) {
+            System.out.printf("%n🛑 Разбор прерван: %s. Возможно, файл в другом формате (-Danalyzer.format)%n",
+                    e.getMessage());
+            showFailureReasons(console, quarantine);
         } catch (Exception e) {
             System.err.println("💥 Ошибка: " + e.getMessage());
         } finally {
+            if (quarantine != null) {
+                try {
+                    quarantine.close();
+                } catch (IOException e) {
+                    System.err.println("💥 Не удалось записать карантин: " + e.getMessage());
+                }
+            }
+            if (metricsReporter != null) {
+                try {
+                    metricsReporter.close();
+                } catch (IOException e) {
+                    System.err.println("💥 Не удалось записать метрики: " + e.getMessage());
+                }
+            }
             scanner.close();
             System.out.println("\n👋 Работа завершена");
         }
     }
 
-    // Быстрая статистика без Stream API
-    private static void showQuickStats(List<LogEntry> entries) {
-        int total = entries.size();
-        System.out.printf("Общее количество запросов: %,d%n", total);
+    private static void showFailureReasons(ConsoleDiagnostics console, QuarantineWriter quarantine) {
+        StringBuilder reasons = new StringBuilder();
+        for (FailureReason reason : FailureReason.values()) {
+            long count = console.getFailureCount(reason);
+            if (count > 0) {
+                reasons.append(reasons.length() == 0 ? "" : ", ").append(reason).append(": ").append(count);
+            }
+        }
+        if (reasons.length() > 0) {
+            System.out.printf("❌ Ошибки по причинам: %s%n", reasons);
+        }
+        if (quarantine != null) {
+            System.out.printf("🗄️ В карантин записано строк: %,d%n", quarantine.getRecords());
+        }
+    }
+
+    private static MetricsReporter startMetrics(Path file) {
+        ParseMetrics metrics = ParseMetrics.install();
+        metrics.registerMBean();
+        MetricsReporter reporter = new MetricsReporter(metrics, file, MetricsReporter.Format.forFile(file));
+        reporter.start(Long.getLong("analyzer.metricsPeriod", 10));
+        System.out.printf("📏 Метрики разбора: JMX %s, файл %s%n", ParseMetrics.OBJECT_NAME, file);
+        return reporter;
+    }
 
-        // Простой подсчет кодов ответов
-        int success = 0, errors = 0;
-        for (LogEntry entry : entries) {
-            int code = entry.getResponseCode();
-            if (code >= 200 && code < 300) success++;
-            if (code >= 400) errors++;
+    private static StatisticsAggregator parseBatch(String pattern, int threads, ParseListener diagnostics,
+                                                   int topIpSketch) throws IOException {
+        List<Path> files = BatchLogParser.resolve(pattern);
+        System.out.printf("📚 Файлов для разбора: %,d%n", files.size());
+        BatchLogParser.Result<StatisticsAggregator> result = new BatchLogParser(threads, diagnostics)
+                .parse(files, () -> new StatisticsAggregator(topIpSketch), Main::showFileSummary);
+        if (result.getFailedFiles() > 0) {
+            System.out.printf("💥 Не дочитано файлов: %,d из %,d%n", result.getFailedFiles(), files.size());
+        }
+        return result.getAggregate();
+    }
+
+    // Запрос по логу, каталогу или колоночному файлу; контрольная точка и экспорт не используются,
+    // чтобы отобранная часть не смешалась с полной статистикой
+    // query == null - все записи; format == null - combined-формат; rateTracker == null - без учета частоты
+    private static StatisticsAggregator runQuery(String filePath, LogQuery query, LogFormat format, int threads,
+                                                 ParseListener diagnostics, int topIpSketch,
+                                                 RateTracker rateTracker) throws IOException {
+        if (query != null) {
+            System.out.printf("🔎 Запрос: %s%n", query);
+        }
+        if (query == null || query.getGroupBy() == null) {
+            return parseQuery(filePath, query, format, threads, diagnostics, rateTracker,
+                    () -> new StatisticsAggregator(topIpSketch));
+        }
+        PairAggregator<StatisticsAggregator, GroupedAggregator<TrafficAggregator>> result =
+                parseQuery(filePath, query, format, threads, diagnostics, rateTracker, () -> new PairAggregator<>(
+                        new StatisticsAggregator(topIpSketch),
+                        new GroupedAggregator<>(query.getGroupBy(), MAX_QUERY_GROUPS, TrafficAggregator::new)));
+        showGroups(result.getSecond(), result.getFirst().getTotalRequests());
+        return result.getFirst();
+    }
+
+    private static <A extends LogAggregator<A>> A parseQuery(String filePath, LogQuery query, LogFormat format,
+                                                             int threads, ParseListener diagnostics,
+                                                             RateTracker rateTracker,
+                                                             Supplier<A> factory) throws IOException {
+        if (rateTracker != null) {
+            A result = factory.get();
+            parseInOrder(filePath, query, format, diagnostics, result.andThen(rateTracker));
+            return result;
+        }
+        if (BatchLogParser.isBatch(filePath)) {
+            return new BatchLogParser(threads, diagnostics, query, format)
+                    .parse(BatchLogParser.resolve(filePath), factory, Main::showFileSummary).getAggregate();
+        }
+        if (filePath.endsWith(COLUMNAR_EXTENSION)) {
+            A result = factory.get();
+            try (ColumnarFileReader reader = new ColumnarFileReader(Paths.get(filePath))) {
+                reader.scan(ColumnarFileReader.ALL_COLUMNS, entry -> {
+                    if (query == null || query.matches(entry)) {
+                        result.accept(entry);
+                    }
+                });
+            }
+            return result;
+        }
+        if (filePath.endsWith(GZIP_EXTENSION) || Boolean.getBoolean("analyzer.pipeline")) {
+            return new PipelineLogParser(threads, diagnostics, query, format).parse(Paths.get(filePath), factory);
+        }
+        return new ParallelLogParser(threads, diagnostics, query, format).parse(Paths.get(filePath), factory);
+    }
+
+    // Все записи по порядку в одном потоке - для RateTracker, которому нужен порядок времени.
+    // Файлы каталога идут по времени изменения: ротированные части лога старше текущей
+    private static void parseInOrder(String filePath, LogQuery query, LogFormat format, ParseListener diagnostics,
+                                     Consumer<LogEntry> consumer) throws IOException {
+        List<Path> files = List.of(Paths.get(filePath));
+        if (BatchLogParser.isBatch(filePath)) {
+            files = BatchLogParser.resolve(filePath).stream()
+                    .sorted(Comparator.comparing(file -> file.toFile().lastModified()))
+                    .collect(Collectors.toList());
+            System.out.printf("📚 Файлов для разбора: %,d%n", files.size());
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(COLUMNAR_EXTENSION)) {
+                try (ColumnarFileReader reader = new ColumnarFileReader(file)) {
+                    reader.scan(ColumnarFileReader.ALL_COLUMNS, entry -> {
+                        if (query == null || query.matches(entry)) {
+                            consumer.accept(entry);
+                        }
+                    });
+                }
+                continue;
+            }
+            LogParser parser = new LogParser(diagnostics, FieldDictionaries.DEFAULT, query, format);
+            if (name.endsWith(GZIP_EXTENSION)) {
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+                    parser.parse(in, consumer);
+                }
+            } else {
+                parser.parse(file, consumer);
+            }
         }
+    }
+
+    // null для combined: его разбирают обычные пути со всеми режимами (контрольная точка, экспорт)
+    private static LogFormat resolveFormat(String filePath, String spec) throws IOException {
+        LogFormat format;
+        if (spec.equals("auto")) {
+            List<Path> files = BatchLogParser.isBatch(filePath)
+                    ? BatchLogParser.resolve(filePath) : List.of(Paths.get(filePath));
+            format = files.isEmpty() || filePath.endsWith(COLUMNAR_EXTENSION)
+                    ? null : LogFormat.detect(files.get(0), FORMAT_SAMPLE_LINES);
+            System.out.printf("🧩 Формат по первым строкам: %s%n", format == null ? "не распознан, combined" : format);
+        } else {
+            format = LogFormat.parse(spec);
+            System.out.printf("🧩 Формат: %s%n", format.getDefinition());
+        }
+        return format == null || format.isCombined() ? null : format;
+    }
+
+    private static void showGroups(GroupedAggregator<TrafficAggregator> groups, long total) {
+        System.out.printf("%n🔎 Группы по %s: %,d, первые %d по числу запросов:%n",
+                groups.getKey(), groups.size(), SHOWN_QUERY_GROUPS);
+        Comparator<TrafficAggregator> byCount = Comparator.comparingLong(TrafficAggregator::getCount).reversed();
+        groups.top(byCount, SHOWN_QUERY_GROUPS).forEach((group, traffic) ->
+                System.out.printf("  %s: %,d запросов (%.1f%%), %,d байт%n", group, traffic.getCount(),
+                        traffic.getCount() * 100.0 / total, traffic.getTotalBytes()));
+    }
+
+    private static void showFileSummary(FileSummary file) {
+        if (file.isFailed()) {
+            System.out.printf("  💥 %s: %s (до ошибки %,d записей)%n",
+                    file.getPath(), file.getError(), file.getEntriesParsed());
+            return;
+        }
+        // Больше 1% нераспознанных строк - повод посмотреть на файл
+        System.out.printf("  %s %s: %,d строк, %,d записей, не распознано %,d (%.1f%%), %,d мс, %,.0f строк/с%n",
+                file.getFailureRatio() > 0.01 ? "⚠️" : "📄", file.getPath(), file.getLinesRead(),
+                file.getEntriesParsed(), file.getFailures(), file.getFailureRatio() * 100,
+                file.getNanos() / 1_000_000, file.getLinesPerSecond());
+    }
+
+    // Интервал по индексу <лог>.tidx: индекс строится или дополняется новыми строками,
+    // счетчики берутся из него, а полный отчет разбирает только нужный участок лога
+    private static void queryRange(Path log, String range, Scanner scanner, int topIpSketch) throws IOException {
+        String[] bounds = range.split("/");
+        if (bounds.length != 2) {
+            System.out.println("❌ Интервал задается как начало/конец, например 2022-09-25T06:30/2022-09-25T06:45");
+            return;
+        }
+        long from = LocalDateTime.parse(bounds[0]).toEpochSecond(ZoneOffset.UTC);
+        long to = LocalDateTime.parse(bounds[1]).toEpochSecond(ZoneOffset.UTC);
+
+        long startTime = System.currentTimeMillis();
+        Path indexFile = log.resolveSibling(log.getFileName() + ".tidx");
+        TimeIndex previous = TimeIndex.load(indexFile);
+        TimeIndex index = TimeIndex.update(log, previous);
+        if (previous == null || index.getIndexedLength() != previous.getIndexedLength()) {
+            index.save(indexFile);
+            System.out.printf("🗂 Индекс %s обновлен: %,d минут, %,d байт лога%n",
+                    indexFile, index.size(), index.getIndexedLength());
+        }
+
+        RangeSummary summary = index.summarize(log, from, to);
+        System.out.printf("%n📈 Интервал %s - %s (%,d мс):%n", bounds[0], bounds[1],
+                System.currentTimeMillis() - startTime);
+        System.out.printf("Запросов: %,d%n", summary.getRequests());
+        System.out.printf("Трафик: %,d байт%n", summary.getBytes());
+        if (summary.getRequests() > 0) {
+            System.out.printf("Успешные запросы: %,d (%.1f%%)%n", summary.getStatusClassCount(2),
+                    summary.getStatusClassCount(2) * 100.0 / summary.getRequests());
+            System.out.printf("Ошибки: %,d (%.1f%%)%n", summary.countStatusClasses(4, 10),
+                    summary.countStatusClasses(4, 10) * 100.0 / summary.getRequests());
+        }
+
+        System.out.print("\n🔍 Выполнить полный анализ интервала? (y/n): ");
+        String choice = scanner.nextLine().trim().toLowerCase();
+        if (choice.equals("y") || choice.equals("yes")) {
+            StatisticsAggregator stats = new StatisticsAggregator(topIpSketch);
+            index.scan(log, from, to, stats);
+            new StatisticsCalculator().printReport(stats.report());
+        }
+    }
+
+    // Режим слежения: новые строки разбираются по мере появления, раз в несколько секунд
+    // выводится сводка за последнюю минуту и за окно, по Ctrl+C - полный отчет
+    private static void followFile(Path path, boolean fromStart, ParseListener diagnostics,
+                                   int topIpSketch, LogFormat format, RateLimits rateLimits)
+            throws IOException, InterruptedException {
+        StatisticsAggregator total = new StatisticsAggregator(topIpSketch);
+        RollingAggregator<StatisticsAggregator> recent =
+                new RollingAggregator<>(FOLLOW_WINDOW_MINUTES, StatisticsAggregator::new);
+        // Превышения выводятся сразу, в потоке слежения
+        RateTracker rateTracker = rateLimits == null ? null : new RateTracker(rateLimits, Main::showRateAlert);
+        LogFollower follower = new LogFollower(path,
+                new LogParser(diagnostics, FieldDictionaries.DEFAULT, null, format), entry -> {
+            total.accept(entry);
+            recent.accept(entry);
+            if (rateTracker != null) {
+                rateTracker.accept(entry);
+            }
+        }, fromStart);
+
+        // -Danalyzer.followReport=N - период сводки в секундах
+        long reportMillis = Long.getLong("analyzer.followReport", 10) * 1000;
+        long[] nextReport = {System.currentTimeMillis() + reportMillis};
+        long[] reportedTotal = {0};
+
+        CountDownLatch finished = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            follower.stop();
+            try {
+                finished.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        System.out.printf("%n👀 Слежу за %s, для остановки нажми Ctrl+C%n", path);
+        try {
+            follower.run(FOLLOW_POLL_MILLIS, () -> {
+                long now = System.currentTimeMillis();
+                // Без новых записей сводка не повторяется
+                if (now >= nextReport[0] && total.getTotalRequests() != reportedTotal[0]) {
+                    showRecentStats(recent, follower);
+                    reportedTotal[0] = total.getTotalRequests();
+                    nextReport[0] = now + reportMillis;
+                }
+            });
+        } finally {
+            follower.close();
+            if (rateTracker != null) {
+                showRateSummary(rateTracker, new ArrayList<>());
+            }
+            new StatisticsCalculator().printReport(total.report());
+            finished.countDown();
+        }
+    }
+
+    private static void showRecentStats(RollingAggregator<StatisticsAggregator> recent, LogFollower follower) {
+        long latestMinute = recent.getLatestMinute();
+        if (latestMinute == Long.MIN_VALUE) {
+            return;
+        }
+        StatisticsReport minute = recent.minute(latestMinute).report();
+        StatisticsReport window = recent.snapshot().report();
+        long errors = minute.countResponseCodes(400, Integer.MAX_VALUE);
+
+        System.out.printf("📡 %s | за минуту: %,d запросов, ошибок %.1f%%, p95 %d байт | за %d мин: %,d запросов, ~%d IP",
+                TimestampDecoder.toLocalDateTime(latestMinute * 60).toLocalTime(),
+                minute.getTotalRequests(), errors * 100.0 / minute.getTotalRequests(), minute.getSizeQuantiles()[1],
+                recent.getWindowMinutes(), window.getTotalRequests(), window.getDistinctIps());
+        if (follower.getRotations() + follower.getTruncations() > 0) {
+            System.out.printf(" | ротаций: %d, усечений: %d", follower.getRotations(), follower.getTruncations());
+        }
+        System.out.println();
+    }
+
+    private static void showRateAlert(RateAlert alert) {
+        LocalDateTime time = TimestampDecoder.toLocalDateTime(alert.getEpochSecond());
+        if (alert.getKind() == RateAlert.Kind.RATE) {
+            System.out.printf("🚨 %tT %s: %,d запросов за %d с%n",
+                    time, alert.getClient(), alert.getRequests(), alert.getWindowSeconds());
+        } else {
+            System.out.printf("🚨 %tT %s: ошибок %.0f%% из %,d запросов за %d с%n", time, alert.getClient(),
+                    alert.getErrors() * 100.0 / alert.getRequests(), alert.getRequests(), alert.getWindowSeconds());
+        }
+    }
+
+    // Первые превышения и самые активные клиенты каждого окна на конец лога
+    private static void showRateSummary(RateTracker tracker, List<RateAlert> alerts) {
+        System.out.printf("%n🚦 Частота запросов (%s): превышений %,d%n", tracker.getLimits(), tracker.getAlertCount());
+        alerts.forEach(Main::showRateAlert);
+        if (tracker.getAlertCount() > alerts.size()) {
+            System.out.printf("  ... и еще %,d%n", tracker.getAlertCount() - alerts.size());
+        }
+        RateLimits limits = tracker.getLimits();
+        for (int w = 0; w < limits.windowCount(); w++) {
+            StringBuilder line = new StringBuilder();
+            for (Map.Entry<String, Long> client : tracker.top(w, SHOWN_RATE_CLIENTS)) {
+                line.append(line.length() == 0 ? "" : ", ").append(client.getKey()).append(" (").append(client.getValue()).append(')');
+            }
+            System.out.printf("  Последние %d с: %s%n", limits.windowSeconds(w), line.length() == 0 ? "-" : line);
+        }
+        System.out.printf("  Клиентов в памяти: %,d, выселено: %,d, без учета: %,d запросов%n",
+                tracker.getTrackedClients(), tracker.getEvictedClients(), tracker.getUntrackedEvents());
+    }
+
+    // Быстрая статистика по уже посчитанным кодам ответов
+    private static void showQuickStats(StatisticsReport report) {
+        long total = report.getTotalRequests();
+        System.out.printf("Общее количество запросов: %,d%n", total);
+
+        long success = report.countResponseCodes(200, 300);
+        long errors = report.countResponseCodes(400, Integer.MAX_VALUE);
 
         System.out.printf("Успешные запросы: %,d (%.1f%%)%n",
                 success, (success * 100.0 / total));
         System.out.printf("Ошибки: %,d (%.1f%%)%n",
                 errors, (errors * 100.0 / total));
     }
-}
\ No newline at end of file
+}
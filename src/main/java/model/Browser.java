@@ -0,0 +1,22 @@
+package model;
+
+// Семейства браузеров в порядке вывода статистики
+public enum Browser {
+    CHROME("Chrome"),
+    FIREFOX("Firefox"),
+    SAFARI("Safari"),
+    EDGE("Edge"),
+    OPERA("Opera"),
+    YANDEX("Yandex Browser"),
+    OTHER("Other");
+
+    private final String displayName;
+
+    Browser(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
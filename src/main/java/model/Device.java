@@ -0,0 +1,18 @@
+package model;
+
+// Тип клиента по user agent; бот определяется раньше остальных
+public enum Device {
+    BOT("Bot"),
+    MOBILE("Mobile"),
+    DESKTOP("Desktop");
+
+    private final String displayName;
+
+    Device(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,29 @@
+package model;
+
+// Запись с полями, которых нет в combined-формате: время обработки запроса,
+// время ответа upstream и виртуальный хост. Создается парсером настраиваемого формата.
+public class ExtendedLogEntry extends LogEntry {
+
+    // Поля нет в формате или в строке вместо него "-"
+    public static final long NO_TIME = -1;
+
+    private final long requestTimeMicros;
+    private final long upstreamTimeMicros;
+    private final String host;
+
+    public ExtendedLogEntry(String ipAddress, long epochSecond, String method,
+                            String path, int responseCode, long bytesSent,
+                            String referer, String userAgent,
+                            long requestTimeMicros, long upstreamTimeMicros, String host) {
+        super(ipAddress, epochSecond, method, path, responseCode, bytesSent, referer, userAgent);
+        this.requestTimeMicros = requestTimeMicros;
+        this.upstreamTimeMicros = upstreamTimeMicros;
+        this.host = host;
+    }
+
+    public long getRequestTimeMicros() { return requestTimeMicros; }
+    // Сумма по всем upstream, если запрос ходил в несколько
+    public long getUpstreamTimeMicros() { return upstreamTimeMicros; }
+    // null, если хоста нет в формате
+    public String getHost() { return host; }
+}
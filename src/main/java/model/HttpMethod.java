@@ -0,0 +1,27 @@
+package model;
+
+// HTTP-методы с фиксированными номерами для счетчиков-массивов и компактного хранения
+public enum HttpMethod {
+    GET, POST, HEAD, PUT, DELETE, OPTIONS, PATCH, CONNECT, TRACE, OTHER;
+
+    private static final HttpMethod[] VALUES = values();
+
+    public static HttpMethod of(String method) {
+        switch (method) {
+            case "GET": return GET;
+            case "POST": return POST;
+            case "HEAD": return HEAD;
+            case "PUT": return PUT;
+            case "DELETE": return DELETE;
+            case "OPTIONS": return OPTIONS;
+            case "PATCH": return PATCH;
+            case "CONNECT": return CONNECT;
+            case "TRACE": return TRACE;
+            default: return OTHER;
+        }
+    }
+
+    public static HttpMethod byOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,188 @@
+package model;
+
+// Упаковка адресов в числа и обратно: IPv4 - в int, IPv6 - в два long (старшие и младшие 64 бита)
+public final class IpAddresses {
+
+    public static final long INVALID = -1;
+
+    // Результат parse
+    public static final int NOT_AN_ADDRESS = 0;
+    public static final int IPV4 = 4;
+    public static final int IPV6 = 6;
+
+    private static final int IPV6_GROUPS = 8;
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFFL;
+
+    private IpAddresses() {
+    }
+
+    // Беззнаковое значение адреса или INVALID, если это не IPv4 в точечной записи
+    public static long parseIpv4(CharSequence text) {
+        return parseIpv4(text, 0, text.length());
+    }
+
+    public static long parseIpv4(CharSequence text, int start, int end) {
+        long address = 0;
+        int octets = 0;
+        int pos = start;
+        while (octets < 4) {
+            int value = 0;
+            int digits = 0;
+            while (pos < end && text.charAt(pos) >= '0' && text.charAt(pos) <= '9') {
+                value = value * 10 + (text.charAt(pos) - '0');
+                if (++digits > 3 || value > 255) return INVALID;
+                pos++;
+            }
+            // Ведущие нули не переживут обратного форматирования
+            if (digits == 0 || (digits > 1 && text.charAt(pos - digits) == '0')) return INVALID;
+            address = (address << 8) | value;
+            octets++;
+            if (octets < 4) {
+                if (pos >= end || text.charAt(pos) != '.') return INVALID;
+                pos++;
+            }
+        }
+        return pos == end ? address : INVALID;
+    }
+
+    // IPv6 в любой записи RFC 4291: с "::" и с IPv4 в последних 32 битах ("::ffff:10.0.0.1").
+    // Старшие 64 бита кладутся в out[0], младшие - в out[1]. Идентификатор зоны (%eth0) не допускается
+    public static boolean parseIpv6(CharSequence text, int start, int end, long[] out) {
+        // Группы до "::" сразу встают на свои места, группы после него копятся в tail
+        // и сдвигаются к концу адреса, когда известно их число
+        long headHigh = 0, headLow = 0, tailHigh = 0, tailLow = 0;
+        int headGroups = 0, tailGroups = 0;
+        boolean compressed = false;
+        int pos = start;
+        if (pos < end && text.charAt(pos) == ':') {
+            if (pos + 1 >= end || text.charAt(pos + 1) != ':') return false;
+            compressed = true;
+            pos += 2;
+        }
+        while (pos < end) {
+            int groupEnd = pos;
+            boolean dotted = false;
+            while (groupEnd < end && text.charAt(groupEnd) != ':') {
+                dotted |= text.charAt(groupEnd) == '.';
+                groupEnd++;
+            }
+            long value;
+            int groups;
+            if (dotted) {
+                if (groupEnd != end) return false;
+                value = parseIpv4(text, pos, end);
+                if (value == INVALID) return false;
+                groups = 2;
+            } else {
+                if (groupEnd == pos || groupEnd - pos > 4) return false;
+                value = 0;
+                for (int i = pos; i < groupEnd; i++) {
+                    int digit = Character.digit(text.charAt(i), 16);
+                    if (digit < 0) return false;
+                    value = (value << 4) | digit;
+                }
+                groups = 1;
+            }
+            if (headGroups + tailGroups + groups > IPV6_GROUPS) return false;
+            if (compressed) {
+                int bits = groups * 16;
+                tailHigh = (tailHigh << bits) | (tailLow >>> (64 - bits));
+                tailLow = (tailLow << bits) | value;
+                tailGroups += groups;
+            } else {
+                int shift = 128 - (headGroups + groups) * 16;
+                if (shift >= 64) {
+                    headHigh |= value << (shift - 64);
+                } else {
+                    headLow |= value << shift;
+                    if (shift > 0 && groups == 2) {
+                        headHigh |= value >>> (64 - shift);
+                    }
+                }
+                headGroups += groups;
+            }
+
+            pos = groupEnd;
+            if (pos == end) break;
+            pos++;
+            if (pos < end && text.charAt(pos) == ':') {
+                if (compressed) return false;
+                compressed = true;
+                pos++;
+            } else if (pos == end) {
+                return false;
+            }
+        }
+        int total = headGroups + tailGroups;
+        // "::" заменяет хотя бы одну нулевую группу
+        if (compressed ? total == IPV6_GROUPS : total != IPV6_GROUPS) return false;
+        out[0] = headHigh | tailHigh;
+        out[1] = headLow | tailLow;
+        return true;
+    }
+
+    // IPV4, IPV6 или NOT_AN_ADDRESS. IPv4 кладется в out[1], IPv6 - в out[0] и out[1].
+    // IPv4-mapped IPv6 (::ffff:10.0.0.1) от dual-stack сервера считается обычным IPv4,
+    // чтобы один клиент не делился на два адреса
+    public static int parse(CharSequence text, int start, int end, long[] out) {
+        long ipv4 = parseIpv4(text, start, end);
+        if (ipv4 != INVALID) {
+            out[0] = 0;
+            out[1] = ipv4;
+            return IPV4;
+        }
+        if (!parseIpv6(text, start, end, out)) {
+            return NOT_AN_ADDRESS;
+        }
+        if (out[0] == 0 && (out[1] >>> 32) == IPV4_MAPPED_PREFIX) {
+            out[1] &= 0xFFFFFFFFL;
+            return IPV4;
+        }
+        return IPV6;
+    }
+
+    public static String formatIpv4(int address) {
+        return ((address >>> 24) & 0xFF) + "." + ((address >>> 16) & 0xFF) + "."
+                + ((address >>> 8) & 0xFF) + "." + (address & 0xFF);
+    }
+
+    // Каноническая запись RFC 5952: строчные буквы без ведущих нулей,
+    // самая длинная (первая из равных) серия из двух и больше нулевых групп заменяется на "::"
+    public static String formatIpv6(long high, long low) {
+        int zeroStart = -1, zeroLength = 0;
+        for (int i = 0; i < IPV6_GROUPS; ) {
+            if (group(high, low, i) != 0) {
+                i++;
+                continue;
+            }
+            int runStart = i;
+            while (i < IPV6_GROUPS && group(high, low, i) == 0) i++;
+            if (i - runStart > zeroLength) {
+                zeroStart = runStart;
+                zeroLength = i - runStart;
+            }
+        }
+        if (zeroLength < 2) {
+            zeroStart = -1;
+        }
+
+        StringBuilder text = new StringBuilder(39);
+        for (int i = 0; i < IPV6_GROUPS; i++) {
+            if (i == zeroStart) {
+                text.append("::");
+                i += zeroLength - 1;
+                continue;
+            }
+            if (text.length() > 0 && text.charAt(text.length() - 1) != ':') {
+                text.append(':');
+            }
+            text.append(Integer.toHexString(group(high, low, i)));
+        }
+        return text.toString();
+    }
+
+    private static int group(long high, long low, int index) {
+        long half = index < 4 ? high : low;
+        return (int) (half >>> (48 - (index & 3) * 16)) & 0xFFFF;
+    }
+}
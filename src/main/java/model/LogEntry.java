@@ -1,11 +1,13 @@
 package model;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 
 public class LogEntry {
     private final String ipAddress;
-    private final LocalDateTime timestamp;
+    private final long epochSecond; // локальное время строки в секундах от эпохи
+    private LocalDateTime timestamp; // создается по требованию
     private final String method;
     private final String path;
     private final int responseCode;
@@ -17,8 +19,22 @@ public class LogEntry {
     public LogEntry(String ipAddress, LocalDateTime timestamp, String method,
                     String path, int responseCode, long bytesSent,
                     String referer, String userAgent) {
-        this.ipAddress = ipAddress;
+        this(ipAddress, timestamp.toEpochSecond(ZoneOffset.UTC), method, path,
+                responseCode, bytesSent, referer, userAgent);
         this.timestamp = timestamp;
+    }
+
+    // Для представлений, которые берут значения не из полей, а из своих геттеров
+    protected LogEntry() {
+        this(null, 0L, null, null, 0, 0, null, null);
+    }
+
+    // Конструктор без LocalDateTime - время хранится числом
+    public LogEntry(String ipAddress, long epochSecond, String method,
+                    String path, int responseCode, long bytesSent,
+                    String referer, String userAgent) {
+        this.ipAddress = ipAddress;
+        this.epochSecond = epochSecond;
         this.method = method;
         this.path = path;
         this.responseCode = responseCode;
@@ -29,7 +45,14 @@ public class LogEntry {
 
     // Геттеры
     public String getIpAddress() { return ipAddress; }
-    public LocalDateTime getTimestamp() { return timestamp; }
+    public LocalDateTime getTimestamp() {
+        if (timestamp == null) {
+            timestamp = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+        }
+        return timestamp;
+    }
+    public long getEpochSecond() { return epochSecond; }
+    public int getHour() { return (int) Math.floorMod(getEpochSecond(), 86400L) / 3600; }
     public String getMethod() { return method; }
     public String getPath() { return path; }
     public int getResponseCode() { return responseCode; }
@@ -40,6 +63,6 @@ public class LogEntry {
     @Override
     public String toString() {
         return String.format("IP: %s, Time: %s, Method: %s, Path: %s, Code: %d, Bytes: %d",
-                ipAddress, timestamp, method, path, responseCode, bytesSent);
+                getIpAddress(), getTimestamp(), getMethod(), getPath(), getResponseCode(), getBytesSent());
     }
 }
@@ -0,0 +1,22 @@
+package model;
+
+// Операционная система клиента по user agent
+public enum OperatingSystem {
+    WINDOWS("Windows"),
+    MAC_OS("macOS"),
+    IOS("iOS"),
+    ANDROID("Android"),
+    LINUX("Linux"),
+    CHROME_OS("ChromeOS"),
+    OTHER("Other");
+
+    private final String displayName;
+
+    OperatingSystem(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
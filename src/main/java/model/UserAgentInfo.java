@@ -0,0 +1,33 @@
+package model;
+
+// Результат разбора user agent: семейство браузера, ОС, тип устройства и имя бота
+public final class UserAgentInfo {
+
+    private final Browser browser;
+    private final OperatingSystem operatingSystem;
+    private final Device device;
+    private final String botName;
+
+    public UserAgentInfo(Browser browser, OperatingSystem operatingSystem, Device device, String botName) {
+        this.browser = browser;
+        this.operatingSystem = operatingSystem;
+        this.device = device;
+        this.botName = botName;
+    }
+
+    public Browser getBrowser() { return browser; }
+    public OperatingSystem getOperatingSystem() { return operatingSystem; }
+    public Device getDevice() { return device; }
+    // null для обычных клиентов
+    public String getBotName() { return botName; }
+
+    public boolean isBot() {
+        return botName != null;
+    }
+
+    @Override
+    public String toString() {
+        return isBot() ? botName : browser.getDisplayName() + " / " + operatingSystem.getDisplayName()
+                + " / " + device.getDisplayName();
+    }
+}
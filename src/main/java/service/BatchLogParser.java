@@ -0,0 +1,285 @@
+package service;
+
+import model.LogEntry;
+import service.format.LogFormat;
+import service.query.LogQuery;
+import service.stats.LogAggregator;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+// Пакетный разбор набора логов, например каталога с ротированными access.log.1, access.log.2.gz.
+// Файлы берутся из общей очереди от больших к меньшим, чтобы в конце не ждать одного
+// большого файла; каждый поток копит статистику в одном своем агрегаторе, так что
+// память не растет с числом файлов. .gz распаковываются на лету потоком.
+// Ошибка чтения одного файла не останавливает остальные и попадает в его FileSummary.
+public class BatchLogParser {
+
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    // Служебные файлы анализатора, которые могут лежать рядом с логами
+    private static final String[] SKIPPED_EXTENSIONS = {".tidx", ".checkpoint", ".lacf", ".tmp"};
+
+    private final int threads;
+    private final ParseListener listener;
+    private final LogQuery filter;
+    private final LogFormat format;
+
+    public BatchLogParser(int threads, ParseListener listener) {
+        this(threads, listener, null);
+    }
+
+    // filter == null - без отбора записей
+    public BatchLogParser(int threads, ParseListener listener, LogQuery filter) {
+        this(threads, listener, filter, null);
+    }
+
+    // format == null - combined-формат
+    public BatchLogParser(int threads, ParseListener listener, LogQuery filter, LogFormat format) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads должен быть >= 1: " + threads);
+        }
+        this.threads = threads;
+        this.listener = listener;
+        this.filter = filter;
+        this.format = format;
+    }
+
+    // Каталог или шаблон вроде /var/log/nginx/access.log* вместо одного файла
+    public static boolean isBatch(String argument) {
+        return hasGlob(argument) || Files.isDirectory(Paths.get(argument));
+    }
+
+    // Файлы каталога (без подкаталогов) или файлы, подходящие под glob-шаблон, по имени
+    public static List<Path> resolve(String argument) throws IOException {
+        if (!hasGlob(argument)) {
+            try (Stream<Path> files = Files.list(Paths.get(argument))) {
+                return files.filter(Files::isRegularFile).filter(BatchLogParser::isLogFile)
+                        .sorted().collect(Collectors.toList());
+            }
+        }
+
+        // Обходим каталог до первого сегмента с шаблоном и только на нужную глубину
+        int globStart = firstGlobChar(argument);
+        int separator = Math.max(argument.lastIndexOf('/', globStart), argument.lastIndexOf(File.separatorChar, globStart));
+        Path base = Paths.get(separator < 0 ? "" : argument.substring(0, separator + 1));
+        int depth = argument.contains("**") ? Integer.MAX_VALUE : segments(argument.substring(separator + 1));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + argument);
+        try (Stream<Path> files = Files.walk(base, depth)) {
+            return files.filter(Files::isRegularFile).filter(matcher::matches).filter(BatchLogParser::isLogFile)
+                    .sorted().collect(Collectors.toList());
+        }
+    }
+
+    // onFile вызывается из рабочих потоков по мере готовности файлов и должен быть потокобезопасным
+    public <A extends LogAggregator<A>> Result<A> parse(List<Path> files, Supplier<A> aggregatorFactory,
+                                                        Consumer<FileSummary> onFile) throws IOException {
+        List<Integer> queue = new ArrayList<>();
+        long[] sizes = new long[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            queue.add(i);
+            sizes[i] = sizeOf(files.get(i));
+        }
+        queue.sort(Comparator.comparingLong((Integer i) -> sizes[i]).reversed());
+
+        FileSummary[] summaries = new FileSummary[files.size()];
+        int workers = Math.min(threads, files.size());
+        if (workers == 0) {
+            listener.onComplete(0, 0);
+            return new Result<>(aggregatorFactory.get(), Collections.emptyList());
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "batch-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<A>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(() -> {
+                    A aggregator = aggregatorFactory.get();
+                    int position;
+                    while ((position = next.getAndIncrement()) < queue.size()) {
+                        int index = queue.get(position);
+                        FileSummary summary = parseFile(files.get(index), sizes[index], aggregator);
+                        summaries[index] = summary;
+                        onFile.accept(summary);
+                    }
+                    return aggregator;
+                }));
+            }
+
+            A result = aggregatorFactory.get();
+            for (Future<A> future : futures) {
+                result.merge(future.get());
+            }
+            Result<A> batch = new Result<>(result, Arrays.asList(summaries));
+            listener.onComplete(batch.getLinesRead(), batch.getEntriesParsed());
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Пакетный разбор прерван", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof ErrorBudgetExceededException) {
+                throw (ErrorBudgetExceededException) e.getCause();
+            }
+            throw new IOException("Ошибка в потоке разбора: " + e.getCause(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private FileSummary parseFile(Path file, long size, Consumer<LogEntry> aggregator) {
+        FileProgress progress = new FileProgress(listener);
+        LogParser parser = new LogParser(progress, FieldDictionaries.DEFAULT, filter, format);
+        boolean compressed = isCompressed(file);
+        long[] parsed = new long[1];
+        Consumer<LogEntry> consumer = entry -> {
+            parsed[0]++;
+            aggregator.accept(entry);
+        };
+
+        long start = System.nanoTime();
+        String error = null;
+        try {
+            if (compressed) {
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(file), GZIP_BUFFER_SIZE)) {
+                    parser.parse(in, consumer);
+                }
+            } else {
+                parser.parse(file, consumer);
+            }
+        } catch (IOException e) {
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+        parser.flushMetrics();
+        // При ошибке парсер не успевает учесть прочитанные строки, остаются разобранные и ошибочные
+        long lines = Math.max(parser.getLinesRead(), parsed[0] + progress.failures);
+        return new FileSummary(file, size, compressed, lines, parsed[0], progress.failures,
+                System.nanoTime() - start, error);
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static boolean isCompressed(Path file) {
+        return file.getFileName().toString().endsWith(GZIP_EXTENSION);
+    }
+
+    private static boolean isLogFile(Path file) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(".")) {
+            return false;
+        }
+        for (String extension : SKIPPED_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasGlob(String argument) {
+        return firstGlobChar(argument) < argument.length();
+    }
+
+    private static int firstGlobChar(String argument) {
+        for (int i = 0; i < argument.length(); i++) {
+            char c = argument.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return argument.length();
+    }
+
+    private static int segments(String pattern) {
+        int count = 1;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '/' || c == File.separatorChar) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Ошибки одного файла; записи и ошибки уходят общему слушателю,
+    // а построчный прогресс и итоги отдельного файла заменяются FileSummary
+    private static final class FileProgress implements ParseListener {
+        private final ParseListener delegate;
+        long failures;
+
+        FileProgress(ParseListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onParsed(LogEntry entry) {
+            delegate.onParsed(entry);
+        }
+
+        @Override
+        public void onFailure(long lineNumber, long offset, CharSequence line, FailureReason reason) {
+            failures++;
+            delegate.onFailure(lineNumber, offset, line, reason);
+        }
+    }
+
+    public static final class Result<A> {
+        private final A aggregate;
+        private final List<FileSummary> files;
+
+        Result(A aggregate, List<FileSummary> files) {
+            this.aggregate = aggregate;
+            this.files = Collections.unmodifiableList(files);
+        }
+
+        public A getAggregate() { return aggregate; }
+        // В порядке входного списка
+        public List<FileSummary> getFiles() { return files; }
+
+        public long getLinesRead() {
+            return files.stream().mapToLong(FileSummary::getLinesRead).sum();
+        }
+
+        public long getEntriesParsed() {
+            return files.stream().mapToLong(FileSummary::getEntriesParsed).sum();
+        }
+
+        public long getFailedFiles() {
+            return files.stream().filter(FileSummary::isFailed).count();
+        }
+    }
+}
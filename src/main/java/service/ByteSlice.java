@@ -0,0 +1,65 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+
+// Участок байтового массива, видимый как CharSequence без декодирования.
+// charAt отдает байт как символ - этого достаточно для ASCII-разделителей,
+// а String (в UTF-8) создается только для тех полей, которые действительно нужны.
+public final class ByteSlice implements CharSequence {
+
+    private byte[] bytes;
+    private int offset;
+    private int length;
+
+    public ByteSlice() {
+    }
+
+    public ByteSlice(byte[] bytes, int offset, int length) {
+        reset(bytes, offset, length);
+    }
+
+    // Переиспользование одного объекта для всех строк файла
+    public ByteSlice reset(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes[offset + index] & 0xFF);
+    }
+
+    public byte byteAt(int index) {
+        return bytes[offset + index];
+    }
+
+    @Override
+    public ByteSlice subSequence(int start, int end) {
+        return new ByteSlice(bytes, offset + start, end - start);
+    }
+
+    public String substring(int start, int end) {
+        return new String(bytes, offset + start, end - start, StandardCharsets.UTF_8);
+    }
+
+    public boolean isBlank() {
+        for (int i = 0; i < length; i++) {
+            if (!Character.isWhitespace(charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return substring(0, length);
+    }
+}
@@ -0,0 +1,86 @@
+package service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Контрольная точка разбора лога: до какого байта файл уже учтен и накопленная к этому
+// моменту статистика. Файл узнается по отпечатку обработанной части (FileFingerprint),
+// так что дописанный лог продолжается, а подмененный или ротированный разбирается заново.
+// Хранится рядом с логом обычной Java-сериализацией.
+public final class Checkpoint {
+
+    private static final int MAGIC = 0x4C414350; // "LACP"
+    // 2 - в статистике появилось время ответа (LatencyAggregator), 3 - боты (BotAggregator),
+    // 4 - точные счетчики IP по упакованным адресам (IpAggregator), 5 - число учтенных строк
+    private static final int VERSION = 5;
+    // Из файла читаются только классы статистики и стандартной библиотеки
+    private static final ObjectInputFilter FILTER =
+            ObjectInputFilter.Config.createFilter("service.stats.*;model.*;java.base/*;!*");
+
+    private final FileFingerprint fingerprint;
+    // Строк до offset: продолженный разбор нумерует строки от начала файла
+    private final long lines;
+    private final Serializable state;
+
+    private Checkpoint(FileFingerprint fingerprint, long lines, Serializable state) {
+        this.fingerprint = fingerprint;
+        this.lines = lines;
+        this.state = state;
+    }
+
+    // Снимок для файла, учтенного до offset (граница строки), в котором до offset lines строк
+    public static Checkpoint capture(FileChannel channel, long offset, long lines,
+                                     Serializable state) throws IOException {
+        return new Checkpoint(FileFingerprint.of(channel, offset), lines, state);
+    }
+
+    // null, если контрольной точки нет; IOException, если файл поврежден или другой версии
+    public static Checkpoint load(Path file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            in.setObjectInputFilter(FILTER);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new InvalidClassException("Неизвестный формат контрольной точки: " + file);
+            }
+            FileFingerprint fingerprint = FileFingerprint.read(in);
+            long lines = in.readLong();
+            return new Checkpoint(fingerprint, lines, (Serializable) in.readObject());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Не удалось прочитать контрольную точку " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Запись через временный файл, чтобы прерванное сохранение не испортило прошлую точку
+    public void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            fingerprint.write(out);
+            out.writeLong(lines);
+            out.writeObject(state);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Начинается ли файл с той же части, что была учтена
+    public boolean matches(FileChannel channel) throws IOException {
+        return fingerprint.matches(channel);
+    }
+
+    public long getOffset() { return fingerprint.getLength(); }
+    public long getLines() { return lines; }
+    public Serializable getState() { return state; }
+}
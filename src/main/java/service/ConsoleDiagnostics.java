@@ -0,0 +1,72 @@
+package service;
+
+import model.LogEntry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Вывод диагностики парсинга в консоль с уровнями детализации
+public class ConsoleDiagnostics implements ParseListener {
+
+    public enum Level {
+        OFF,      // ничего не выводить
+        PROGRESS, // прогресс и итоги
+        SAMPLED,  // плюс каждая N-я ошибочная строка
+        VERBOSE   // плюс каждая запись и каждая ошибка
+    }
+
+    private final Level level;
+    private final int failureSampleRate;
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLongArray failuresByReason = new AtomicLongArray(FailureReason.values().length);
+
+    public ConsoleDiagnostics(Level level, int failureSampleRate) {
+        if (failureSampleRate < 1) {
+            throw new IllegalArgumentException("failureSampleRate должен быть >= 1: " + failureSampleRate);
+        }
+        this.level = level;
+        this.failureSampleRate = failureSampleRate;
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getFailureCount(FailureReason reason) {
+        return failuresByReason.get(reason.ordinal());
+    }
+
+    @Override
+    public void onParsed(LogEntry entry) {
+        if (level == Level.VERBOSE) {
+            System.out.println("✅ " + entry);
+        }
+    }
+
+    @Override
+    public void onFailure(long lineNumber, long offset, CharSequence line, FailureReason reason) {
+        long count = failures.incrementAndGet();
+        failuresByReason.incrementAndGet(reason.ordinal());
+        if (level == Level.VERBOSE
+                || (level == Level.SAMPLED && (count - 1) % failureSampleRate == 0)) {
+            System.err.printf("❌ Строка %d (%s, ошибка №%d): %s%n", lineNumber, reason, count, line);
+        }
+    }
+
+    @Override
+    public void onProgress(long linesRead) {
+        if (level.compareTo(Level.PROGRESS) >= 0) {
+            System.out.printf("⏳ Обработано строк: %,d%n", linesRead);
+        }
+    }
+
+    @Override
+    public void onComplete(long linesRead, long entriesParsed) {
+        if (level.compareTo(Level.PROGRESS) >= 0) {
+            System.out.printf("✅ Всего обработано строк: %,d%n", linesRead);
+            System.out.printf("✅ Успешно распарсено записей: %,d%n", entriesParsed);
+            if (failures.get() > 0) {
+                System.out.printf("❌ Не распарсено строк: %,d%n", failures.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package service;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+// Производное значение (семейство браузера, признак бота и т.п.), посчитанное
+// один раз на каждое различное значение FieldDictionary, а не на каждую строку лога
+public final class DictionaryCache<T> {
+
+    private final FieldDictionary dictionary;
+    private final Function<String, T> function;
+    private final AtomicReferenceArray<T> cache;
+
+    public DictionaryCache(FieldDictionary dictionary, Function<String, T> function) {
+        this.dictionary = dictionary;
+        this.function = function;
+        this.cache = new AtomicReferenceArray<>(dictionary.capacity());
+    }
+
+    public T get(String value) {
+        int id = dictionary.idOf(value);
+        if (id == FieldDictionary.NOT_FOUND) {
+            return function.apply(value);
+        }
+        T result = cache.get(id);
+        if (result == null) {
+            // Гонка двух потоков безвредна: оба посчитают одно и то же
+            result = function.apply(dictionary.valueOf(id));
+            cache.set(id, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+package service;
+
+import model.LogEntry;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// Бюджет ошибок разбора: считает отвергнутые строки и прерывает разбор
+// (ErrorBudgetExceededException), как только ошибок стало больше maxFailures или их доля
+// после первых minLines строк превысила maxFailureRatio. Файл в чужом формате так
+// отбрасывается после нескольких тысяч строк, а не после полного прохода.
+// Доля считается от строк, дошедших до слушателя: строки, отброшенные запросом, не учитываются.
+// Оборачивает другой слушатель и потокобезопасен, если потокобезопасен он.
+public final class ErrorBudget implements ParseListener {
+
+    public static final long DEFAULT_MIN_LINES = 1000;
+
+    private final ParseListener delegate;
+    private final double maxFailureRatio;
+    private final long maxFailures;
+    private final long minLines;
+    private final LongAdder parsed = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    // После превышения остальные потоки тоже останавливаются на ближайшей записи
+    private volatile ErrorBudgetExceededException exceeded;
+
+    public ErrorBudget(double maxFailureRatio, long maxFailures, long minLines, ParseListener delegate) {
+        if (maxFailureRatio < 0 || maxFailureRatio > 1) {
+            throw new IllegalArgumentException("Доля ошибок должна быть от 0 до 1: " + maxFailureRatio);
+        }
+        if (maxFailures < 0 || minLines < 1) {
+            throw new IllegalArgumentException("Неверный бюджет ошибок: " + maxFailures + " ошибок, " + minLines + " строк");
+        }
+        this.delegate = delegate;
+        this.maxFailureRatio = maxFailureRatio;
+        this.maxFailures = maxFailures;
+        this.minLines = minLines;
+    }
+
+    // "5%" - доля ошибок после DEFAULT_MIN_LINES строк, "1000" - число ошибок, "5%,1000" - оба предела
+    public static ErrorBudget parse(String spec, ParseListener delegate) {
+        double ratio = 1;
+        long count = Long.MAX_VALUE;
+        for (String part : spec.split(",")) {
+            String limit = part.trim();
+            try {
+                if (limit.endsWith("%")) {
+                    ratio = Double.parseDouble(limit.substring(0, limit.length() - 1)) / 100;
+                } else {
+                    count = Long.parseLong(limit);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Бюджет ошибок задается как 5%, 1000 или 5%,1000: " + spec, e);
+            }
+        }
+        return new ErrorBudget(ratio, count, DEFAULT_MIN_LINES, delegate);
+    }
+
+    @Override
+    public void onParsed(LogEntry entry) {
+        if (exceeded != null) {
+            throw exceeded;
+        }
+        parsed.increment();
+        delegate.onParsed(entry);
+    }
+
+    @Override
+    public void onFailure(long lineNumber, long offset, CharSequence line, FailureReason reason) {
+        if (exceeded != null) {
+            throw exceeded;
+        }
+        failures.increment();
+        delegate.onFailure(lineNumber, offset, line, reason);
+
+        long failed = failures.sum();
+        long checked = failed + parsed.sum();
+        if (failed > maxFailures) {
+            throw exceed(String.format(Locale.ROOT, "Ошибок разбора больше %d (%d из %d строк)",
+                    maxFailures, failed, checked), failed, checked);
+        }
+        if (checked >= minLines && failed > maxFailureRatio * checked) {
+            throw exceed(String.format(Locale.ROOT, "Доля ошибок разбора %.1f%% больше %.1f%% (%d из %d строк)",
+                    failed * 100.0 / checked, maxFailureRatio * 100, failed, checked), failed, checked);
+        }
+    }
+
+    @Override
+    public void onProgress(long linesRead) {
+        delegate.onProgress(linesRead);
+    }
+
+    @Override
+    public void onComplete(long linesRead, long entriesParsed) {
+        delegate.onComplete(linesRead, entriesParsed);
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public boolean isExceeded() {
+        return exceeded != null;
+    }
+
+    private ErrorBudgetExceededException exceed(String message, long failed, long checked) {
+        ErrorBudgetExceededException exception = new ErrorBudgetExceededException(message, failed, checked);
+        exceeded = exception;
+        return exception;
+    }
+}
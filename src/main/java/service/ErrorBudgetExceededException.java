@@ -0,0 +1,20 @@
+package service;
+
+// Разбор прерван ErrorBudget: доля или число отвергнутых строк превысили заданный предел,
+// скорее всего файл не в том формате. Непроверяемое, потому что бросается из ParseListener.
+public class ErrorBudgetExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long failures;
+    private final long linesChecked;
+
+    public ErrorBudgetExceededException(String message, long failures, long linesChecked) {
+        super(message);
+        this.failures = failures;
+        this.linesChecked = linesChecked;
+    }
+
+    public long getFailures() { return failures; }
+    public long getLinesChecked() { return linesChecked; }
+}
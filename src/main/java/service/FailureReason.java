@@ -0,0 +1,9 @@
+package service;
+
+// Причина, по которой строка лога не превратилась в LogEntry
+public enum FailureReason {
+    NO_MATCH,      // строка не похожа на combined-формат
+    BAD_NUMBER,    // код ответа или размер не помещаются в число
+    BAD_TIMESTAMP, // дата не разбирается ни декодером, ни форматтерами
+    LINE_TOO_LONG  // строка длиннее LogParser.MAX_LINE_BYTES: прочитано только начало, остальное пропущено
+}
@@ -0,0 +1,30 @@
+package service;
+
+// Набор словарей для полей строки лога. DEFAULT общий для всех парсеров,
+// в том числе параллельных, поэтому одинаковые значения из разных потоков
+// сходятся к одной строке и одному номеру.
+public final class FieldDictionaries {
+
+    public static final FieldDictionaries DEFAULT = new FieldDictionaries(1 << 16, 1 << 16, 1 << 15, 1 << 15);
+    // Виртуальных хостов немного, они есть только в настраиваемых форматах (LogFormat)
+    private static final int HOST_CAPACITY = 1 << 12;
+
+    private final FieldDictionary ipAddresses;
+    private final FieldDictionary paths;
+    private final FieldDictionary referers;
+    private final FieldDictionary userAgents;
+    private final FieldDictionary hosts = new FieldDictionary(HOST_CAPACITY);
+
+    public FieldDictionaries(int ipCapacity, int pathCapacity, int refererCapacity, int userAgentCapacity) {
+        this.ipAddresses = new FieldDictionary(ipCapacity);
+        this.paths = new FieldDictionary(pathCapacity);
+        this.referers = new FieldDictionary(refererCapacity);
+        this.userAgents = new FieldDictionary(userAgentCapacity);
+    }
+
+    public FieldDictionary ipAddresses() { return ipAddresses; }
+    public FieldDictionary paths() { return paths; }
+    public FieldDictionary referers() { return referers; }
+    public FieldDictionary userAgents() { return userAgents; }
+    public FieldDictionary hosts() { return hosts; }
+}
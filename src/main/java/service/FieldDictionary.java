@@ -0,0 +1,197 @@
+package service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Ограниченный потокобезопасный словарь для часто повторяющихся полей (IP, путь, referer, user agent).
+// Ищет значение прямо по символам строки лога, поэтому повторная встреча не создает String.
+// Каждому значению дается номер, по которому можно кэшировать производные вычисления
+// (см. DictionaryCache). При заполнении новые значения не запоминаются, а возвращаются как есть.
+// Ключ - всегда декодированная строка, так что участок ByteSlice и та же строка String
+// получают один номер. Поиск уже известного значения идет без блокировок.
+public final class FieldDictionary {
+
+    public static final int NOT_FOUND = -1;
+
+    private static final int SEGMENTS = 32;
+
+    private final int capacity;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicReferenceArray<String> values;
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public FieldDictionary(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity должен быть >= 1: " + capacity);
+        }
+        this.capacity = capacity;
+        this.values = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    // Каноническая строка для участка [start, end); при переполнении - новая строка
+    public String intern(CharSequence text, int start, int end) {
+        int id = idOf(text, start, end);
+        return id == NOT_FOUND ? decode(text, start, end) : values.get(id);
+    }
+
+    // Номер значения, добавляя его при необходимости; NOT_FOUND, если словарь заполнен
+    public int idOf(CharSequence text, int start, int end) {
+        if (text instanceof ByteSlice && !isAscii((ByteSlice) text, start, end)) {
+            // Символы ByteSlice - это байты UTF-8: не-ASCII значение ищется по декодированной строке
+            return idOf(((ByteSlice) text).substring(start, end));
+        }
+        int hash = hash(text, start, end);
+        return segmentFor(hash).idOf(hash, text, start, end);
+    }
+
+    public int idOf(String value) {
+        // Формула хэша совпадает с String.hashCode, который у строки уже посчитан
+        int hash = value.hashCode();
+        return segmentFor(hash).idOf(hash, value, 0, value.length());
+    }
+
+    public String valueOf(int id) {
+        return values.get(id);
+    }
+
+    public int size() {
+        return Math.min(nextId.get(), capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        if (start == 0 && end == text.length() && text instanceof String) {
+            return text.hashCode();
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static String decode(CharSequence text, int start, int end) {
+        if (text instanceof ByteSlice) {
+            return ((ByteSlice) text).substring(start, end);
+        }
+        return text.subSequence(start, end).toString();
+    }
+
+    private static boolean isAscii(ByteSlice text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.byteAt(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameChars(String key, CharSequence text, int start, int end) {
+        if (key == text) {
+            return true;
+        }
+        if (key.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry {
+        final String key;
+        final int hash;
+        final int id;
+
+        Entry(String key, int hash, int id) {
+            this.key = key;
+            this.hash = hash;
+            this.id = id;
+        }
+    }
+
+    // Открытая адресация внутри сегмента. Чтение идет по текущей таблице без блокировки:
+    // запись в слот публикуется после values.set, так что найденный номер сразу читается.
+    // Промах перепроверяется и добавляется под монитором сегмента, а при росте новая
+    // таблица заполняется целиком и только потом подменяет старую
+    private final class Segment {
+        private volatile AtomicReferenceArray<Entry> table = new AtomicReferenceArray<>(16);
+        private int count;
+
+        int idOf(int hash, CharSequence text, int start, int end) {
+            int id = find(table, hash, text, start, end);
+            return id != NOT_FOUND ? id : add(hash, text, start, end);
+        }
+
+        private synchronized int add(int hash, CharSequence text, int start, int end) {
+            AtomicReferenceArray<Entry> entries = table;
+            int id = find(entries, hash, text, start, end);
+            if (id != NOT_FOUND) {
+                return id;
+            }
+            id = nextId.getAndIncrement();
+            if (id >= capacity) {
+                nextId.set(capacity);
+                return NOT_FOUND;
+            }
+            String value = decode(text, start, end);
+            values.set(id, value);
+            insert(entries, new Entry(value, hash, id));
+            if (++count * 2 > entries.length()) {
+                table = grow(entries);
+            }
+            return id;
+        }
+
+        private int find(AtomicReferenceArray<Entry> entries, int hash, CharSequence text, int start, int end) {
+            int mask = entries.length() - 1;
+            int slot = spread(hash) & mask;
+            Entry entry;
+            while ((entry = entries.get(slot)) != null) {
+                if (entry.hash == hash && sameChars(entry.key, text, start, end)) {
+                    return entry.id;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return NOT_FOUND;
+        }
+
+        private void insert(AtomicReferenceArray<Entry> entries, Entry entry) {
+            int mask = entries.length() - 1;
+            int slot = spread(entry.hash) & mask;
+            while (entries.get(slot) != null) {
+                slot = (slot + 1) & mask;
+            }
+            entries.set(slot, entry);
+        }
+
+        private AtomicReferenceArray<Entry> grow(AtomicReferenceArray<Entry> entries) {
+            AtomicReferenceArray<Entry> grown = new AtomicReferenceArray<>(entries.length() * 2);
+            for (int i = 0; i < entries.length(); i++) {
+                Entry entry = entries.get(i);
+                if (entry != null) {
+                    insert(grown, entry);
+                }
+            }
+            return grown;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32C;
+
+// Отпечаток первых length байт файла: сама длина и CRC32C первых и последних 64 КБ.
+// Если файл только дописывали, отпечаток его начала не меняется, а подмена или ротация
+// почти наверняка меняет хотя бы одну из сумм. Используется контрольными точками и индексами.
+public final class FileFingerprint {
+
+    private static final int HASH_WINDOW = 64 * 1024;
+
+    private final long length;
+    private final long headHash;
+    private final long tailHash;
+
+    private FileFingerprint(long length, long headHash, long tailHash) {
+        this.length = length;
+        this.headHash = headHash;
+        this.tailHash = tailHash;
+    }
+
+    public static FileFingerprint of(FileChannel channel, long length) throws IOException {
+        return new FileFingerprint(length,
+                hash(channel, 0, Math.min(length, HASH_WINDOW)),
+                hash(channel, Math.max(0, length - HASH_WINDOW), length));
+    }
+
+    public static FileFingerprint read(DataInput in) throws IOException {
+        return new FileFingerprint(in.readLong(), in.readLong(), in.readLong());
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(length);
+        out.writeLong(headHash);
+        out.writeLong(tailHash);
+    }
+
+    // Начинается ли файл с той же части, по которой снят отпечаток
+    public boolean matches(FileChannel channel) throws IOException {
+        return channel.size() >= length && of(channel, length).equals(this);
+    }
+
+    public long getLength() { return length; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FileFingerprint)) return false;
+        FileFingerprint other = (FileFingerprint) o;
+        return length == other.length && headHash == other.headHash && tailHash == other.tailHash;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(length) * 31 + Long.hashCode(headHash ^ tailHash);
+    }
+
+    private static long hash(FileChannel channel, long from, long to) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, from + buffer.position()) < 0) {
+                // Файл короче, чем нужно: такой отпечаток не совпадет с сохраненным
+                return -1;
+            }
+        }
+        buffer.flip();
+        crc.update(buffer);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,52 @@
+package service;
+
+import java.nio.file.Path;
+
+// Итог разбора одного файла в пакетном режиме: сколько прочитано и разобрано,
+// сколько времени заняло и чем закончилось. По нему видно медленные и битые файлы.
+public final class FileSummary {
+
+    private final Path path;
+    private final long size;
+    private final boolean compressed;
+    private final long linesRead;
+    private final long entriesParsed;
+    private final long failures;
+    private final long nanos;
+    private final String error;
+
+    FileSummary(Path path, long size, boolean compressed, long linesRead, long entriesParsed,
+                long failures, long nanos, String error) {
+        this.path = path;
+        this.size = size;
+        this.compressed = compressed;
+        this.linesRead = linesRead;
+        this.entriesParsed = entriesParsed;
+        this.failures = failures;
+        this.nanos = nanos;
+        this.error = error;
+    }
+
+    public Path getPath() { return path; }
+    // Размер на диске, для .gz - сжатый
+    public long getSize() { return size; }
+    public boolean isCompressed() { return compressed; }
+    public long getLinesRead() { return linesRead; }
+    public long getEntriesParsed() { return entriesParsed; }
+    public long getFailures() { return failures; }
+    public long getNanos() { return nanos; }
+    // null, если файл дочитан до конца; иначе записи до ошибки уже учтены в общей статистике
+    public String getError() { return error; }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    public double getFailureRatio() {
+        return linesRead == 0 ? 0 : (double) failures / linesRead;
+    }
+
+    public double getLinesPerSecond() {
+        return nanos == 0 ? 0 : linesRead * 1e9 / nanos;
+    }
+}
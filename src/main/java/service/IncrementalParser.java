@@ -0,0 +1,89 @@
+package service;
+
+import service.stats.LogAggregator;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+
+// Разбор с контрольной точкой: если лог только дописывался с прошлого запуска,
+// разбираются лишь новые байты, а их статистика сливается с сохраненной.
+// После разбора контрольная точка переписывается. Последняя строка без перевода
+// строки (ее могут еще дописывать) попадает в результат, но не в контрольную точку.
+public class IncrementalParser {
+
+    private final int threads;
+    private final ParseListener listener;
+    private long resumedFrom;
+
+    public IncrementalParser(int threads, ParseListener listener) {
+        this.threads = threads;
+        this.listener = listener;
+    }
+
+    public <A extends LogAggregator<A> & Serializable> A parse(Path log, Path checkpointFile,
+                                                                Supplier<A> aggregatorFactory) throws IOException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long end = MappedLogReader.lastLineEnd(channel, size);
+
+            Checkpoint checkpoint = loadMatching(checkpointFile, channel, end, aggregatorFactory);
+            A state;
+            long resumedLines = 0;
+            if (checkpoint != null) {
+                @SuppressWarnings("unchecked")
+                A stored = (A) checkpoint.getState();
+                state = stored;
+                resumedFrom = checkpoint.getOffset();
+                resumedLines = checkpoint.getLines();
+            } else {
+                state = aggregatorFactory.get();
+                resumedFrom = 0;
+            }
+
+            ParallelLogParser parser = new ParallelLogParser(threads, listener);
+            state.merge(parser.parseRange(log, resumedFrom, end, resumedLines + 1, aggregatorFactory));
+            try {
+                Checkpoint.capture(channel, end, resumedLines + parser.getLinesRead(), state).save(checkpointFile);
+            } catch (IOException e) {
+                System.err.println("Не удалось сохранить контрольную точку: " + e.getMessage());
+            }
+
+            if (end < size) {
+                new LogParser().parseRange(channel, end, size, state);
+            }
+            return state;
+        }
+    }
+
+    // С какого байта продолжен последний разбор; 0 - файл разобран целиком
+    public long getResumedFrom() {
+        return resumedFrom;
+    }
+
+    // Контрольная точка, если она подходит к этому файлу и агрегатору, иначе null
+    private static <A extends LogAggregator<A>> Checkpoint loadMatching(Path checkpointFile, FileChannel channel,
+                                                                        long end, Supplier<A> aggregatorFactory) {
+        try {
+            Checkpoint checkpoint = Checkpoint.load(checkpointFile);
+            if (checkpoint == null || checkpoint.getOffset() > end || !checkpoint.matches(channel)) {
+                return null;
+            }
+            A fresh = aggregatorFactory.get();
+            if (checkpoint.getState().getClass() != fresh.getClass()) {
+                return null;
+            }
+            @SuppressWarnings("unchecked")
+            A state = (A) checkpoint.getState();
+            // Пустой агрегатор сливается без последствий, а несовместимые настройки
+            // (например, точный топ против приближенного) merge отвергнет
+            state.merge(fresh);
+            return checkpoint;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Контрольная точка не подошла, файл будет разобран заново: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package service;
+
+// Однопроходный разбор строки combined-формата без регулярных выражений.
+// Находит границы полей по разделителям (пробел, [, ], "), числа читает
+// прямо из символов, а в String превращает поле только по запросу.
+// Принимает ровно те строки, что и LOG_PATTERN в LogParser.
+// Экземпляр переиспользуется между строками и не потокобезопасен.
+public final class LineTokenizer {
+
+    private static final String HTTP_PREFIX = " HTTP/";
+    private static final String[] KNOWN_METHODS =
+            {"GET", "POST", "HEAD", "PUT", "DELETE", "OPTIONS", "PATCH", "CONNECT", "TRACE"};
+
+    private CharSequence line;
+
+    private int ipStart, ipEnd;
+    private int dateTimeStart, dateTimeEnd;
+    private int methodStart, methodEnd;
+    private int pathStart, pathEnd;
+    private int refererStart, refererEnd;
+    private int userAgentStart, userAgentEnd;
+    private int responseCode;
+    private long bytesSent;
+
+    // Возвращает true, если строка разобрана; позиции полей доступны до следующего вызова
+    public boolean tokenize(CharSequence line) {
+        this.line = line;
+        int length = line.length();
+        int pos = 0;
+
+        // IP: [\d.]+ или IPv6 - шестнадцатеричные цифры, точки и хотя бы одно двоеточие.
+        // Проверяются только символы, сам адрес разбирают те, кому он нужен (IpAddresses)
+        ipStart = pos;
+        boolean hexLetter = false;
+        boolean colon = false;
+        while (pos < length) {
+            char c = line.charAt(pos);
+            if (c == ':') {
+                colon = true;
+            } else if ((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')) {
+                hexLetter = true;
+            } else if (!isDigitOrDot(c)) {
+                break;
+            }
+            pos++;
+        }
+        if (pos == ipStart || (hexLetter && !colon)) return false;
+        ipEnd = pos;
+
+        // " - - ["
+        if (!expect(line, pos, " - - [")) return false;
+        pos += 6;
+
+        // Дата: [^\]]+
+        dateTimeStart = pos;
+        while (pos < length && line.charAt(pos) != ']') pos++;
+        if (pos == dateTimeStart || pos == length) return false;
+        dateTimeEnd = pos;
+
+        // "] \""
+        if (!expect(line, pos, "] \"")) return false;
+        pos += 3;
+
+        // Метод: [A-Z]+ и пробел
+        methodStart = pos;
+        while (pos < length && isUpper(line.charAt(pos))) pos++;
+        if (pos == methodStart || pos == length || line.charAt(pos) != ' ') return false;
+        methodEnd = pos;
+        pos++;
+
+        // Путь: всё до " HTTP/[\d.]+" перед первой кавычкой
+        int quote = indexOf(line, '"', pos, length);
+        if (quote < 0) return false;
+        int versionStart = quote;
+        while (versionStart > pos && isDigitOrDot(line.charAt(versionStart - 1))) versionStart--;
+        if (versionStart == quote) return false;
+        int httpStart = versionStart - HTTP_PREFIX.length();
+        if (httpStart <= pos || !expect(line, httpStart, HTTP_PREFIX)) return false;
+        pathStart = pos;
+        pathEnd = httpStart;
+        pos = quote + 1;
+
+        // Код ответа: ровно три цифры
+        if (pos >= length || line.charAt(pos) != ' ') return false;
+        pos++;
+        if (pos + 3 >= length) return false;
+        int code = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = line.charAt(pos++);
+            if (!isDigit(c)) return false;
+            code = code * 10 + (c - '0');
+        }
+        if (line.charAt(pos) != ' ') return false;
+        responseCode = code;
+        pos++;
+
+        // Размер ответа: \d+ (больше 18 цифр не влезает в long без переполнения)
+        int bytesStart = pos;
+        long bytes = 0;
+        while (pos < length && isDigit(line.charAt(pos))) {
+            if (pos - bytesStart == 18) return false;
+            bytes = bytes * 10 + (line.charAt(pos) - '0');
+            pos++;
+        }
+        if (pos == bytesStart) return false;
+        bytesSent = bytes;
+
+        // Referer: " \"[^\"]*\""
+        if (!expect(line, pos, " \"")) return false;
+        pos += 2;
+        refererStart = pos;
+        pos = indexOf(line, '"', pos, length);
+        if (pos < 0) return false;
+        refererEnd = pos;
+        pos++;
+
+        // User-Agent: " \"[^\"]*\""
+        if (!expect(line, pos, " \"")) return false;
+        pos += 2;
+        userAgentStart = pos;
+        pos = indexOf(line, '"', pos, length);
+        if (pos < 0) return false;
+        userAgentEnd = pos;
+
+        return true;
+    }
+
+    public String ipAddress() { return slice(ipStart, ipEnd); }
+    public String dateTime() { return slice(dateTimeStart, dateTimeEnd); }
+    public String path() { return slice(pathStart, pathEnd); }
+    public String referer() { return slice(refererStart, refererEnd); }
+    public String userAgent() { return slice(userAgentStart, userAgentEnd); }
+    public int responseCode() { return responseCode; }
+    public long bytesSent() { return bytesSent; }
+
+    // Для частых методов возвращаем константу и не создаем новую строку
+    public String method() {
+        int length = methodEnd - methodStart;
+        for (String known : KNOWN_METHODS) {
+            if (known.length() == length && expect(line, methodStart, known)) {
+                return known;
+            }
+        }
+        return slice(methodStart, methodEnd);
+    }
+
+    // Позиции полей для тех, кому не нужна строка целиком
+    public CharSequence line() { return line; }
+    public int ipStart() { return ipStart; }
+    public int ipEnd() { return ipEnd; }
+    public int dateTimeStart() { return dateTimeStart; }
+    public int dateTimeEnd() { return dateTimeEnd; }
+    public int methodStart() { return methodStart; }
+    public int methodEnd() { return methodEnd; }
+    public int pathStart() { return pathStart; }
+    public int pathEnd() { return pathEnd; }
+    public int refererStart() { return refererStart; }
+    public int refererEnd() { return refererEnd; }
+    public int userAgentStart() { return userAgentStart; }
+    public int userAgentEnd() { return userAgentEnd; }
+
+    private String slice(int start, int end) {
+        if (line instanceof ByteSlice) {
+            return ((ByteSlice) line).substring(start, end);
+        }
+        return line.subSequence(start, end).toString();
+    }
+
+    private static boolean expect(CharSequence line, int pos, String literal) {
+        if (pos + literal.length() > line.length()) return false;
+        for (int i = 0; i < literal.length(); i++) {
+            if (line.charAt(pos + i) != literal.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence line, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isDigitOrDot(char c) {
+        return (c >= '0' && c <= '9') || c == '.';
+    }
+
+    private static boolean isUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+}
@@ -0,0 +1,184 @@
+package service;
+
+import model.LogEntry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+// Слежение за дописываемым логом, как tail -F.
+// Запоминает позицию в байтах и при каждом poll() разбирает только новые полные строки.
+// Ротацию видит по смене идентификатора файла (inode), усечение - по уменьшению размера.
+// После ротации сначала дочитывается старый файл, затем новый читается с начала.
+// Читает через FileChannel.read, а не map: отображение усекаемого файла может уронить JVM.
+// Экземпляр не потокобезопасен, stop() можно вызывать из любого потока.
+public class LogFollower {
+
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+    private final Path path;
+    private final LogParser parser;
+    private final Consumer<LogEntry> consumer;
+    private final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final ByteSlice line = new ByteSlice();
+    private byte[] pending = new byte[4096];
+    private int pendingLength;
+
+    private FileChannel channel;
+    private Object fileId;
+    private long offset;
+    private long rotations;
+    private long truncations;
+    private volatile boolean stopped;
+
+    // fromStart = false пропускает то, что уже есть в файле, и начинает с конца последней
+    // полной строки: строка, которую как раз дописывают, будет разобрана целиком
+    public LogFollower(Path path, LogParser parser, Consumer<LogEntry> consumer, boolean fromStart) throws IOException {
+        this.path = path;
+        this.parser = parser;
+        this.consumer = consumer;
+        open();
+        if (!fromStart && channel != null) {
+            offset = MappedLogReader.lastLineEnd(channel, channel.size());
+        }
+    }
+
+    // Разбирает всё, что дописано с прошлого вызова; возвращает число новых записей
+    public long poll() throws IOException {
+        long parsed = 0;
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            // Между переименованием и созданием нового файла дочитываем старый
+            return channel != null ? readNew() : 0;
+        }
+
+        if (channel == null || !Objects.equals(fileId, idOf(attributes))) {
+            if (channel != null) {
+                parsed += readNew();
+                parsed += flushPending();
+                channel.close();
+                rotations++;
+            }
+            open();
+            offset = 0;
+        } else if (channel.size() < offset) {
+            // copytruncate: если файл успел вырасти обратно больше offset, усечение не будет замечено
+            truncations++;
+            offset = 0;
+            pendingLength = 0;
+        }
+        return parsed + readNew();
+    }
+
+    // Цикл poll() с паузой между пустыми проходами, пока не вызван stop()
+    public void run(long pollIntervalMillis, Runnable afterPoll) throws IOException, InterruptedException {
+        while (!stopped) {
+            long parsed = poll();
+            afterPoll.run();
+            if (parsed == 0) {
+                Thread.sleep(pollIntervalMillis);
+            }
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    // Позиция сразу после последней разобранной полной строки
+    public long getOffset() { return offset - pendingLength; }
+    public long getRotations() { return rotations; }
+    public long getTruncations() { return truncations; }
+
+    private void open() throws IOException {
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            fileId = idOf(Files.readAttributes(path, BasicFileAttributes.class));
+        } catch (NoSuchFileException e) {
+            channel = null;
+            fileId = null;
+        }
+    }
+
+    // inode там, где он есть; иначе время создания
+    private static Object idOf(BasicFileAttributes attributes) {
+        return attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+    }
+
+    // Новые байты от offset; незаконченная последняя строка ждет следующего вызова
+    private long readNew() throws IOException {
+        long parsed = 0;
+        int n;
+        while (!stopped && (n = read()) > 0) {
+            long readStart = offset;
+            offset += n;
+            byte[] bytes = buffer.array();
+            int lineStart = 0;
+            for (int i = 0; i < n; i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                if (pendingLength > 0) {
+                    // Начало строки пришло с прошлым чтением
+                    long lineOffset = readStart - pendingLength;
+                    append(bytes, lineStart, i - lineStart);
+                    parsed += accept(pending, 0, pendingLength, lineOffset);
+                    pendingLength = 0;
+                } else {
+                    parsed += accept(bytes, lineStart, i - lineStart, readStart + lineStart);
+                }
+                lineStart = i + 1;
+            }
+            append(bytes, lineStart, n - lineStart);
+        }
+        parser.flushMetrics();
+        return parsed;
+    }
+
+    private int read() throws IOException {
+        buffer.clear();
+        int n = channel.read(buffer, offset);
+        return Math.max(n, 0);
+    }
+
+    // Последняя строка старого файла без перевода строки после ротации уже не допишется
+    private int flushPending() {
+        int parsed = 0;
+        if (pendingLength > 0) {
+            parsed = accept(pending, 0, pendingLength, offset - pendingLength);
+            pendingLength = 0;
+        }
+        return parsed;
+    }
+
+    private int accept(byte[] bytes, int start, int length, long lineOffset) {
+        if (length > 0 && bytes[start + length - 1] == '\r') {
+            length--;
+        }
+        return parser.parseNextLine(line.reset(bytes, start, length), lineOffset, consumer) ? 1 : 0;
+    }
+
+    private void append(byte[] bytes, int start, int length) {
+        if (pendingLength + length > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+        }
+        System.arraycopy(bytes, start, pending, pendingLength, length);
+        pendingLength += length;
+    }
+}
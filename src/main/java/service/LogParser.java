@@ -1,55 +1,134 @@
 package service;
 
+import model.ExtendedLogEntry;
 import model.LogEntry;
+import service.format.FormatTokenizer;
+import service.format.LogFormat;
+import service.metrics.ParseMetrics;
+import service.query.LogQuery;
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.time.LocalDateTime;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.ParsePosition;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class LogParser {
 
     private static final String LOG_PATTERN =
-            "^([\\d.]+) \\- \\- \\[([^\\]]+)\\] \"([A-Z]+) ([^\"]+?) HTTP/[\\d.]+\" (\\d{3}) (\\d+) \"([^\"]*)\" \"([^\"]*)\"";
+            "^([\\d.]+|[0-9A-Fa-f:.]*:[0-9A-Fa-f:.]*) \\- \\- \\[([^\\]]+)\\] \"([A-Z]+) ([^\"]+?) HTTP/[\\d.]+\" (\\d{3}) (\\d+) \"([^\"]*)\" \"([^\"]*)\"";
 
     private static final Pattern PATTERN = Pattern.compile(LOG_PATTERN);
     private static final DateTimeFormatter DATE_FORMATTER =
             DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+    private static final DateTimeFormatter FALLBACK_DATE_FORMATTER =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z");
 
-    public List<LogEntry> parseLogFile(String filePath) {
-        List<LogEntry> entries = new ArrayList<>();
+    // Общий набор строк для сверки токенайзера с регулярным выражением
+    static final String[] SAMPLE_LINES = {
+            "37.231.123.209 - - [25/Sep/2022:06:25:04 +0300] \"GET /engine.php?rss=1&json=1&p=156&lg=1 HTTP/1.0\" 200 61096 \"https://nova-news.ru/search/?rss=1&lg=1\" \"Mozilla/5.0 (Linux; Android 6.0.1; SM-J500M Build/MMB29M) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/55.0.2883.91 Mobile Safari/537.36\"",
+            "5.255.253.2 - - [25/Sep/2022:06:25:05 +0300] \"POST /api/v1/items HTTP/1.1\" 201 512 \"-\" \"Mozilla/5.0 (compatible; YandexBot/3.0; +http://yandex.com/bots)\"",
+            "10.0.0.1 - - [01/Jan/2023:00:00:00 +0000] \"HEAD / HTTP/2.0\" 304 0 \"\" \"\"",
+            "192.168.1.10 - - [31/Dec/2022:23:59:59 -0500] \"GET /path with spaces/index.html HTTP/1.1\" 404 153 \"-\" \"curl/7.68.0\" extra trailing data",
+            "66.249.66.1 - - [12/Mar/2023:14:07:31 +0300] \"PROPFIND /dav/ HTTP/1.1\" 207 1 \"-\" \"Mozilla/5.0 (X11; Linux x86_64; rv:109.0) Gecko/20100101 Firefox/115.0\"",
+            "2a02:6b8::1 - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.0\" 200 10 \"-\" \"-\"",
+            "::ffff:10.0.0.1 - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.0\" 200 10 \"-\" \"-\"",
+            // Строки, которые обе реализации должны отвергнуть
+            "37.231.123.209 - - [25/Sep/2022:06:25:04 +0300] \"GET /engine.php HTTP/1.0\" 200 - \"-\" \"-\"",
+            "37.231.123.209 - - [25/Sep/2022:06:25:04 +0300] \"get /lower HTTP/1.0\" 200 10 \"-\" \"-\"",
+            "37.231.123.209 - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.0\" 20 10 \"-\" \"-\"",
+            "37.231.123.209 - - [25/Sep/2022:06:25:04 +0300] \"GET /noversion\" 200 10 \"-\" \"-\"",
+            "37.231.123.209 - - [25/Sep/2022:06:25:04 +0300] \"GET  HTTP/1.1\" 200 10 \"-\" \"-\"",
+            "37.231.123.209 - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.0\" 200 10 \"-\" \"unterminated",
+            "cafe - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.0\" 200 10 \"-\" \"-\"",
+            "fe80::1%eth0 - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.0\" 200 10 \"-\" \"-\"",
+            "- - - [25/Sep/2022:06:25:04 +0300] \"GET / HTTP/1.0\" 200 10 \"-\" \"-\"",
+            "\u0000\u0001garbage",
+            ""
+    };
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath), 65536)) { // 64KB buffer {
-            String line;
-            int lineCount = 0;
+    // Значение referer и User-Agent, если формат их не пишет - как "-" в самом логе
+    private static final String ABSENT_FIELD = "-";
 
-            while ((line = reader.readLine()) != null) {
-                lineCount++;
+    // Предел смещения пояса в ZoneOffset, +-18:00
+    private static final long MAX_OFFSET_SECONDS = 18 * 3600;
 
-                // Пропускаем пустые строки сразу
-                if (line.trim().isEmpty()) {
-                    continue;
-                }
+    // Смещение строки, если источник его не знает (BufferedReader)
+    public static final long UNKNOWN_OFFSET = -1;
 
-                LogEntry entry = parseLine(line);
-                if (entry != null) {
-                    entries.add(entry);
-                }
+    // Прогресс сообщается слушателю раз в столько строк
+    static final int PROGRESS_INTERVAL = 10000;
 
-                // Вывод прогресса каждые 10,000 строк
-                if (lineCount % 10000 == 0) {
-                    System.out.printf("⏳ Обработано строк: %,d%n", lineCount);
-                }
-            }
+    // Потоковые источники не держат в памяти строку длиннее: это почти всегда испорченный файл
+    // (например, .gz с нулями вместо текста), и без предела он съел бы всю память
+    static final int MAX_LINE_BYTES = 1024 * 1024;
+
+    private final LineTokenizer tokenizer = new LineTokenizer();
+    private final TimestampDecoder timestampDecoder = new TimestampDecoder();
+    private final ParseListener listener;
+    private final FieldDictionaries dictionaries;
+    // null - пропускать все записи
+    private final LogQuery filter;
+    // null - строки в combined-формате, их разбирает tokenizer
+    private final FormatTokenizer formatTokenizer;
+    // null, если метрики не включены через ParseMetrics.install()
+    private final ParseMetrics.Recorder metrics = ParseMetrics.recorder();
+    private long linesRead;
+    // Смещение текущей строки для onFailure, чтобы не передавать его через все методы разбора
+    private long lineOffset = UNKNOWN_OFFSET;
+    private long linesFiltered;
+
+    public LogParser() {
+        this(ParseListener.NONE);
+    }
 
-            System.out.printf("✅ Всего обработано строк: %,d%n", lineCount);
-            System.out.printf("✅ Успешно распарсено записей: %,d%n", entries.size());
+    public LogParser(ParseListener listener) {
+        this(listener, FieldDictionaries.DEFAULT);
+    }
+
+    public LogParser(ParseListener listener, FieldDictionaries dictionaries) {
+        this(listener, dictionaries, null);
+    }
+
+    // Парсер отдает потребителю только записи, подходящие под filter; дешевые условия
+    // проверяются до создания строк (см. LogQuery.acceptsTokens)
+    public LogParser(ParseListener listener, LogQuery filter) {
+        this(listener, FieldDictionaries.DEFAULT, filter);
+    }
+
+    public LogParser(ParseListener listener, FieldDictionaries dictionaries, LogQuery filter) {
+        this(listener, dictionaries, filter, null);
+    }
+
+    // Строки в формате format (log_format nginx или LogFormat Apache) вместо combined;
+    // записи - ExtendedLogEntry с временем ответа и хостом, если они есть в формате
+    public LogParser(ParseListener listener, FieldDictionaries dictionaries, LogQuery filter, LogFormat format) {
+        this.listener = listener;
+        this.dictionaries = dictionaries;
+        this.filter = filter;
+        this.formatTokenizer = format == null || format.isCombined() ? null : format.newTokenizer();
+    }
 
+    // Собирает все записи в список; для больших файлов лучше parse(Path, Consumer)
+    public List<LogEntry> parseLogFile(String filePath) {
+        List<LogEntry> entries = new ArrayList<>();
+
+        try {
+            parse(Paths.get(filePath), entries::add);
         } catch (IOException e) {
             System.err.println("Ошибка чтения файла: " + e.getMessage());
         }
@@ -57,87 +136,392 @@ public class LogParser {
         return entries;
     }
 
-    private LogEntry parseLine(String line) {
-        System.out.println("=== НАЧАЛО ПАРСИНГА ===");
-        System.out.println("Строка: " + line);
+    // Потоковый разбор: каждая запись сразу уходит потребителю и нигде не накапливается.
+    // Файл читается через отображение в память, строки не декодируются целиком.
+    public long parse(Path path, Consumer<LogEntry> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long linesBefore = linesRead;
+            long parsedCount = parseRange(channel, 0, channel.size(), consumer);
+            listener.onComplete(linesRead - linesBefore, parsedCount);
+            return parsedCount;
+        }
+    }
 
-        Matcher matcher = PATTERN.matcher(line);
+    // Разбор уже открытого текстового потока; возвращает количество успешно разобранных записей
+    public long parse(BufferedReader reader, Consumer<LogEntry> consumer) throws IOException {
+        String line;
+        long lineCount = 0;
+        long parsedCount = 0;
 
-        if (matcher.find()) {
-            System.out.println("✅ Regex совпал! Групп найдено: " + matcher.groupCount());
+        while ((line = reader.readLine()) != null) {
+            lineCount++;
+            if (parseAndAccept(line, lineCount, UNKNOWN_OFFSET, consumer)) {
+                parsedCount++;
+            }
+        }
 
-            try {
-                // Извлекаем все группы и выводим их для отладки
-                for (int i = 1; i <= matcher.groupCount(); i++) {
-                    System.out.println("Группа " + i + ": '" + matcher.group(i) + "'");
-                }
+        linesRead += lineCount;
+        flushMetrics();
+        listener.onComplete(lineCount, parsedCount);
+        return parsedCount;
+    }
 
-                String ipAddress = matcher.group(1);
-                String dateTimeStr = matcher.group(2);
-                String method = matcher.group(3);
-                String path = matcher.group(4);
-                int responseCode = Integer.parseInt(matcher.group(5));
-                long bytesSent = Long.parseLong(matcher.group(6));
-                String referer = matcher.group(7);
-                String userAgent = matcher.group(8);
-
-                System.out.println("📋 Извлеченные данные:");
-                System.out.println("IP: " + ipAddress);
-                System.out.println("DateTime: " + dateTimeStr);
-                System.out.println("Method: " + method);
-                System.out.println("Path: " + path);
-                System.out.println("Response: " + responseCode);
-                System.out.println("Bytes: " + bytesSent);
-                System.out.println("Referer: " + referer);
-                System.out.println("UserAgent: " + userAgent);
-
-                // Преобразуем дату - пробуем разные форматы
-                LocalDateTime timestamp;
-                try {
-                    timestamp = LocalDateTime.parse(dateTimeStr, DATE_FORMATTER);
-                    System.out.println("✅ Дата преобразована: " + timestamp);
-                } catch (Exception e) {
-                    System.err.println("❌ Ошибка преобразования даты: " + e.getMessage());
-                    System.err.println("Пробуем альтернативный формат...");
-
-                    // Пробуем убрать квадратные скобки если они есть
-                    if (dateTimeStr.startsWith("[") && dateTimeStr.endsWith("]")) {
-                        dateTimeStr = dateTimeStr.substring(1, dateTimeStr.length() - 1);
-                    }
-
-                    // Пробуем другой форматтер
-                    try {
-                        DateTimeFormatter altFormatter = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z");
-                        timestamp = LocalDateTime.parse(dateTimeStr, altFormatter);
-                        System.out.println("✅ Дата преобразована альтернативным способом: " + timestamp);
-                    } catch (Exception e2) {
-                        System.err.println("❌ Альтернативный формат тоже не сработал: " + e2.getMessage());
-                        return null;
-                    }
+    // Разбор потока байт, например распакованного .gz, тем же путем, что и файла через mmap
+    public long parse(InputStream in, Consumer<LogEntry> consumer) throws IOException {
+        long[] parsedCount = new long[1];
+        long lineCount = StreamLogReader.read(in, new MappedLogReader.LineHandler() {
+            @Override
+            public void onLine(ByteSlice line, long lineNumber, long offset) {
+                if (parseAndAccept(line, lineNumber, offset, consumer)) {
+                    parsedCount[0]++;
                 }
+            }
+
+            @Override
+            public void onLineTooLong(ByteSlice prefix, long lineNumber, long offset) {
+                rejectLongLine(prefix, lineNumber, offset);
+            }
+        });
+        linesRead += lineCount;
+        flushMetrics();
+        listener.onComplete(lineCount, parsedCount[0]);
+        return parsedCount[0];
+    }
+
+    // Разбор диапазона байт [start, end) файла без итогового onComplete - для параллельного режима.
+    // Границы диапазона должны приходиться на начало строк.
+    public long parseRange(FileChannel channel, long start, long end, Consumer<LogEntry> consumer) throws IOException {
+        long[] parsedCount = new long[1];
+        linesRead += MappedLogReader.read(channel, start, end, (line, lineNumber, offset) -> {
+            if (parseAndAccept(line, lineNumber, offset, consumer)) {
+                parsedCount[0]++;
+            }
+        });
+        flushMetrics();
+        return parsedCount[0];
+    }
+
+    // Как parseRange, но вместе с записью передается место строки в файле - для индексов
+    public long parseRangeWithOffsets(FileChannel channel, long start, long end,
+                                      PositionedConsumer consumer) throws IOException {
+        long[] parsedCount = new long[1];
+        linesRead += MappedLogReader.read(channel, start, end, (line, lineNumber, offset) -> {
+            long lineEnd = offset + line.length();
+            if (parseAndAccept(line, lineNumber, offset, entry -> consumer.accept(entry, offset, lineEnd))) {
+                parsedCount[0]++;
+            }
+        });
+        flushMetrics();
+        return parsedCount[0];
+    }
+
+    public interface PositionedConsumer {
+        // [offset, lineEnd) - байты строки в файле без перевода строки
+        void accept(LogEntry entry, long offset, long lineEnd);
+    }
+
+    // Блок целых строк из PipelineLogParser; последняя строка может быть без перевода строки.
+    // Номера строк идут от firstLine, смещения - от firstOffset, чтобы ошибки указывали на место в исходном файле.
+    // lastLineTooLong - последняя строка блока лишь начало слишком длинной строки и не разбирается
+    long parseLines(byte[] bytes, int length, long firstLine, long firstOffset, boolean lastLineTooLong,
+                    Consumer<LogEntry> consumer) throws IOException {
+        ByteSlice line = new ByteSlice();
+        long lineNumber = firstLine;
+        long parsedCount = 0;
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            if (lastLineTooLong && lineEnd == length) {
+                rejectLongLine(line.reset(bytes, lineStart, lineEnd - lineStart), lineNumber++, firstOffset + lineStart);
+                break;
+            }
+            int contentEnd = lineEnd > lineStart && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            if (parseAndAccept(line.reset(bytes, lineStart, contentEnd - lineStart), lineNumber++,
+                    firstOffset + lineStart, consumer)) {
+                parsedCount++;
+            }
+            lineStart = lineEnd + 1;
+        }
+        linesRead += lineNumber - firstLine;
+        flushMetrics();
+        return parsedCount;
+    }
+
+    // Одна строка из внешнего источника, например LogFollower; учитывается в getLinesRead
+    boolean parseNextLine(CharSequence line, long offset, Consumer<LogEntry> consumer) {
+        linesRead++;
+        return parseAndAccept(line, linesRead, offset, consumer);
+    }
+
+    // Передает накопленные метрики в общие счетчики; вызывается в конце каждого прохода,
+    // для LogFollower - после каждой порции новых строк
+    void flushMetrics() {
+        if (metrics != null) {
+            metrics.finish();
+        }
+    }
+
+    // Сколько строк прочитал этот парсер за все вызовы
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    // Сколько разобранных строк не прошло фильтр
+    public long getLinesFiltered() {
+        return linesFiltered;
+    }
+
+    // Строка длиннее MAX_LINE_BYTES, от которой источник прочитал только начало
+    void rejectLongLine(CharSequence prefix, long lineNumber, long offset) {
+        lineOffset = offset;
+        if (lineNumber % PROGRESS_INTERVAL == 0) {
+            listener.onProgress(lineNumber);
+        }
+        onFailure(lineNumber, prefix, FailureReason.LINE_TOO_LONG);
+    }
+
+    private boolean parseAndAccept(CharSequence line, long lineNumber, long offset, Consumer<LogEntry> consumer) {
+        lineOffset = offset;
+        if (lineNumber % PROGRESS_INTERVAL == 0) {
+            listener.onProgress(lineNumber);
+        }
+
+        if (metrics != null) {
+            return parseAndAcceptMeasured(line, lineNumber, consumer);
+        }
+
+        // Пропускаем пустые строки сразу
+        if (isBlank(line)) {
+            return false;
+        }
+
+        LogEntry entry = parseLine(line, lineNumber);
+        if (entry == null) {
+            return false;
+        }
+        consumer.accept(entry);
+        return true;
+    }
+
+    // То же с замером этапов; отдельный метод, чтобы без метрик горячий путь не менялся
+    private boolean parseAndAcceptMeasured(CharSequence line, long lineNumber, Consumer<LogEntry> consumer) {
+        long started = metrics.lineStarted(line.length());
+        LogEntry entry = isBlank(line) ? null : parseLine(line, lineNumber);
+        long parsed = metrics.lineParsed(started, entry != null);
+        if (entry == null) {
+            return false;
+        }
+        consumer.accept(entry);
+        metrics.lineConsumed(parsed);
+        return true;
+    }
 
-                // Создаем объект LogEntry
-                LogEntry entry = new LogEntry(ipAddress, timestamp, method, path,
-                        responseCode, bytesSent, referer, userAgent);
+    private static boolean isBlank(CharSequence line) {
+        if (line instanceof String) {
+            return ((String) line).isBlank();
+        }
+        return ((ByteSlice) line).isBlank();
+    }
 
-                System.out.println("✅ Объект LogEntry успешно создан!");
-                System.out.println("=== КОНЕЦ ПАРСИНГА ===");
-                return entry;
+    LogEntry parseLine(String line) {
+        return parseLine(line, 0);
+    }
+
+    private LogEntry parseLine(CharSequence line, long lineNumber) {
+        if (formatTokenizer != null) {
+            return parseFormatted(line, lineNumber);
+        }
+        LogEntry entry;
 
-            } catch (Exception e) {
-                System.err.println("❌ Ошибка при извлечении данных: " + e.getMessage());
-                e.printStackTrace();
+        // Быстрый путь: разбор по разделителям без regex
+        boolean tokenized = tokenizer.tokenize(line);
+        if (tokenized) {
+            if (filter != null && !filter.acceptsTokens(tokenizer)) {
+                linesFiltered++;
+                return null;
+            }
+            long epochSecond = timestampDecoder.decode(line, tokenizer.dateTimeStart(), tokenizer.dateTimeEnd());
+            if (epochSecond == TimestampDecoder.INVALID) {
+                epochSecond = parseTimestampFallback(tokenizer.dateTime());
+            }
+            if (epochSecond == TimestampDecoder.INVALID) {
+                onFailure(lineNumber, line, FailureReason.BAD_TIMESTAMP);
+                return null;
+            }
+            if (filter != null && !filter.acceptsTime(epochSecond)) {
+                linesFiltered++;
                 return null;
             }
+            // Повторяющиеся поля берем из словарей, новые строки создаются только для новых значений
+            entry = new LogEntry(
+                    dictionaries.ipAddresses().intern(line, tokenizer.ipStart(), tokenizer.ipEnd()),
+                    epochSecond, tokenizer.method(),
+                    dictionaries.paths().intern(line, tokenizer.pathStart(), tokenizer.pathEnd()),
+                    tokenizer.responseCode(), tokenizer.bytesSent(),
+                    dictionaries.referers().intern(line, tokenizer.refererStart(), tokenizer.refererEnd()),
+                    dictionaries.userAgents().intern(line, tokenizer.userAgentStart(), tokenizer.userAgentEnd()));
         } else {
-            System.err.println("❌ Regex не совпал со строкой");
-            System.err.println("Проверь регулярное выражение: " + LOG_PATTERN);
+            entry = parseLineStrict(line, lineNumber);
+            if (entry == null) {
+                return null;
+            }
+        }
+
+        // Остаток условий, которым нужна готовая запись; после regex проверяются все условия
+        if (filter != null && !(tokenized ? filter.acceptsEntry(entry) : filter.matches(entry))) {
+            linesFiltered++;
+            return null;
+        }
+
+        listener.onParsed(entry);
+        return entry;
+    }
+
+    // Разбор по скомпилированному LogFormat; запасного пути через regex здесь нет
+    private LogEntry parseFormatted(CharSequence line, long lineNumber) {
+        FormatTokenizer tokens = formatTokenizer;
+        if (!tokens.tokenize(line)) {
+            onFailure(lineNumber, line, FailureReason.NO_MATCH);
+            return null;
+        }
+
+        long epochSecond;
+        if (tokens.isIsoTime()) {
+            epochSecond = TimestampDecoder.decodeIso8601(line, tokens.timeStart(), tokens.timeEnd());
+        } else {
+            epochSecond = timestampDecoder.decode(line, tokens.timeStart(), tokens.timeEnd());
+            if (epochSecond == TimestampDecoder.INVALID) {
+                epochSecond = parseTimestampFallback(tokens.time());
+            }
+        }
+        if (epochSecond == TimestampDecoder.INVALID) {
+            onFailure(lineNumber, line, FailureReason.BAD_TIMESTAMP);
+            return null;
+        }
+        if (filter != null && !filter.acceptsTime(epochSecond)) {
+            linesFiltered++;
+            return null;
+        }
+
+        LogEntry entry = new ExtendedLogEntry(
+                dictionaries.ipAddresses().intern(line, tokens.ipStart(), tokens.ipEnd()),
+                epochSecond, tokens.method(),
+                dictionaries.paths().intern(line, tokens.pathStart(), tokens.pathEnd()),
+                tokens.responseCode(), tokens.bytesSent(),
+                tokens.refererStart() < 0 ? ABSENT_FIELD
+                        : dictionaries.referers().intern(line, tokens.refererStart(), tokens.refererEnd()),
+                tokens.userAgentStart() < 0 ? ABSENT_FIELD
+                        : dictionaries.userAgents().intern(line, tokens.userAgentStart(), tokens.userAgentEnd()),
+                tokens.requestTimeMicros(), tokens.upstreamTimeMicros(),
+                tokens.hostStart() < 0 ? null : dictionaries.hosts().intern(line, tokens.hostStart(), tokens.hostEnd()));
+        if (filter != null && !filter.matches(entry)) {
+            linesFiltered++;
+            return null;
+        }
+
+        listener.onParsed(entry);
+        return entry;
+    }
+
+    // Строгий разбор регулярным выражением - запасной путь и эталон для сверки и замеров
+    LogEntry parseLineStrict(CharSequence line, long lineNumber) {
+        Matcher matcher = PATTERN.matcher(line);
+        if (!matcher.find()) {
+            onFailure(lineNumber, line, FailureReason.NO_MATCH);
             return null;
         }
+
+        // Регулярное выражение пропускает только цифры, так что не влезть в long может лишь размер
+        int responseCode = (int) parseDigits(line, matcher.start(5), matcher.end(5));
+        long bytesSent = parseDigits(line, matcher.start(6), matcher.end(6));
+        if (bytesSent < 0) {
+            onFailure(lineNumber, line, FailureReason.BAD_NUMBER);
+            return null;
+        }
+
+        long epochSecond = timestampDecoder.decode(line, matcher.start(2), matcher.end(2));
+        if (epochSecond == TimestampDecoder.INVALID) {
+            epochSecond = parseTimestampFallback(matcher.group(2));
+        }
+        if (epochSecond == TimestampDecoder.INVALID) {
+            onFailure(lineNumber, line, FailureReason.BAD_TIMESTAMP);
+            return null;
+        }
+
+        return new LogEntry(matcher.group(1), epochSecond, matcher.group(3), matcher.group(4),
+                responseCode, bytesSent, matcher.group(7), matcher.group(8));
+    }
+
+    private void onFailure(long lineNumber, CharSequence line, FailureReason reason) {
+        if (metrics != null) {
+            metrics.failure(reason);
+        }
+        listener.onFailure(lineNumber, lineOffset, line, reason);
+    }
+
+    // Цифры [start, end) как long; -1, если значение не помещается
+    private static long parseDigits(CharSequence line, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = line.charAt(i) - '0';
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // Медленный путь для дат, которые не разобрал TimestampDecoder. Мусор во времени обычно
+    // идет пачками, поэтому ошибка сообщается через INVALID, а не через DateTimeParseException
+    static long parseTimestampFallback(String dateTimeStr) {
+        long epochSecond = parseTimestamp(dateTimeStr, DATE_FORMATTER);
+        if (epochSecond != TimestampDecoder.INVALID) {
+            return epochSecond;
+        }
+
+        // Пробуем убрать квадратные скобки если они есть
+        if (dateTimeStr.startsWith("[") && dateTimeStr.endsWith("]")) {
+            dateTimeStr = dateTimeStr.substring(1, dateTimeStr.length() - 1);
+        }
+
+        // Пробуем другой форматтер
+        return parseTimestamp(dateTimeStr, FALLBACK_DATE_FORMATTER);
+    }
+
+    // Как LocalDateTime.parse(text, formatter) в режиме SMART, но без исключений:
+    // parseUnresolved возвращает null вместо DateTimeParseException, поля проверяются вручную
+    private static long parseTimestamp(String text, DateTimeFormatter formatter) {
+        ParsePosition position = new ParsePosition(0);
+        TemporalAccessor parsed = formatter.parseUnresolved(text, position);
+        if (parsed == null || position.getIndex() != text.length()) {
+            return TimestampDecoder.INVALID;
+        }
+        long year = parsed.getLong(ChronoField.YEAR_OF_ERA);
+        long month = parsed.getLong(ChronoField.MONTH_OF_YEAR);
+        long day = parsed.getLong(ChronoField.DAY_OF_MONTH);
+        long hour = parsed.getLong(ChronoField.HOUR_OF_DAY);
+        long minute = parsed.getLong(ChronoField.MINUTE_OF_HOUR);
+        long second = parsed.getLong(ChronoField.SECOND_OF_MINUTE);
+        long offsetSeconds = parsed.getLong(ChronoField.OFFSET_SECONDS);
+        if (year < 1 || year > Year.MAX_VALUE || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 24 || minute < 0 || minute > 59 || second < 0 || second > 59
+                || (hour == 24 && (minute != 0 || second != 0)) || Math.abs(offsetSeconds) > MAX_OFFSET_SECONDS) {
+            return TimestampDecoder.INVALID;
+        }
+        // SMART сдвигает 31 число на последний день месяца, а 24:00:00 - на полночь следующего дня
+        LocalDate date = YearMonth.of((int) year, (int) month).atEndOfMonth();
+        if (day < date.getDayOfMonth()) {
+            date = date.withDayOfMonth((int) day);
+        }
+        return date.toEpochDay() * 86400 + hour * 3600 + minute * 60 + second;
     }
 
     public static void main(String[] args) {
-          LogParser parser = new LogParser();
+        LogParser parser = new LogParser(new ConsoleDiagnostics(ConsoleDiagnostics.Level.VERBOSE, 1));
 
         String testLine = "37.231.123.209 - - [25/Sep/2022:06:25:04 +0300] \"GET /engine.php?rss=1&json=1&p=156&lg=1 HTTP/1.0\" 200 61096 \"https://nova-news.ru/search/?rss=1&lg=1\" \"Mozilla/5.0 (Linux; Android 6.0.1; SM-J500M Build/MMB29M) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/55.0.2883.91 Mobile Safari/537.36\"";
 
@@ -152,5 +536,35 @@ public class LogParser {
         } else {
             System.out.println("💥 ПАРСИНГ ПРОВАЛИЛСЯ");
         }
+
+        System.out.println("\n🧪 СВЕРКА ТОКЕНАЙЗЕРА С REGEX");
+        int mismatches = 0;
+        for (String line : SAMPLE_LINES) {
+            if (!crossCheck(parser.tokenizer, line)) {
+                mismatches++;
+                System.out.println("💥 Расхождение: " + line);
+            }
+        }
+        System.out.printf("Проверено строк: %d, расхождений: %d%n", SAMPLE_LINES.length, mismatches);
+    }
+
+    // Токенайзер и regex должны принимать одни и те же строки и выделять одинаковые поля
+    static boolean crossCheck(LineTokenizer tokenizer, String line) {
+        Matcher matcher = PATTERN.matcher(line);
+        boolean regexMatched = matcher.find();
+        if (tokenizer.tokenize(line) != regexMatched) {
+            return false;
+        }
+        if (!regexMatched) {
+            return true;
+        }
+        return tokenizer.ipAddress().equals(matcher.group(1))
+                && tokenizer.dateTime().equals(matcher.group(2))
+                && tokenizer.method().equals(matcher.group(3))
+                && tokenizer.path().equals(matcher.group(4))
+                && tokenizer.responseCode() == Integer.parseInt(matcher.group(5))
+                && tokenizer.bytesSent() == Long.parseLong(matcher.group(6))
+                && tokenizer.referer().equals(matcher.group(7))
+                && tokenizer.userAgent().equals(matcher.group(8));
     }
 }
@@ -0,0 +1,75 @@
+package service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Ограниченный кэш с вытеснением давно не использованных значений. Ключи разбиты
+// на сегменты по хэшу, каждый сегмент - LinkedHashMap в порядке доступа под своей
+// блокировкой, так что потоки с разными ключами почти не мешают друг другу.
+public final class LruCache<K, V> {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final int mask;
+
+    @SuppressWarnings("unchecked")
+    public LruCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity должен быть >= 1: " + capacity);
+        }
+        int count = Math.min(MAX_SEGMENTS, Integer.highestOneBit(capacity));
+        this.segments = (Segment<K, V>[]) new Segment<?, ?>[count];
+        this.mask = count - 1;
+        // Остаток от деления раздается первым сегментам, чтобы всего было ровно capacity
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>(capacity / count + (i < capacity % count ? 1 : 0));
+        }
+    }
+
+    // null, если значения нет
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Построчное чтение файла через FileChannel.map без декодирования в UTF-16.
+// Файл отображается окнами, поэтому размер не ограничен 2 ГБ.
+// Байты строки одним копированием попадают в переиспользуемый массив и
+// передаются обработчику как ByteSlice - сохранять его после возврата нельзя.
+// Прерывание потока останавливает чтение на границе строки (InterruptedIOException).
+public final class MappedLogReader {
+
+    static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+    public interface LineHandler {
+        // lineNumber считается от начала диапазона, offset - абсолютная позиция строки в файле
+        void onLine(ByteSlice line, long lineNumber, long offset) throws IOException;
+
+        // Строка длиннее LogParser.MAX_LINE_BYTES у потоковых источников: передается только начало
+        default void onLineTooLong(ByteSlice prefix, long lineNumber, long offset) throws IOException {
+        }
+    }
+
+    private MappedLogReader() {
+    }
+
+    // Читает строки диапазона [start, end); возвращает количество строк
+    public static long read(FileChannel channel, long start, long end, LineHandler handler) throws IOException {
+        return read(channel, start, end, DEFAULT_WINDOW_SIZE, handler);
+    }
+
+    static long read(FileChannel channel, long start, long end, int windowSize,
+                     LineHandler handler) throws IOException {
+        ByteSlice line = new ByteSlice();
+        byte[] lineBuffer = new byte[4096];
+        long lineNumber = 0;
+        long position = start;
+
+        while (position < end) {
+            int limit = (int) Math.min(windowSize, end - position);
+            boolean lastWindow = position + limit >= end;
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, limit);
+
+            int lineStart = 0;
+            for (int i = 0; i < limit; i++) {
+                if (window.get(i) == '\n') {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Чтение прервано на позиции " + (position + i));
+                    }
+                    lineBuffer = copyLine(window, lineStart, i, lineBuffer);
+                    handler.onLine(line.reset(lineBuffer, 0, lineLength(lineBuffer, i - lineStart)),
+                            ++lineNumber, position + lineStart);
+                    lineStart = i + 1;
+                }
+            }
+
+            if (lastWindow || lineStart == 0) {
+                // Хвост без перевода строки в конце файла или строка длиннее окна
+                if (lineStart < limit) {
+                    lineBuffer = copyLine(window, lineStart, limit, lineBuffer);
+                    handler.onLine(line.reset(lineBuffer, 0, lineLength(lineBuffer, limit - lineStart)),
+                            ++lineNumber, position + lineStart);
+                }
+                position += limit;
+            } else {
+                // Незаконченная строка переходит в следующее окно
+                position += lineStart;
+            }
+        }
+
+        return lineNumber;
+    }
+
+    // Число переводов строки в [start, end). Нужно ParallelLogParser, только когда ошибка
+    // случилась в диапазоне, чьи предшественники еще разбираются
+    public static long countLines(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        byte[] bytes = buffer.array();
+        long lines = 0;
+        long position = start;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            int n = channel.read(buffer, position);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (bytes[i] == '\n') {
+                    lines++;
+                }
+            }
+            position += n;
+        }
+        return lines;
+    }
+
+    private static byte[] copyLine(MappedByteBuffer window, int start, int end, byte[] lineBuffer) {
+        int length = end - start;
+        if (length > lineBuffer.length) {
+            lineBuffer = new byte[Math.max(length, lineBuffer.length * 2)];
+        }
+        window.position(start);
+        window.get(lineBuffer, 0, length);
+        return lineBuffer;
+    }
+
+    // Длина строки без завершающего '\r', как у BufferedReader.readLine
+    private static int lineLength(byte[] lineBuffer, int length) {
+        if (length > 0 && lineBuffer[length - 1] == '\r') {
+            return length - 1;
+        }
+        return length;
+    }
+
+    // Позиция сразу после последнего '\n' в первых size байтах, 0 - если переводов строки нет.
+    // Всё после нее - строка, которую, возможно, еще дописывают.
+    public static long lastLineEnd(FileChannel channel, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long end = size;
+        while (end > 0) {
+            long start = Math.max(0, end - buffer.capacity());
+            buffer.clear().limit((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) <= 0) {
+                    break;
+                }
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+}
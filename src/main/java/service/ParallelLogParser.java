@@ -0,0 +1,327 @@
+package service;
+
+import model.LogEntry;
+import service.format.LogFormat;
+import service.query.LogQuery;
+import service.stats.LogAggregator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+// Параллельный разбор файла: файл режется на диапазоны байт по границам строк,
+// каждый поток берет диапазоны из общей очереди и копит статистику в своем агрегаторе,
+// в конце агрегаторы сливаются. Результат совпадает с последовательным LogParser.
+// Ошибки получают номер строки в файле, как при последовательном разборе (см. LineNumbering).
+// После сбоя в одном потоке остальные останавливаются и дожидаются, прежде чем исключение
+// уйдет вызывающему: иначе они сообщали бы об ошибках уже после подведения итогов.
+// Слушатель вызывается из нескольких потоков и должен быть потокобезопасным.
+public class ParallelLogParser {
+
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 60;
+
+    private final int threads;
+    private final ParseListener listener;
+    private final LogQuery filter;
+    private final LogFormat format;
+    private long linesRead;
+
+    public ParallelLogParser(int threads) {
+        this(threads, ParseListener.NONE);
+    }
+
+    public ParallelLogParser(int threads, ParseListener listener) {
+        this(threads, listener, null);
+    }
+
+    // filter == null - без отбора записей
+    public ParallelLogParser(int threads, ParseListener listener, LogQuery filter) {
+        this(threads, listener, filter, null);
+    }
+
+    // format == null - combined-формат
+    public ParallelLogParser(int threads, ParseListener listener, LogQuery filter, LogFormat format) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads должен быть >= 1: " + threads);
+        }
+        this.threads = threads;
+        this.listener = listener;
+        this.filter = filter;
+        this.format = format;
+    }
+
+    public <A extends LogAggregator<A>> A parse(Path path, Supplier<A> aggregatorFactory) throws IOException {
+        return parseRange(path, 0, Long.MAX_VALUE, aggregatorFactory);
+    }
+
+    // Только байты [start, end) файла; start должен быть началом строки, end обрезается по размеру.
+    // Строки нумеруются от начала диапазона
+    public <A extends LogAggregator<A>> A parseRange(Path path, long start, long end,
+                                                     Supplier<A> aggregatorFactory) throws IOException {
+        return parseRange(path, start, end, 1, aggregatorFactory);
+    }
+
+    // firstLine - номер в файле строки, с которой начинается start
+    public <A extends LogAggregator<A>> A parseRange(Path path, long start, long end, long firstLine,
+                                                     Supplier<A> aggregatorFactory) throws IOException {
+        linesRead = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<long[]> chunks = split(channel, start, Math.min(end, channel.size()));
+            int workers = Math.min(threads, chunks.size());
+            if (workers == 0) {
+                listener.onComplete(0, 0);
+                return aggregatorFactory.get();
+            }
+
+            AtomicInteger nextChunk = new AtomicInteger();
+            SharedProgress progress = new SharedProgress(listener);
+            LineNumbering numbering = new LineNumbering(channel, chunks, firstLine);
+            ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(runnable, "log-parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            try {
+                List<Future<Worker<A>>> futures = new ArrayList<>();
+                for (int i = 0; i < workers; i++) {
+                    ChunkListener chunkListener = new ChunkListener(progress, numbering);
+                    Worker<A> worker = new Worker<>(new LogParser(chunkListener, FieldDictionaries.DEFAULT, filter, format), aggregatorFactory.get());
+                    futures.add(executor.submit(() -> {
+                        int index;
+                        while ((index = nextChunk.getAndIncrement()) < chunks.size()) {
+                            long[] chunk = chunks.get(index);
+                            long linesBefore = worker.parser.getLinesRead();
+                            chunkListener.chunk = index;
+                            worker.parsed += worker.parser.parseRange(channel, chunk[0], chunk[1], worker.aggregator);
+                            long chunkLines = worker.parser.getLinesRead() - linesBefore;
+                            numbering.chunkParsed(index, chunkLines);
+                            progress.advance(chunkLines);
+                        }
+                        return worker;
+                    }));
+                }
+
+                A result = aggregatorFactory.get();
+                long linesRead = 0;
+                long parsed = 0;
+                for (Future<Worker<A>> future : futures) {
+                    Worker<A> worker = future.get();
+                    result.merge(worker.aggregator);
+                    linesRead += worker.parser.getLinesRead();
+                    parsed += worker.parsed;
+                }
+                this.linesRead = linesRead;
+                listener.onComplete(linesRead, parsed);
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Параллельный разбор прерван", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                if (e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                }
+                if (e.getCause() instanceof ErrorBudgetExceededException) {
+                    throw (ErrorBudgetExceededException) e.getCause();
+                }
+                throw new IOException("Ошибка в потоке разбора: " + e.getCause(), e.getCause());
+            } finally {
+                executor.shutdownNow();
+                awaitTermination(executor);
+            }
+        }
+    }
+
+    // Сколько строк прочитал последний разбор
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    // Прерванные потоки останавливаются на границе строки; ждем их, чтобы после возврата
+    // слушатель уже ничего не получал
+    static void awaitTermination(ExecutorService executor) {
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Диапазоны [start, end), каждый начинается с начала строки
+    private List<long[]> split(FileChannel channel, long from, long to) throws IOException {
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, (to - from) / ((long) threads * CHUNKS_PER_THREAD) + 1);
+
+        List<long[]> chunks = new ArrayList<>();
+        long start = from;
+        while (start < to) {
+            long end = start + chunkSize >= to ? to : nextLineStart(channel, start + chunkSize, to);
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    // Позиция сразу после первого '\n', начиная с from
+    static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += n;
+        }
+        return size;
+    }
+
+    private static final class Worker<A> {
+        final LogParser parser;
+        final A aggregator;
+        long parsed;
+
+        Worker(LogParser parser, A aggregator) {
+            this.parser = parser;
+            this.aggregator = aggregator;
+        }
+    }
+
+    // Номера строк в файле для ошибок. Диапазон разбирается с номерами от своего начала;
+    // к ним прибавляется число строк во всех предыдущих диапазонах. Разобранные диапазоны
+    // сообщают его сами, а еще не разобранные пересчитываются только при первой ошибке
+    // в следующем за ними диапазоне - обычно это несколько диапазонов, которые как раз
+    // читают соседние потоки, а не весь файл заранее
+    private static final class LineNumbering {
+        private static final long UNKNOWN = -1;
+
+        private final FileChannel channel;
+        private final List<long[]> chunks;
+        private final AtomicLongArray chunkLines;
+        private final AtomicLongArray firstLines;
+
+        LineNumbering(FileChannel channel, List<long[]> chunks, long firstLine) {
+            this.channel = channel;
+            this.chunks = chunks;
+            this.chunkLines = new AtomicLongArray(chunks.size());
+            this.firstLines = new AtomicLongArray(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                chunkLines.set(i, UNKNOWN);
+                firstLines.set(i, UNKNOWN);
+            }
+            firstLines.set(0, firstLine);
+        }
+
+        void chunkParsed(int index, long lines) {
+            chunkLines.set(index, lines);
+        }
+
+        // Номер в файле первой строки диапазона
+        long firstLine(int index) {
+            long cached = firstLines.get(index);
+            if (cached != UNKNOWN) {
+                return cached;
+            }
+            // От ближайшего слева диапазона с известным началом
+            int from = index - 1;
+            while (firstLines.get(from) == UNKNOWN) {
+                from--;
+            }
+            long line = firstLines.get(from);
+            for (int i = from; i < index; i++) {
+                line += linesIn(i);
+                firstLines.set(i + 1, line);
+            }
+            return line;
+        }
+
+        private long linesIn(int index) {
+            long lines = chunkLines.get(index);
+            if (lines == UNKNOWN) {
+                // Диапазоны кончаются переводом строки, так что строк в нем столько же, сколько '\n'
+                long[] chunk = chunks.get(index);
+                try {
+                    lines = MappedLogReader.countLines(channel, chunk[0], chunk[1]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                chunkLines.set(index, lines);
+            }
+            return lines;
+        }
+    }
+
+    // Слушатель одного потока: переводит номера строк диапазона в номера строк файла
+    private static final class ChunkListener implements ParseListener {
+        private final ParseListener delegate;
+        private final LineNumbering numbering;
+        int chunk;
+
+        ChunkListener(ParseListener delegate, LineNumbering numbering) {
+            this.delegate = delegate;
+            this.numbering = numbering;
+        }
+
+        @Override
+        public void onParsed(LogEntry entry) {
+            delegate.onParsed(entry);
+        }
+
+        @Override
+        public void onFailure(long lineNumber, long offset, CharSequence line, FailureReason reason) {
+            delegate.onFailure(numbering.firstLine(chunk) + lineNumber - 1, offset, line, reason);
+        }
+    }
+
+    // Прогресс считается по завершенным диапазонам в общем счетчике строк,
+    // собственный прогресс парсеров отдельных потоков не передается
+    private static final class SharedProgress implements ParseListener {
+        private final ParseListener delegate;
+        private final AtomicLong linesRead = new AtomicLong();
+
+        SharedProgress(ParseListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onParsed(LogEntry entry) {
+            delegate.onParsed(entry);
+        }
+
+        @Override
+        public void onFailure(long lineNumber, long offset, CharSequence line, FailureReason reason) {
+            delegate.onFailure(lineNumber, offset, line, reason);
+        }
+
+        void advance(long lines) {
+            long after = linesRead.addAndGet(lines);
+            long before = after - lines;
+            if (before / LogParser.PROGRESS_INTERVAL != after / LogParser.PROGRESS_INTERVAL) {
+                delegate.onProgress(after / LogParser.PROGRESS_INTERVAL * LogParser.PROGRESS_INTERVAL);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package service;
+
+import model.LogEntry;
+
+// Диагностика парсинга. По умолчанию все методы пустые, поэтому
+// при выключенной диагностике горячий путь не собирает никаких строк.
+public interface ParseListener {
+
+    ParseListener NONE = new ParseListener() { };
+
+    default void onParsed(LogEntry entry) { }
+
+    // lineNumber - номер строки в файле (при слежении с конца файла - от начала слежения),
+    // offset - байт начала строки от начала файла (LogParser.UNKNOWN_OFFSET, если неизвестен).
+    // line может указывать в переиспользуемый буфер: чтобы сохранить, нужен line.toString()
+    default void onFailure(long lineNumber, long offset, CharSequence line, FailureReason reason) { }
+
+    // Вызывается раз в LogParser.PROGRESS_INTERVAL строк
+    default void onProgress(long linesRead) { }
+
+    default void onComplete(long linesRead, long entriesParsed) { }
+}
@@ -0,0 +1,332 @@
+package service;
+
+import service.format.LogFormat;
+import service.query.LogQuery;
+import service.stats.LogAggregator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+// Конвейер для потоковых источников (.gz, сеть, медленный диск): поток чтения режет байты
+// на блоки по batchLines целых строк (или меньше, если блок дорос до MAX_BATCH_BYTES), потоки разбора берут блоки из ограниченной очереди
+// и копят статистику каждый в своем агрегаторе, в конце агрегаторы сливаются.
+// Пока разбор занят блоком, чтение и распаковка уже готовят следующий. Если разбор
+// не успевает, очередь заполняется и чтение ждет; буферы блоков переиспользуются,
+// так что память ограничена (queueCapacity + threads + 1) блоками. Строка длиннее
+// LogParser.MAX_LINE_BYTES уходит в блок только началом и отвергается как LINE_TOO_LONG,
+// остаток до перевода строки пропускается - иначе испорченный .gz без переводов строк
+// раздувал бы один блок до размера всего файла.
+// На JDK 21+ чтение идет в виртуальном потоке, на старых JDK - в обычном;
+// разбор нагружает процессор, поэтому всегда идет в пуле обычных потоков.
+public class PipelineLogParser {
+
+    public static final int DEFAULT_BATCH_LINES = 8192;
+
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    // Чтение порциями, чтобы блок закрывался вскоре после набора batchLines строк
+    private static final int READ_SIZE = 64 * 1024;
+    private static final int INITIAL_BATCH_BYTES = 1024 * 1024;
+    // Блок закрывается и раньше batchLines строк, если длинные строки набрали столько байт
+    private static final int MAX_BATCH_BYTES = 4 * INITIAL_BATCH_BYTES;
+    private static final Method VIRTUAL_EXECUTOR = findVirtualExecutor();
+
+    private final int threads;
+    private final int batchLines;
+    private final int queueCapacity;
+    private final ParseListener listener;
+    private final LogQuery filter;
+    private final LogFormat format;
+
+    public PipelineLogParser(int threads, ParseListener listener) {
+        this(threads, DEFAULT_BATCH_LINES, threads * 2, listener, null);
+    }
+
+    // filter == null - без отбора записей
+    public PipelineLogParser(int threads, ParseListener listener, LogQuery filter) {
+        this(threads, DEFAULT_BATCH_LINES, threads * 2, listener, filter);
+    }
+
+    // format == null - combined-формат
+    public PipelineLogParser(int threads, ParseListener listener, LogQuery filter, LogFormat format) {
+        this(threads, DEFAULT_BATCH_LINES, threads * 2, listener, filter, format);
+    }
+
+    public PipelineLogParser(int threads, int batchLines, int queueCapacity, ParseListener listener,
+                             LogQuery filter) {
+        this(threads, batchLines, queueCapacity, listener, filter, null);
+    }
+
+    public PipelineLogParser(int threads, int batchLines, int queueCapacity, ParseListener listener,
+                             LogQuery filter, LogFormat format) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads должен быть >= 1: " + threads);
+        }
+        if (batchLines < 1) {
+            throw new IllegalArgumentException("batchLines должен быть >= 1: " + batchLines);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity должен быть >= 1: " + queueCapacity);
+        }
+        this.threads = threads;
+        this.batchLines = batchLines;
+        this.queueCapacity = queueCapacity;
+        this.listener = listener;
+        this.filter = filter;
+        this.format = format;
+    }
+
+    // Есть ли в этой JVM виртуальные потоки (JDK 21+)
+    public static boolean isVirtualThreadsAvailable() {
+        return VIRTUAL_EXECUTOR != null;
+    }
+
+    // Файл целиком; *.gz распаковывается на лету
+    public <A extends LogAggregator<A>> A parse(Path path, Supplier<A> aggregatorFactory) throws IOException {
+        try (InputStream in = path.getFileName().toString().endsWith(GZIP_EXTENSION)
+                ? new GZIPInputStream(Files.newInputStream(path), GZIP_BUFFER_SIZE)
+                : Files.newInputStream(path)) {
+            return parse(in, aggregatorFactory);
+        }
+    }
+
+    // Поток читается до конца, но не закрывается
+    public <A extends LogAggregator<A>> A parse(InputStream in, Supplier<A> aggregatorFactory) throws IOException {
+        BlockingQueue<Batch> filled = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Batch> free = new ArrayBlockingQueue<>(queueCapacity + threads + 1);
+        for (int i = 0; i < queueCapacity + threads + 1; i++) {
+            free.add(new Batch(INITIAL_BATCH_BYTES));
+        }
+
+        ExecutorService reader = newReaderExecutor();
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            Future<Long> reading = reader.submit(() -> read(in, filled, free));
+            List<Future<Worker<A>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Worker<A> worker = new Worker<>(new LogParser(listener, FieldDictionaries.DEFAULT, filter, format), aggregatorFactory.get());
+                futures.add(parsers.submit(() -> {
+                    Batch batch;
+                    while ((batch = filled.take()) != Batch.END) {
+                        worker.parsed += worker.parser.parseLines(batch.bytes, batch.length, batch.firstLine,
+                                batch.firstOffset, batch.lastLineTooLong, worker.aggregator);
+                        free.add(batch);
+                    }
+                    return worker;
+                }));
+            }
+
+            A result = aggregatorFactory.get();
+            long parsed = 0;
+            for (Future<Worker<A>> future : futures) {
+                Worker<A> worker = future.get();
+                result.merge(worker.aggregator);
+                parsed += worker.parsed;
+            }
+            long linesRead = reading.get();
+            listener.onComplete(linesRead, parsed);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Конвейерный разбор прерван", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof ErrorBudgetExceededException) {
+                throw (ErrorBudgetExceededException) e.getCause();
+            }
+            throw new IOException("Ошибка в потоке разбора: " + e.getCause(), e.getCause());
+        } finally {
+            // Прерывает чтение, если оно ждет места в очереди после сбоя разбора, и ждет
+            // потоки разбора: начатый блок они дорабатывают, и его ошибки должны прийти
+            // слушателю до того, как исключение уйдет вызывающему
+            reader.shutdownNow();
+            parsers.shutdownNow();
+            ParallelLogParser.awaitTermination(reader);
+            ParallelLogParser.awaitTermination(parsers);
+        }
+    }
+
+    // Возвращает количество строк. Каждый разборщик в конце получает END - и после ошибки чтения,
+    // чтобы уже прочитанные блоки были разобраны, а ошибка пришла из reading.get()
+    private long read(InputStream in, BlockingQueue<Batch> filled, BlockingQueue<Batch> free)
+            throws IOException, InterruptedException {
+        long lines = 0;
+        long offset = 0;
+        try {
+            Batch batch = free.take().start(1, 0);
+            int batchLineCount = 0;
+            int lastLineEnd = 0;
+            // Отбрасывается хвост слишком длинной строки; новый блок пока пуст
+            boolean skipping = false;
+            int n;
+            while ((n = in.read(batch.ensureSpace(READ_SIZE), batch.length, READ_SIZE)) >= 0) {
+                byte[] bytes = batch.bytes;
+                int scanFrom = batch.length;
+                batch.length += n;
+                if (skipping) {
+                    int newline = indexOfNewline(bytes, 0, batch.length);
+                    if (newline < 0) {
+                        offset += batch.length;
+                        batch.length = 0;
+                        continue;
+                    }
+                    offset += newline + 1;
+                    batch.length -= newline + 1;
+                    System.arraycopy(bytes, newline + 1, bytes, 0, batch.length);
+                    batch.firstOffset = offset;
+                    scanFrom = 0;
+                    skipping = false;
+                }
+                for (int i = scanFrom; i < batch.length; i++) {
+                    if (bytes[i] == '\n') {
+                        batchLineCount++;
+                        lastLineEnd = i + 1;
+                    }
+                }
+
+                boolean lineTooLong = batch.length - lastLineEnd > LogParser.MAX_LINE_BYTES;
+                if (batchLineCount >= batchLines
+                        || (batchLineCount > 0 && (batch.length >= MAX_BATCH_BYTES || lineTooLong))) {
+                    // Незаконченная строка переносится в начало следующего блока
+                    lines += batchLineCount;
+                    offset += lastLineEnd;
+                    Batch next = free.take().start(lines + 1, offset);
+                    int tail = batch.length - lastLineEnd;
+                    System.arraycopy(batch.bytes, lastLineEnd, next.ensureSpace(tail), 0, tail);
+                    next.length = tail;
+                    batch.length = lastLineEnd;
+                    filled.put(batch);
+                    batch = next;
+                    batchLineCount = 0;
+                    lastLineEnd = 0;
+                }
+                if (lineTooLong) {
+                    // Блок теперь начинается с этой строки: уходит только ее начало
+                    lines++;
+                    offset += batch.length;
+                    batch.length = LogParser.MAX_LINE_BYTES;
+                    batch.lastLineTooLong = true;
+                    filled.put(batch);
+                    batch = free.take().start(lines + 1, offset);
+                    skipping = true;
+                }
+            }
+
+            if (batch.length > lastLineEnd) {
+                batchLineCount++;
+            }
+            lines += batchLineCount;
+            if (batch.length > 0) {
+                filled.put(batch);
+            }
+        } finally {
+            if (!Thread.currentThread().isInterrupted()) {
+                for (int i = 0; i < threads; i++) {
+                    filled.put(Batch.END);
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static int indexOfNewline(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static ExecutorService newReaderExecutor() {
+        if (VIRTUAL_EXECUTOR != null) {
+            try {
+                return (ExecutorService) VIRTUAL_EXECUTOR.invoke(null);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                // виртуальные потоки недоступны (например, preview-версия без --enable-preview)
+            }
+        }
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor через отражение, чтобы код собирался под Java 11
+    private static Method findVirtualExecutor() {
+        if (Runtime.version().feature() < 21) {
+            return null;
+        }
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    // Блок байт из целых строк; firstLine и firstOffset - номер и смещение первой строки в источнике
+    private static final class Batch {
+        static final Batch END = new Batch(0);
+
+        byte[] bytes;
+        int length;
+        long firstLine;
+        long firstOffset;
+        // Последняя строка - только начало строки длиннее LogParser.MAX_LINE_BYTES
+        boolean lastLineTooLong;
+
+        Batch(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        Batch start(long firstLine, long firstOffset) {
+            this.length = 0;
+            this.firstLine = firstLine;
+            this.firstOffset = firstOffset;
+            this.lastLineTooLong = false;
+            return this;
+        }
+
+        // Массив, в котором после length есть место еще на space байт
+        byte[] ensureSpace(int space) {
+            if (bytes.length - length < space) {
+                byte[] grown = new byte[Math.max(bytes.length * 2, length + space)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+            return bytes;
+        }
+    }
+
+    private static final class Worker<A> {
+        final LogParser parser;
+        final A aggregator;
+        long parsed;
+
+        Worker(LogParser parser, A aggregator) {
+            this.parser = parser;
+            this.aggregator = aggregator;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package service;
+
+import model.LogEntry;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Карантин для отвергнутых строк: номер строки, смещение в байтах, причина и сама строка
+// через табуляцию, по строке на запись. Записи копятся в буфере и пишутся в файл пачками
+// по BATCH_RECORDS, поэтому всплеск мусора не превращается в запись на каждую строку.
+// Управляющие символы и табуляции в строке экранируются, длинные строки обрезаются.
+// Оборачивает другой слушатель; потокобезопасен, если потокобезопасен он.
+public final class QuarantineWriter implements ParseListener, Closeable {
+
+    static final int BATCH_RECORDS = 1024;
+    static final int MAX_LINE_CHARS = 4096;
+    private static final String HEADER = "# line\toffset\treason\ttext\n";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ParseListener delegate;
+    private final BufferedWriter out;
+    private final StringBuilder batch = new StringBuilder();
+    private int batchRecords;
+    private long records;
+    // Первая ошибка записи; после нее карантин молчит, а close() ее бросает
+    private IOException error;
+
+    public QuarantineWriter(Path file, ParseListener delegate) throws IOException {
+        this.delegate = delegate;
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        out.write(HEADER);
+    }
+
+    @Override
+    public void onParsed(LogEntry entry) {
+        delegate.onParsed(entry);
+    }
+
+    @Override
+    public void onFailure(long lineNumber, long offset, CharSequence line, FailureReason reason) {
+        // Для ByteSlice toString() декодирует байты UTF-8; строку нужно скопировать до возврата
+        String text = line.toString();
+        synchronized (this) {
+            batch.append(lineNumber).append('\t').append(offset).append('\t').append(reason).append('\t');
+            appendEscaped(batch, text);
+            batch.append('\n');
+            records++;
+            if (++batchRecords >= BATCH_RECORDS) {
+                flushBatch();
+            }
+        }
+        delegate.onFailure(lineNumber, offset, line, reason);
+    }
+
+    @Override
+    public void onProgress(long linesRead) {
+        delegate.onProgress(linesRead);
+    }
+
+    @Override
+    public void onComplete(long linesRead, long entriesParsed) {
+        synchronized (this) {
+            flushBatch();
+            flushFile();
+        }
+        delegate.onComplete(linesRead, entriesParsed);
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flushBatch();
+        try {
+            out.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void flushBatch() {
+        if (batch.length() > 0 && error == null) {
+            try {
+                out.write(batch.toString());
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        batch.setLength(0);
+        batchRecords = 0;
+    }
+
+    private void flushFile() {
+        if (error == null) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    private static void appendEscaped(StringBuilder target, String text) {
+        int length = Math.min(text.length(), MAX_LINE_CHARS);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                target.append("\\\\");
+            } else if (c == '\t') {
+                target.append("\\t");
+            } else if (c == '\r') {
+                target.append("\\r");
+            } else if (c < 0x20 || c == 0x7f) {
+                target.append("\\x").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+            } else {
+                target.append(c);
+            }
+        }
+        if (text.length() > MAX_LINE_CHARS) {
+            target.append("...");
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package service;
 
 import model.LogEntry;
+import service.stats.StatisticsAggregator;
+import service.stats.StatisticsReport;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 public class StatisticsCalculator {
 
@@ -13,117 +13,137 @@ public class StatisticsCalculator {
             return;
         }
 
+        StatisticsAggregator stats = new StatisticsAggregator();
+        entries.forEach(stats);
+        printStatistics(stats);
+    }
+
+    // Вывод уже посчитанной статистики, например после LogParser.parse(path, stats)
+    public void printStatistics(StatisticsAggregator stats) {
+        printReport(stats.report());
+    }
+
+    public void printReport(StatisticsReport report) {
+        if (report.getTotalRequests() == 0) {
+            System.out.println("Нет данных для анализа");
+            return;
+        }
+
         System.out.println("=== СТАТИСТИКА ПО ЛОГАМ ===");
-        System.out.println("Общее количество запросов: " + entries.size());
-
-        calculateResponseCodeStats(entries);
-        calculateTopIPs(entries);
-        calculateTrafficStats(entries);
-        calculateMethodStats(entries);
-        calculateHourlyActivity(entries);
-        calculateBrowserStats(entries);
+        System.out.println("Общее количество запросов: " + report.getTotalRequests());
+        System.out.println("Уникальных IP-адресов (оценка): " + report.getDistinctIps());
+        System.out.println("Уникальных путей (оценка): " + report.getDistinctPaths());
+
+        printResponseCodeStats(report);
+        printTopIPs(report);
+        printTrafficStats(report);
+        printMethodStats(report);
+        printHourlyActivity(report);
+        printBrowserStats(report);
+        printBotStats(report);
     }
 
-    private void calculateResponseCodeStats(List<LogEntry> entries) {
+    private void printResponseCodeStats(StatisticsReport report) {
         System.out.println("\n1. Статистика по кодам ответов:");
 
-        Map<Integer, Long> responseCodeStats = entries.stream()
-                .collect(Collectors.groupingBy(LogEntry::getResponseCode, Collectors.counting()));
-
-        responseCodeStats.forEach((code, count) -> {
-            double percentage = (count * 100.0) / entries.size();
+        report.getResponseCodes().forEach((code, count) -> {
+            double percentage = (count * 100.0) / report.getTotalRequests();
             System.out.printf("  Код %d: %d запросов (%.1f%%)%n", code, count, percentage);
         });
     }
 
-    private void calculateTopIPs(List<LogEntry> entries) {
+    private void printTopIPs(StatisticsReport report) {
         System.out.println("\n2. Топ 10 IP-адресов:");
+        if (report.getTopIpsMaxError() > 0) {
+            System.out.printf("  (приближенный подсчет, погрешность не больше %d запросов)%n",
+                    report.getTopIpsMaxError());
+        }
 
-        Map<String, Long> ipStats = entries.stream()
-                .collect(Collectors.groupingBy(LogEntry::getIpAddress, Collectors.counting()));
-
-        ipStats.entrySet().stream()
-                .sorted((e1, e2) -> Long.compare(e2.getValue(), e1.getValue()))
-                .limit(10)
-                .forEach(entry -> {
-                    double percentage = (entry.getValue() * 100.0) / entries.size();
-                    System.out.printf("  %s: %d запросов (%.1f%%)%n",
-                            entry.getKey(), entry.getValue(), percentage);
-                });
+        report.getTopIps().forEach(entry -> {
+            double percentage = (entry.getValue() * 100.0) / report.getTotalRequests();
+            System.out.printf("  %s: %d запросов (%.1f%%)%n",
+                    entry.getKey(), entry.getValue(), percentage);
+        });
+
+        report.getTopSubnets().forEach((level, subnets) -> {
+            System.out.println("  Топ подсетей " + level + ":");
+            subnets.forEach(entry -> {
+                double percentage = (entry.getValue() * 100.0) / report.getTotalRequests();
+                System.out.printf("    %s: %d запросов (%.1f%%)%n",
+                        entry.getKey(), entry.getValue(), percentage);
+            });
+        });
     }
 
-    private void calculateTrafficStats(List<LogEntry> entries) {
+    private void printTrafficStats(StatisticsReport report) {
         System.out.println("\n3. Статистика трафика:");
 
-        long totalTraffic = entries.stream()
-                .mapToLong(LogEntry::getBytesSent)
-                .sum();
-
-        long maxTraffic = entries.stream()
-                .mapToLong(LogEntry::getBytesSent)
-                .max()
-                .orElse(0);
-
-        double avgTraffic = entries.stream()
-                .mapToLong(LogEntry::getBytesSent)
-                .average()
-                .orElse(0);
+        long totalTraffic = report.getTotalBytes();
 
         System.out.printf("  Общий трафик: %d байт (%.2f MB)%n",
                 totalTraffic, totalTraffic / (1024.0 * 1024.0));
-        System.out.printf("  Максимальный размер ответа: %d байт%n", maxTraffic);
-        System.out.printf("  Средний размер ответа: %.0f байт%n", avgTraffic);
+        System.out.printf("  Максимальный размер ответа: %d байт%n", report.getMaxBytes());
+        System.out.printf("  Средний размер ответа: %.0f байт%n", report.getAverageBytes());
+        System.out.println("  Размер ответа p50 / p95 / p99 / p99.9:");
+        printSizeQuantiles("все", report.getSizeQuantiles());
+        report.getSizeQuantilesByStatusClass().forEach(this::printSizeQuantiles);
+        // Время ответа есть только у логов в настраиваемом формате с $request_time и т.п.
+        if (report.getRequestTimeCount() > 0 || report.getUpstreamTimeCount() > 0) {
+            System.out.println("  Время ответа p50 / p95 / p99 / p99.9:");
+            printLatencyQuantiles("запрос", report.getRequestTimeCount(), report.getRequestTimeQuantiles());
+            printLatencyQuantiles("upstream", report.getUpstreamTimeCount(), report.getUpstreamTimeQuantiles());
+        }
     }
 
-    private void calculateMethodStats(List<LogEntry> entries) {
-        System.out.println("\n4. Статистика по HTTP-методам:");
+    private void printSizeQuantiles(String label, long[] quantiles) {
+        System.out.printf("    %s: %d / %d / %d / %d байт%n",
+                label, quantiles[0], quantiles[1], quantiles[2], quantiles[3]);
+    }
+
+    private void printLatencyQuantiles(String label, long count, long[] micros) {
+        if (count > 0) {
+            System.out.printf("    %s: %.1f / %.1f / %.1f / %.1f мс (%d записей)%n", label,
+                    micros[0] / 1000.0, micros[1] / 1000.0, micros[2] / 1000.0, micros[3] / 1000.0, count);
+        }
+    }
 
-        Map<String, Long> methodStats = entries.stream()
-                .collect(Collectors.groupingBy(LogEntry::getMethod, Collectors.counting()));
+    private void printMethodStats(StatisticsReport report) {
+        System.out.println("\n4. Статистика по HTTP-методам:");
 
-        methodStats.forEach((method, count) -> {
-            double percentage = (count * 100.0) / entries.size();
+        report.getMethods().forEach((method, count) -> {
+            double percentage = (count * 100.0) / report.getTotalRequests();
             System.out.printf("  %s: %d запросов (%.1f%%)%n", method, count, percentage);
         });
     }
 
-    private void calculateHourlyActivity(List<LogEntry> entries) {
+    private void printHourlyActivity(StatisticsReport report) {
         System.out.println("\n5. Активность по часам:");
 
-        Map<Integer, Long> hourlyStats = entries.stream()
-                .collect(Collectors.groupingBy(
-                        entry -> entry.getTimestamp().getHour(),
-                        Collectors.counting()
-                ));
-
-        hourlyStats.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .forEach(entry -> {
-                    System.out.printf("  Час %02d:00: %d запросов%n",
-                            entry.getKey(), entry.getValue());
-                });
+        for (int hour = 0; hour < 24; hour++) {
+            long count = report.getHourlyCount(hour);
+            if (count > 0) {
+                System.out.printf("  Час %02d:00: %d запросов%n", hour, count);
+            }
+        }
     }
 
-    private void calculateBrowserStats(List<LogEntry> entries) {
-        System.out.println("\n6. Статистика по браузерам:");
-
-        Map<String, Long> browserStats = entries.stream()
-                .collect(Collectors.groupingBy(
-                        entry -> {
-                            String userAgent = entry.getUserAgent().toLowerCase();
-                            if (userAgent.contains("chrome")) return "Chrome";
-                            if (userAgent.contains("firefox")) return "Firefox";
-                            if (userAgent.contains("safari")) return "Safari";
-                            if (userAgent.contains("edge")) return "Edge";
-                            if (userAgent.contains("opera")) return "Opera";
-                            return "Other";
-                        },
-                        Collectors.counting()
-                ));
-
-        browserStats.forEach((browser, count) -> {
-            double percentage = (count * 100.0) / entries.size();
+    private void printBrowserStats(StatisticsReport report) {
+        System.out.println("\n6. Статистика по браузерам (без ботов):");
+
+        long humanRequests = report.getTotalRequests() - report.getBotRequests();
+        report.getBrowsers().forEach((browser, count) -> {
+            double percentage = (count * 100.0) / humanRequests;
             System.out.printf("  %s: %d запросов (%.1f%%)%n", browser, count, percentage);
         });
     }
+
+    private void printBotStats(StatisticsReport report) {
+        System.out.printf("%n7. Боты и краулеры: %d запросов (%.1f%%)%n", report.getBotRequests(),
+                report.getBotRequests() * 100.0 / report.getTotalRequests());
+
+        report.getBots().forEach((bot, count) -> {
+            double percentage = (count * 100.0) / report.getBotRequests();
+            System.out.printf("  %s: %d запросов (%.1f%%)%n", bot, count, percentage);
+        });
+    }
 }
@@ -0,0 +1,83 @@
+package service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Построчное чтение потока байт (например, распакованного .gz) без декодирования в UTF-16,
+// по тому же контракту, что и MappedLogReader: строка передается как ByteSlice
+// в переиспользуемый буфер, offset считается в байтах от начала потока.
+// Буфер растет не больше чем до LogParser.MAX_LINE_BYTES: от более длинной строки
+// обработчик получает только начало (onLineTooLong), остальное до перевода строки пропускается.
+public final class StreamLogReader {
+
+    static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    private StreamLogReader() {
+    }
+
+    // Читает поток до конца; возвращает количество строк. Поток не закрывает.
+    public static long read(InputStream in, MappedLogReader.LineHandler handler) throws IOException {
+        return read(in, DEFAULT_BUFFER_SIZE, handler);
+    }
+
+    static long read(InputStream in, int bufferSize, MappedLogReader.LineHandler handler) throws IOException {
+        ByteSlice line = new ByteSlice();
+        byte[] buffer = new byte[bufferSize];
+        int filled = 0;
+        long bufferOffset = 0;
+        long lineNumber = 0;
+        // Отбрасывается хвост слишком длинной строки, до ближайшего перевода строки
+        boolean skipping = false;
+
+        int n;
+        while ((n = in.read(buffer, filled, buffer.length - filled)) >= 0) {
+            int scanFrom = filled;
+            filled += n;
+            int lineStart = 0;
+            for (int i = scanFrom; i < filled; i++) {
+                if (buffer[i] == '\n') {
+                    if (skipping) {
+                        skipping = false;
+                    } else {
+                        handler.onLine(line.reset(buffer, lineStart, lineLength(buffer, lineStart, i)),
+                                ++lineNumber, bufferOffset + lineStart);
+                    }
+                    lineStart = i + 1;
+                }
+            }
+
+            // Незаконченная строка переносится в начало буфера; если она занимает весь буфер - он растет
+            if (skipping) {
+                bufferOffset += filled;
+                filled = 0;
+            } else if (lineStart > 0) {
+                System.arraycopy(buffer, lineStart, buffer, 0, filled - lineStart);
+                filled -= lineStart;
+                bufferOffset += lineStart;
+            } else if (filled == buffer.length && buffer.length < LogParser.MAX_LINE_BYTES) {
+                byte[] grown = new byte[Math.min(buffer.length * 2, LogParser.MAX_LINE_BYTES)];
+                System.arraycopy(buffer, 0, grown, 0, filled);
+                buffer = grown;
+            } else if (filled == buffer.length) {
+                handler.onLineTooLong(line.reset(buffer, 0, filled), ++lineNumber, bufferOffset);
+                bufferOffset += filled;
+                filled = 0;
+                skipping = true;
+            }
+        }
+
+        // Хвост без перевода строки в конце потока
+        if (filled > 0) {
+            handler.onLine(line.reset(buffer, 0, lineLength(buffer, 0, filled)), ++lineNumber, bufferOffset);
+        }
+        return lineNumber;
+    }
+
+    // Длина строки без завершающего '\r', как у BufferedReader.readLine
+    private static int lineLength(byte[] buffer, int start, int end) {
+        if (end > start && buffer[end - 1] == '\r') {
+            return end - start - 1;
+        }
+        return end - start;
+    }
+}
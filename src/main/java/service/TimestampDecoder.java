@@ -0,0 +1,175 @@
+package service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Разбор времени фиксированного формата "dd/MMM/yyyy:HH:mm:ss Z" без DateTimeFormatter.
+// Цифры читаются по известным смещениям, месяц ищется в таблице из 12 элементов.
+// Результат - локальное время строки в секундах от эпохи (смещение пояса не применяется,
+// как и при LocalDateTime.parse). Соседние строки лога обычно приходятся на одну секунду,
+// поэтому последний результат кэшируется. Экземпляр не потокобезопасен.
+public final class TimestampDecoder {
+
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final int LENGTH = 26; // 25/Sep/2022:06:25:04 +0300
+    private static final int DATE_LENGTH = 11; // 25/Sep/2022
+    private static final String[] MONTHS =
+            {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+    private final char[] cached = new char[LENGTH];
+    private boolean dayCached;
+    private boolean secondCached;
+    private long cachedEpochDay;
+    private long cachedEpochSecond;
+    private int cachedOffsetSeconds;
+
+    // Возвращает локальные секунды от эпохи или INVALID, если строка не в ожидаемом формате
+    public long decode(CharSequence text, int start, int end) {
+        if (end - start != LENGTH) return INVALID;
+
+        if (secondCached && sameAsCached(text, start, LENGTH)) {
+            return cachedEpochSecond;
+        }
+
+        long epochDay;
+        if (dayCached && sameAsCached(text, start, DATE_LENGTH)) {
+            epochDay = cachedEpochDay;
+        } else {
+            epochDay = decodeDate(text, start);
+            if (epochDay == INVALID) return INVALID;
+        }
+
+        if (text.charAt(start + 11) != ':' || text.charAt(start + 14) != ':'
+                || text.charAt(start + 17) != ':' || text.charAt(start + 20) != ' ') {
+            return INVALID;
+        }
+        int hour = twoDigits(text, start + 12);
+        int minute = twoDigits(text, start + 15);
+        int second = twoDigits(text, start + 18);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+
+        char sign = text.charAt(start + 21);
+        int offsetHours = twoDigits(text, start + 22);
+        int offsetMinutes = twoDigits(text, start + 24);
+        if ((sign != '+' && sign != '-') || offsetHours < 0 || offsetHours > 18
+                || offsetMinutes < 0 || offsetMinutes > 59) {
+            return INVALID;
+        }
+        int offsetSeconds = offsetHours * 3600 + offsetMinutes * 60;
+        if (offsetSeconds > 18 * 3600) return INVALID;
+
+        long epochSecond = epochDay * 86400 + hour * 3600 + minute * 60 + second;
+
+        for (int i = 0; i < LENGTH; i++) {
+            cached[i] = text.charAt(start + i);
+        }
+        dayCached = true;
+        secondCached = true;
+        cachedEpochDay = epochDay;
+        cachedEpochSecond = epochSecond;
+        cachedOffsetSeconds = sign == '-' ? -offsetSeconds : offsetSeconds;
+        return epochSecond;
+    }
+
+    public long decode(CharSequence text) {
+        return decode(text, 0, text.length());
+    }
+
+    // ISO 8601 вида 2022-09-25T06:25:04+03:00 ($time_iso8601 в nginx): локальные секунды, как у decode.
+    // Смещение (и дробная часть секунд, если есть) не учитывается; INVALID для другого формата
+    public static long decodeIso8601(CharSequence text, int start, int end) {
+        if (end - start < 19 || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-'
+                || text.charAt(start + 10) != 'T' || text.charAt(start + 13) != ':' || text.charAt(start + 16) != ':') {
+            return INVALID;
+        }
+        int century = twoDigits(text, start);
+        int yearOfCentury = twoDigits(text, start + 2);
+        int month = twoDigits(text, start + 5);
+        int day = twoDigits(text, start + 8);
+        int hour = twoDigits(text, start + 11);
+        int minute = twoDigits(text, start + 14);
+        int second = twoDigits(text, start + 17);
+        if (century < 0 || yearOfCentury < 0 || month < 1 || month > 12 || day < 1
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+        int year = century * 100 + yearOfCentury;
+        if (day > lengthOfMonth(month, year)) return INVALID;
+        return epochDay(year, month, day) * 86400 + hour * 3600 + minute * 60 + second;
+    }
+
+    // Смещение пояса из последней успешно разобранной строки
+    public int lastOffsetSeconds() {
+        return cachedOffsetSeconds;
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    private long decodeDate(CharSequence text, int start) {
+        if (text.charAt(start + 2) != '/' || text.charAt(start + 6) != '/') return INVALID;
+        int day = twoDigits(text, start);
+        int month = month(text, start + 3);
+        int century = twoDigits(text, start + 7);
+        int yearOfCentury = twoDigits(text, start + 9);
+        if (day < 1 || month < 0 || century < 0 || yearOfCentury < 0) return INVALID;
+        int year = century * 100 + yearOfCentury;
+        // Несуществующие даты вроде 30/Feb оставляем форматтеру с его правилами
+        if (day > lengthOfMonth(month, year)) return INVALID;
+        return epochDay(year, month, day);
+    }
+
+    private static int month(CharSequence text, int pos) {
+        char c0 = text.charAt(pos), c1 = text.charAt(pos + 1), c2 = text.charAt(pos + 2);
+        for (int i = 0; i < MONTHS.length; i++) {
+            String name = MONTHS[i];
+            if (name.charAt(0) == c0 && name.charAt(1) == c1 && name.charAt(2) == c2) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int lengthOfMonth(int month, int year) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Количество дней от 1970-01-01 (алгоритм days_from_civil)
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int twoDigits(CharSequence text, int pos) {
+        int d1 = text.charAt(pos) - '0';
+        int d2 = text.charAt(pos + 1) - '0';
+        if (d1 < 0 || d1 > 9 || d2 < 0 || d2 > 9) return -1;
+        return d1 * 10 + d2;
+    }
+
+    private boolean sameAsCached(CharSequence text, int start, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (cached[i] != text.charAt(start + i)) return false;
+        }
+        return true;
+    }
+}
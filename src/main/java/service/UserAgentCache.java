@@ -0,0 +1,45 @@
+package service;
+
+import model.Browser;
+import model.Device;
+import model.OperatingSystem;
+import model.UserAgentInfo;
+import service.useragent.UserAgentClassifier;
+
+// Классификация user agent, посчитанная один раз на каждое различное значение:
+// для строк из словаря это одно обращение к DictionaryCache по номеру, остальные
+// идут через LRU-кэш UserAgentClassifier
+public final class UserAgentCache {
+
+    public static final UserAgentCache DEFAULT = new UserAgentCache(FieldDictionaries.DEFAULT.userAgents());
+
+    private final DictionaryCache<UserAgentInfo> infos;
+
+    public UserAgentCache(FieldDictionary userAgents) {
+        this(userAgents, UserAgentClassifier.DEFAULT);
+    }
+
+    public UserAgentCache(FieldDictionary userAgents, UserAgentClassifier classifier) {
+        this.infos = new DictionaryCache<>(userAgents, classifier::classify);
+    }
+
+    public UserAgentInfo infoOf(String userAgent) {
+        return infos.get(userAgent);
+    }
+
+    public Browser browserOf(String userAgent) {
+        return infoOf(userAgent).getBrowser();
+    }
+
+    public OperatingSystem osOf(String userAgent) {
+        return infoOf(userAgent).getOperatingSystem();
+    }
+
+    public boolean isBot(String userAgent) {
+        return infoOf(userAgent).isBot();
+    }
+
+    public Device deviceOf(String userAgent) {
+        return infoOf(userAgent).getDevice();
+    }
+}
@@ -0,0 +1,40 @@
+package service.format;
+
+// Поле строки лога в скомпилированном формате. Числовые поля сами находят свой конец
+// (читаются, пока идут цифры), строковые тянутся до следующего литерала формата.
+public enum FormatField {
+    IP(false),
+    // Поле есть в строке, но не нужно анализатору ($remote_user, %l, ...)
+    IGNORED(false),
+    // 25/Sep/2022:06:25:04 +0300
+    TIME_LOCAL(false),
+    // 2022-09-25T06:25:04+03:00
+    TIME_ISO(false),
+    // Строка запроса целиком: "GET /path HTTP/1.1"
+    REQUEST(false),
+    METHOD(false),
+    URI(false),
+    STATUS(true),
+    // "-" читается как 0 (%b в Apache)
+    BYTES(true),
+    REFERER(false),
+    USER_AGENT(false),
+    // Секунды с дробной частью до микросекунд: $request_time, %T
+    REQUEST_TIME_SECONDS(true),
+    // Целые микросекунды: %D
+    REQUEST_TIME_MICROS(true),
+    // Секунды через ", " или " : " для нескольких upstream, "-" без ответа: $upstream_response_time
+    UPSTREAM_TIME(true),
+    HOST(false);
+
+    private final boolean selfDelimiting;
+
+    FormatField(boolean selfDelimiting) {
+        this.selfDelimiting = selfDelimiting;
+    }
+
+    // Конец поля определяется его содержимым, а не следующим литералом
+    public boolean isSelfDelimiting() {
+        return selfDelimiting;
+    }
+}
@@ -0,0 +1,353 @@
+package service.format;
+
+import model.ExtendedLogEntry;
+import service.ByteSlice;
+
+// Разбор строки по плану LogFormat: проверяет литералы, находит границы полей и сразу
+// читает числовые поля. Как и LineTokenizer, хранит только позиции, а строки создает
+// по запросу. Экземпляр переиспользуется между строками и не потокобезопасен.
+public final class FormatTokenizer {
+
+    private static final String HTTP_PREFIX = " HTTP/";
+    private static final String[] KNOWN_METHODS =
+            {"GET", "POST", "HEAD", "PUT", "DELETE", "OPTIONS", "PATCH", "CONNECT", "TRACE"};
+    private static final int MAX_DIGITS = 18;
+    private static final int MICROS_DIGITS = 6;
+
+    private final LogFormat format;
+    private final int[] starts;
+    private final int[] ends;
+
+    private CharSequence line;
+    private int ipStart, ipEnd;
+    private int timeStart, timeEnd;
+    private boolean isoTime;
+    private int methodStart, methodEnd;
+    private int pathStart, pathEnd;
+    private int refererStart, refererEnd;
+    private int userAgentStart, userAgentEnd;
+    private int hostStart, hostEnd;
+    private int responseCode;
+    private long bytesSent;
+    private long requestTimeMicros;
+    private long upstreamTimeMicros;
+    // Конец числового поля, прочитанного последним
+    private int numberEnd;
+
+    FormatTokenizer(LogFormat format) {
+        this.format = format;
+        this.starts = new int[format.fieldCount()];
+        this.ends = new int[format.fieldCount()];
+    }
+
+    // Возвращает true, если строка подходит под формат; после последнего литерала допускается что угодно
+    public boolean tokenize(CharSequence line) {
+        this.line = line;
+        int length = line.length();
+        int pos = 0;
+        ipStart = ipEnd = timeStart = timeEnd = methodStart = methodEnd = pathStart = pathEnd = -1;
+        refererStart = refererEnd = userAgentStart = userAgentEnd = hostStart = hostEnd = -1;
+        responseCode = -1;
+        bytesSent = 0;
+        requestTimeMicros = ExtendedLogEntry.NO_TIME;
+        upstreamTimeMicros = ExtendedLogEntry.NO_TIME;
+
+        int fieldCount = format.fieldCount();
+        for (int i = 0; i < fieldCount; i++) {
+            String before = format.literal(i);
+            if (!expect(line, pos, before)) return false;
+            pos += before.length();
+
+            FormatField field = format.field(i);
+            String after = format.literal(i + 1);
+            int end;
+            if (field.isSelfDelimiting()) {
+                if (!readNumber(field, pos, length)) return false;
+                end = numberEnd;
+            } else if (after.isEmpty()) {
+                // Последнее поле без литерала после него - до конца строки
+                end = length;
+            } else {
+                // В локальном времени есть пробел перед поясом, литерал ищем после него
+                int from = pos;
+                if (field == FormatField.TIME_LOCAL) {
+                    from = indexOf(line, ' ', pos, length);
+                    if (from < 0) return false;
+                }
+                end = indexOf(line, after, from, length);
+                if (end < 0) return false;
+            }
+            if (end == pos && field != FormatField.IGNORED && field != FormatField.REFERER
+                    && field != FormatField.USER_AGENT) {
+                return false;
+            }
+            starts[i] = pos;
+            ends[i] = end;
+            pos = end;
+        }
+        if (!expect(line, pos, format.literal(fieldCount))) return false;
+
+        for (int i = 0; i < fieldCount; i++) {
+            if (!assign(format.field(i), starts[i], ends[i])) return false;
+        }
+        return true;
+    }
+
+    private boolean assign(FormatField field, int start, int end) {
+        switch (field) {
+            case IP:
+                ipStart = start;
+                ipEnd = end;
+                return true;
+            case TIME_LOCAL:
+            case TIME_ISO:
+                timeStart = start;
+                timeEnd = end;
+                isoTime = field == FormatField.TIME_ISO;
+                return true;
+            case REQUEST:
+                return splitRequest(start, end);
+            case METHOD:
+                if (!isUpperWord(start, end)) return false;
+                methodStart = start;
+                methodEnd = end;
+                return true;
+            case URI:
+                pathStart = start;
+                pathEnd = end;
+                return true;
+            case REFERER:
+                refererStart = start;
+                refererEnd = end;
+                return true;
+            case USER_AGENT:
+                userAgentStart = start;
+                userAgentEnd = end;
+                return true;
+            case HOST:
+                hostStart = start;
+                hostEnd = end;
+                return true;
+            default:
+                // Числовые поля уже прочитаны, IGNORED не нужен
+                return true;
+        }
+    }
+
+    // "GET /path HTTP/1.1": метод из заглавных букв, путь до последнего " HTTP/" (его может не быть)
+    private boolean splitRequest(int start, int end) {
+        int space = indexOf(line, ' ', start, end);
+        if (space < 0 || !isUpperWord(start, space)) return false;
+        int uriStart = space + 1;
+        int uriEnd = end;
+        for (int i = end - 1; i > uriStart; i--) {
+            if (line.charAt(i) == ' ') {
+                if (expect(line, i, HTTP_PREFIX)) {
+                    uriEnd = i;
+                }
+                break;
+            }
+        }
+        if (uriEnd == uriStart) return false;
+        methodStart = start;
+        methodEnd = space;
+        pathStart = uriStart;
+        pathEnd = uriEnd;
+        return true;
+    }
+
+    // Читает числовое поле с pos, конец кладет в numberEnd
+    private boolean readNumber(FormatField field, int pos, int length) {
+        switch (field) {
+            case STATUS: {
+                if (pos + 3 > length) return false;
+                int code = 0;
+                for (int i = 0; i < 3; i++) {
+                    char c = line.charAt(pos + i);
+                    if (!isDigit(c)) return false;
+                    code = code * 10 + (c - '0');
+                }
+                if (pos + 3 < length && isDigit(line.charAt(pos + 3))) return false;
+                responseCode = code;
+                numberEnd = pos + 3;
+                return true;
+            }
+            case BYTES:
+                if (pos < length && line.charAt(pos) == '-') {
+                    bytesSent = 0;
+                    numberEnd = pos + 1;
+                    return true;
+                }
+                bytesSent = readLong(pos, length);
+                return bytesSent >= 0;
+            case REQUEST_TIME_MICROS:
+                if (pos < length && line.charAt(pos) == '-') {
+                    numberEnd = pos + 1;
+                    return true;
+                }
+                requestTimeMicros = readLong(pos, length);
+                return requestTimeMicros >= 0;
+            case REQUEST_TIME_SECONDS:
+                requestTimeMicros = readSeconds(pos, length);
+                return numberEnd > pos;
+            case UPSTREAM_TIME:
+                return readUpstreamTimes(pos, length);
+            default:
+                throw new IllegalStateException("Поле не числовое: " + field);
+        }
+    }
+
+    // Неотрицательное целое; -1, если цифр нет или их слишком много
+    private long readLong(int pos, int length) {
+        int start = pos;
+        long value = 0;
+        while (pos < length && isDigit(line.charAt(pos))) {
+            if (pos - start == MAX_DIGITS) return -1;
+            value = value * 10 + (line.charAt(pos) - '0');
+            pos++;
+        }
+        numberEnd = pos;
+        return pos == start ? -1 : value;
+    }
+
+    // Секунды вида 0.123 в микросекундах; "-" - NO_TIME. Если прочитать нечего, numberEnd == pos
+    private long readSeconds(int pos, int length) {
+        numberEnd = pos;
+        if (pos < length && line.charAt(pos) == '-') {
+            numberEnd = pos + 1;
+            return ExtendedLogEntry.NO_TIME;
+        }
+        long seconds = readLong(pos, length);
+        if (seconds < 0) {
+            numberEnd = pos;
+            return ExtendedLogEntry.NO_TIME;
+        }
+        int end = numberEnd;
+        long micros = 0;
+        int digits = 0;
+        if (end + 1 < length && line.charAt(end) == '.' && isDigit(line.charAt(end + 1))) {
+            end++;
+            while (end < length && isDigit(line.charAt(end))) {
+                if (digits < MICROS_DIGITS) {
+                    micros = micros * 10 + (line.charAt(end) - '0');
+                    digits++;
+                }
+                end++;
+            }
+        }
+        for (; digits < MICROS_DIGITS; digits++) {
+            micros *= 10;
+        }
+        numberEnd = end;
+        return seconds * 1_000_000 + micros;
+    }
+
+    // "0.004", "0.004, 0.010" (несколько upstream), "0.004 : 0.010" (внутренний редирект), "-";
+    // время складывается по всем upstream, которые ответили
+    private boolean readUpstreamTimes(int pos, int length) {
+        long total = ExtendedLogEntry.NO_TIME;
+        while (true) {
+            long value = readSeconds(pos, length);
+            if (numberEnd == pos) return false;
+            if (value != ExtendedLogEntry.NO_TIME) {
+                total = total == ExtendedLogEntry.NO_TIME ? value : total + value;
+            }
+            pos = numberEnd;
+            int next;
+            if (expect(line, pos, ", ")) {
+                next = pos + 2;
+            } else if (expect(line, pos, " : ")) {
+                next = pos + 3;
+            } else {
+                break;
+            }
+            if (next >= length || !(isDigit(line.charAt(next)) || line.charAt(next) == '-')) break;
+            pos = next;
+        }
+        upstreamTimeMicros = total;
+        numberEnd = pos;
+        return true;
+    }
+
+    public LogFormat format() { return format; }
+    public CharSequence line() { return line; }
+
+    public int ipStart() { return ipStart; }
+    public int ipEnd() { return ipEnd; }
+    public int timeStart() { return timeStart; }
+    public int timeEnd() { return timeEnd; }
+    // Время в ISO 8601 ($time_iso8601), иначе в формате [$time_local]
+    public boolean isIsoTime() { return isoTime; }
+    public int methodStart() { return methodStart; }
+    public int methodEnd() { return methodEnd; }
+    public int pathStart() { return pathStart; }
+    public int pathEnd() { return pathEnd; }
+    // -1, если поля нет в формате
+    public int refererStart() { return refererStart; }
+    public int refererEnd() { return refererEnd; }
+    public int userAgentStart() { return userAgentStart; }
+    public int userAgentEnd() { return userAgentEnd; }
+    public int hostStart() { return hostStart; }
+    public int hostEnd() { return hostEnd; }
+    public int responseCode() { return responseCode; }
+    public long bytesSent() { return bytesSent; }
+    public long requestTimeMicros() { return requestTimeMicros; }
+    public long upstreamTimeMicros() { return upstreamTimeMicros; }
+
+    public String time() { return slice(timeStart, timeEnd); }
+
+    // Для частых методов возвращаем константу и не создаем новую строку
+    public String method() {
+        int length = methodEnd - methodStart;
+        for (String known : KNOWN_METHODS) {
+            if (known.length() == length && expect(line, methodStart, known)) {
+                return known;
+            }
+        }
+        return slice(methodStart, methodEnd);
+    }
+
+    private String slice(int start, int end) {
+        if (line instanceof ByteSlice) {
+            return ((ByteSlice) line).substring(start, end);
+        }
+        return line.subSequence(start, end).toString();
+    }
+
+    private boolean isUpperWord(int start, int end) {
+        if (start == end) return false;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < 'A' || c > 'Z') return false;
+        }
+        return true;
+    }
+
+    private static boolean expect(CharSequence line, int pos, String literal) {
+        if (pos + literal.length() > line.length()) return false;
+        for (int i = 0; i < literal.length(); i++) {
+            if (line.charAt(pos + i) != literal.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence line, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    // Первое вхождение literal в [from, to)
+    private static int indexOf(CharSequence line, String literal, int from, int to) {
+        char first = literal.charAt(0);
+        for (int i = from; i + literal.length() <= to; i++) {
+            if (line.charAt(i) == first && expect(line, i, literal)) return i;
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
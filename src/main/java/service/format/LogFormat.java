@@ -0,0 +1,373 @@
+package service.format;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+// Формат строки лога, заданный как log_format nginx или LogFormat Apache и один раз
+// скомпилированный в план разбора: литералы между полями (таблица разделителей)
+// и тип каждого поля, по которому FormatTokenizer выбирает, как его читать.
+// Регулярные выражения не используются. Неизменяем; разбирает строки FormatTokenizer,
+// свой на каждый поток (newTokenizer).
+public final class LogFormat {
+
+    public static final LogFormat COMBINED = nginx("combined",
+            "$remote_addr - $remote_user [$time_local] \"$request\" $status $body_bytes_sent "
+                    + "\"$http_referer\" \"$http_user_agent\"");
+    public static final LogFormat COMMON = apache("common", "%h %l %u %t \"%r\" %>s %b");
+    // combined с временем обработки, временем upstream и хостом
+    public static final LogFormat NGINX_TIMED = nginx("nginx-timed",
+            "$remote_addr - $remote_user [$time_local] \"$request\" $status $body_bytes_sent "
+                    + "\"$http_referer\" \"$http_user_agent\" $request_time $upstream_response_time $host");
+    // combined Apache с длительностью в микросекундах
+    public static final LogFormat APACHE_TIMED = apache("apache-timed",
+            "%h %l %u %t \\\"%r\\\" %>s %b \\\"%{Referer}i\\\" \\\"%{User-Agent}i\\\" %D");
+
+    // Кандидаты для detect: более подробные раньше, при равном счете побеждают они
+    private static final List<LogFormat> KNOWN = Arrays.asList(NGINX_TIMED, APACHE_TIMED, COMBINED, COMMON);
+
+    private final String name;
+    private final String definition;
+    // literals[i] стоит перед fields[i], literals[fields.length] - после последнего поля
+    private final String[] literals;
+    private final FormatField[] fields;
+
+    private LogFormat(String name, String definition, List<String> literals, List<FormatField> fields) {
+        this.name = name;
+        this.definition = definition;
+        this.literals = literals.toArray(new String[0]);
+        this.fields = fields.toArray(new FormatField[0]);
+        validate();
+    }
+
+    // Встроенный формат по имени или описание вида nginx:<log_format> / apache:<LogFormat>
+    public static LogFormat parse(String spec) {
+        for (LogFormat known : KNOWN) {
+            if (known.name.equalsIgnoreCase(spec)) {
+                return known;
+            }
+        }
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? "" : spec.substring(0, colon).toLowerCase(Locale.ROOT);
+        if (kind.equals("nginx")) {
+            return nginx(spec, spec.substring(colon + 1));
+        }
+        if (kind.equals("apache")) {
+            return apache(spec, spec.substring(colon + 1));
+        }
+        throw new IllegalArgumentException("Формат задается как nginx:<log_format>, apache:<LogFormat> или одно из "
+                + KNOWN + ": " + spec);
+    }
+
+    // Строка log_format nginx: переменные $name и ${name}, остальное - литералы
+    public static LogFormat nginx(String definition) {
+        return nginx("nginx", definition);
+    }
+
+    public static LogFormat apache(String definition) {
+        return apache("apache", definition);
+    }
+
+    private static LogFormat nginx(String name, String definition) {
+        Compiler compiler = new Compiler();
+        int i = 0;
+        while (i < definition.length()) {
+            char c = definition.charAt(i);
+            if (c != '$') {
+                compiler.literal(c);
+                i++;
+                continue;
+            }
+            int start = i + 1;
+            int end;
+            String variable;
+            if (start < definition.length() && definition.charAt(start) == '{') {
+                end = definition.indexOf('}', start);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Не закрыта переменная ${ в формате: " + definition);
+                }
+                variable = definition.substring(start + 1, end);
+                end++;
+            } else {
+                end = start;
+                while (end < definition.length() && isVariableChar(definition.charAt(end))) end++;
+                variable = definition.substring(start, end);
+            }
+            if (variable.isEmpty()) {
+                throw new IllegalArgumentException("Пустое имя переменной в позиции " + i + ": " + definition);
+            }
+            compiler.field(nginxField(variable), variable);
+            i = end;
+        }
+        return compiler.build(name, definition);
+    }
+
+    // Строка LogFormat Apache: директивы %h, %>s, %{Referer}i ...; \" и \\ снимаются, как в httpd.conf
+    private static LogFormat apache(String name, String definition) {
+        Compiler compiler = new Compiler();
+        int i = 0;
+        while (i < definition.length()) {
+            char c = definition.charAt(i);
+            if (c == '\\' && i + 1 < definition.length()) {
+                char escaped = definition.charAt(i + 1);
+                compiler.literal(escaped == 't' ? '\t' : escaped == 'n' ? '\n' : escaped);
+                i += 2;
+                continue;
+            }
+            if (c != '%') {
+                compiler.literal(c);
+                i++;
+                continue;
+            }
+            int pos = i + 1;
+            if (pos < definition.length() && definition.charAt(pos) == '%') {
+                compiler.literal('%');
+                i = pos + 1;
+                continue;
+            }
+            while (pos < definition.length() && (definition.charAt(pos) == '>' || definition.charAt(pos) == '<')) {
+                pos++;
+            }
+            String argument = null;
+            if (pos < definition.length() && definition.charAt(pos) == '{') {
+                int close = definition.indexOf('}', pos);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Не закрыт %{ в формате: " + definition);
+                }
+                argument = definition.substring(pos + 1, close);
+                pos = close + 1;
+            }
+            if (pos >= definition.length()) {
+                throw new IllegalArgumentException("Директива % без буквы в конце формата: " + definition);
+            }
+            char directive = definition.charAt(pos);
+            String directiveText = definition.substring(i, pos + 1);
+            if (directive == 't' && argument == null) {
+                // %t пишется в квадратных скобках
+                compiler.literal('[');
+                compiler.field(FormatField.TIME_LOCAL, directiveText);
+                compiler.literal(']');
+            } else if (directive == 'q' && compiler.lastFieldIs(FormatField.URI)) {
+                // %U%q - путь вместе со строкой запроса, как $request_uri
+            } else {
+                compiler.field(apacheField(directive, argument), directiveText);
+            }
+            i = pos + 1;
+        }
+        return compiler.build(name, definition);
+    }
+
+    private static FormatField nginxField(String variable) {
+        switch (variable) {
+            case "remote_addr":
+            case "realip_remote_addr":
+                return FormatField.IP;
+            case "time_local":
+                return FormatField.TIME_LOCAL;
+            case "time_iso8601":
+                return FormatField.TIME_ISO;
+            case "request":
+                return FormatField.REQUEST;
+            case "request_method":
+                return FormatField.METHOD;
+            case "request_uri":
+            case "uri":
+                return FormatField.URI;
+            case "status":
+                return FormatField.STATUS;
+            case "body_bytes_sent":
+            case "bytes_sent":
+                return FormatField.BYTES;
+            case "http_referer":
+                return FormatField.REFERER;
+            case "http_user_agent":
+                return FormatField.USER_AGENT;
+            case "request_time":
+                return FormatField.REQUEST_TIME_SECONDS;
+            case "upstream_response_time":
+                return FormatField.UPSTREAM_TIME;
+            case "host":
+            case "http_host":
+            case "server_name":
+                return FormatField.HOST;
+            default:
+                return FormatField.IGNORED;
+        }
+    }
+
+    private static FormatField apacheField(char directive, String argument) {
+        switch (directive) {
+            case 'h':
+            case 'a':
+                return FormatField.IP;
+            case 'r':
+                return FormatField.REQUEST;
+            case 'm':
+                return FormatField.METHOD;
+            case 'U':
+                return FormatField.URI;
+            case 's':
+                return FormatField.STATUS;
+            case 'b':
+            case 'B':
+            case 'O':
+                return FormatField.BYTES;
+            case 'D':
+                return FormatField.REQUEST_TIME_MICROS;
+            case 'T':
+                // %T - целые секунды; %{ms}T и другие единицы не поддерживаются
+                return argument == null ? FormatField.REQUEST_TIME_SECONDS : FormatField.IGNORED;
+            case 'v':
+            case 'V':
+                return FormatField.HOST;
+            case 'i':
+                if (argument == null) {
+                    return FormatField.IGNORED;
+                }
+                switch (argument.toLowerCase(Locale.ROOT)) {
+                    case "referer":
+                        return FormatField.REFERER;
+                    case "user-agent":
+                        return FormatField.USER_AGENT;
+                    case "host":
+                        return FormatField.HOST;
+                    default:
+                        return FormatField.IGNORED;
+                }
+            default:
+                return FormatField.IGNORED;
+        }
+    }
+
+    private static boolean isVariableChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    // Из известных форматов тот, под который подходит больше всего из первых sampleLines
+    // непустых строк (*.gz распаковывается); null, если не подошла ни одна
+    public static LogFormat detect(Path file, int sampleLines) throws IOException {
+        List<String> sample = new ArrayList<>();
+        InputStream in = Files.newInputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.ISO_8859_1))) {
+            String line;
+            while (sample.size() < sampleLines && (line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    sample.add(line);
+                }
+            }
+        }
+        return detect(sample);
+    }
+
+    public static LogFormat detect(List<? extends CharSequence> sample) {
+        LogFormat best = null;
+        int bestMatched = 0;
+        for (LogFormat candidate : KNOWN) {
+            FormatTokenizer tokenizer = candidate.newTokenizer();
+            int matched = 0;
+            for (CharSequence line : sample) {
+                if (tokenizer.tokenize(line)) {
+                    matched++;
+                }
+            }
+            if (matched > bestMatched) {
+                best = candidate;
+                bestMatched = matched;
+            }
+        }
+        return best;
+    }
+
+    public FormatTokenizer newTokenizer() {
+        return new FormatTokenizer(this);
+    }
+
+    public boolean has(FormatField field) {
+        for (FormatField own : fields) {
+            if (own == field) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Тот же план, что у COMBINED: такие строки LogParser разбирает своим LineTokenizer
+    public boolean isCombined() {
+        return Arrays.equals(fields, COMBINED.fields) && Arrays.equals(literals, COMBINED.literals);
+    }
+
+    public String getName() { return name; }
+    public String getDefinition() { return definition; }
+
+    String literal(int index) { return literals[index]; }
+    FormatField field(int index) { return fields[index]; }
+    int fieldCount() { return fields.length; }
+
+    private void validate() {
+        Set<FormatField> present = EnumSet.noneOf(FormatField.class);
+        present.addAll(Arrays.asList(fields));
+        List<String> missing = new ArrayList<>();
+        if (!present.contains(FormatField.IP)) missing.add("адрес клиента");
+        if (!present.contains(FormatField.TIME_LOCAL) && !present.contains(FormatField.TIME_ISO)) missing.add("время");
+        if (!present.contains(FormatField.REQUEST)
+                && !(present.contains(FormatField.METHOD) && present.contains(FormatField.URI))) {
+            missing.add("запрос или метод и путь");
+        }
+        if (!present.contains(FormatField.STATUS)) missing.add("код ответа");
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("В формате нет обязательных полей (" + String.join(", ", missing)
+                    + "): " + definition);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    // Собирает литералы и поля; повтор уже известного поля читается, но не используется
+    private static final class Compiler {
+        private final List<String> literals = new ArrayList<>();
+        private final List<FormatField> fields = new ArrayList<>();
+        private final StringBuilder literal = new StringBuilder();
+
+        void literal(char c) {
+            literal.append(c);
+        }
+
+        void field(FormatField field, String source) {
+            if (literal.length() == 0 && !fields.isEmpty() && !fields.get(fields.size() - 1).isSelfDelimiting()) {
+                throw new IllegalArgumentException("Между полями нужен разделитель: перед " + source);
+            }
+            if (field != FormatField.IGNORED && fields.contains(field)) {
+                field = FormatField.IGNORED;
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            fields.add(field);
+        }
+
+        boolean lastFieldIs(FormatField field) {
+            return literal.length() == 0 && !fields.isEmpty() && fields.get(fields.size() - 1) == field;
+        }
+
+        LogFormat build(String name, String definition) {
+            literals.add(literal.toString());
+            return new LogFormat(name, definition, literals, fields);
+        }
+    }
+}
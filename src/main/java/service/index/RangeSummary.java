@@ -0,0 +1,43 @@
+package service.index;
+
+import model.LogEntry;
+
+// Предварительно посчитанные счетчики за интервал времени: запросы, трафик, классы ответов
+public final class RangeSummary {
+
+    public static final int STATUS_CLASSES = 10;
+
+    private long requests;
+    private long bytes;
+    private final long[] statusClasses = new long[STATUS_CLASSES];
+
+    void add(LogEntry entry) {
+        requests++;
+        bytes += entry.getBytesSent();
+        statusClasses[entry.getResponseCode() / 100]++;
+    }
+
+    void add(TimeIndex index, int bucket) {
+        requests += index.requestsAt(bucket);
+        bytes += index.bytesAt(bucket);
+        for (int statusClass = 0; statusClass < STATUS_CLASSES; statusClass++) {
+            statusClasses[statusClass] += index.statusClassAt(bucket, statusClass);
+        }
+    }
+
+    public long getRequests() { return requests; }
+    public long getBytes() { return bytes; }
+
+    // statusClass - первая цифра кода: 2 для 2xx, 5 для 5xx
+    public long getStatusClassCount(int statusClass) {
+        return statusClasses[statusClass];
+    }
+
+    public long countStatusClasses(int fromInclusive, int toExclusive) {
+        long total = 0;
+        for (int statusClass = Math.max(fromInclusive, 0); statusClass < Math.min(toExclusive, STATUS_CLASSES); statusClass++) {
+            total += statusClasses[statusClass];
+        }
+        return total;
+    }
+}
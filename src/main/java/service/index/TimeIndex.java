@@ -0,0 +1,267 @@
+package service.index;
+
+import model.LogEntry;
+import service.FileFingerprint;
+import service.LogParser;
+import service.MappedLogReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Индекс лога по минутам: для каждой минуты - участок файла [start, end), где лежат ее строки,
+// и заранее посчитанные счетчики (запросы, трафик, классы ответов).
+// Запрос за интервал складывает счетчики целых минут, а разбирает только строки
+// минут на краях интервала, поэтому не зависит от размера лога.
+// Время - локальное время строк лога в секундах от эпохи, как LogEntry.getEpochSecond().
+// Индекс относится к первым getIndexedLength() байтам лога; update() дочитывает новые строки.
+public final class TimeIndex {
+
+    private static final int MAGIC = 0x4C415449; // "LATI"
+    private static final int VERSION = 1;
+    private static final int STATUS_CLASSES = RangeSummary.STATUS_CLASSES;
+
+    private final FileFingerprint fingerprint;
+    private final int size;
+    // Колонки по минутам в порядке возрастания
+    private final long[] minutes;
+    private final long[] startOffsets;
+    private final long[] endOffsets;
+    private final long[] requests;
+    private final long[] bytes;
+    private final int[] statusClasses; // size * STATUS_CLASSES
+
+    private TimeIndex(FileFingerprint fingerprint, int size, long[] minutes, long[] startOffsets, long[] endOffsets,
+                      long[] requests, long[] bytes, int[] statusClasses) {
+        this.fingerprint = fingerprint;
+        this.size = size;
+        this.minutes = minutes;
+        this.startOffsets = startOffsets;
+        this.endOffsets = endOffsets;
+        this.requests = requests;
+        this.bytes = bytes;
+        this.statusClasses = statusClasses;
+    }
+
+    public static TimeIndex build(Path log) throws IOException {
+        return update(log, null);
+    }
+
+    // Добавляет к previous строки, дописанные после индексации;
+    // если previous нет или лог с тех пор подменили, индекс строится заново
+    public static TimeIndex update(Path log, TimeIndex previous) throws IOException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            // Недописанная последняя строка подождет следующего обновления
+            long end = MappedLogReader.lastLineEnd(channel, channel.size());
+            Builder builder = new Builder();
+            long start = 0;
+            if (previous != null && previous.getIndexedLength() <= end && previous.fingerprint.matches(channel)) {
+                builder.addAll(previous);
+                start = previous.getIndexedLength();
+            }
+            new LogParser().parseRangeWithOffsets(channel, start, end, builder);
+            return builder.build(FileFingerprint.of(channel, end));
+        }
+    }
+
+    // null, если индекса нет
+    public static TimeIndex load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new InvalidClassException("Неизвестный формат индекса: " + file);
+            }
+            FileFingerprint fingerprint = FileFingerprint.read(in);
+            int size = in.readInt();
+            long[] minutes = new long[size];
+            long[] startOffsets = new long[size];
+            long[] endOffsets = new long[size];
+            long[] requests = new long[size];
+            long[] bytes = new long[size];
+            int[] statusClasses = new int[size * STATUS_CLASSES];
+            for (int i = 0; i < size; i++) {
+                minutes[i] = in.readLong();
+                startOffsets[i] = in.readLong();
+                endOffsets[i] = in.readLong();
+                requests[i] = in.readLong();
+                bytes[i] = in.readLong();
+                for (int statusClass = 0; statusClass < STATUS_CLASSES; statusClass++) {
+                    statusClasses[i * STATUS_CLASSES + statusClass] = in.readInt();
+                }
+            }
+            return new TimeIndex(fingerprint, size, minutes, startOffsets, endOffsets, requests, bytes, statusClasses);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    // Запись через временный файл, чтобы прерванное сохранение не испортило прошлый индекс
+    public void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            fingerprint.write(out);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(minutes[i]);
+                out.writeLong(startOffsets[i]);
+                out.writeLong(endOffsets[i]);
+                out.writeLong(requests[i]);
+                out.writeLong(bytes[i]);
+                for (int statusClass = 0; statusClass < STATUS_CLASSES; statusClass++) {
+                    out.writeInt(statusClasses[i * STATUS_CLASSES + statusClass]);
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Счетчики за [from, to): целые минуты берутся из индекса, края интервала разбираются из лога
+    public RangeSummary summarize(Path log, long from, long to) throws IOException {
+        RangeSummary summary = new RangeSummary();
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            LogParser parser = new LogParser();
+            for (int i = firstBucket(from); i < size && minutes[i] * 60 < to; i++) {
+                long minuteStart = minutes[i] * 60;
+                if (minuteStart >= from && minuteStart + 60 <= to) {
+                    summary.add(this, i);
+                } else {
+                    // Только строки этой минуты: строки соседних целых минут уже посчитаны по индексу
+                    long rangeFrom = Math.max(from, minuteStart);
+                    long rangeTo = Math.min(to, minuteStart + 60);
+                    parser.parseRange(channel, startOffsets[i], endOffsets[i], inRange(rangeFrom, rangeTo, summary::add));
+                }
+            }
+        }
+        return summary;
+    }
+
+    // Все записи интервала [from, to): разбирается только участок файла, где лежат его минуты.
+    // Возвращает число записей, переданных потребителю.
+    public long scan(Path log, long from, long to, Consumer<LogEntry> consumer) throws IOException {
+        long start = Long.MAX_VALUE;
+        long end = 0;
+        for (int i = firstBucket(from); i < size && minutes[i] * 60 < to; i++) {
+            start = Math.min(start, startOffsets[i]);
+            end = Math.max(end, endOffsets[i]);
+        }
+        if (start >= end) {
+            return 0;
+        }
+        long[] accepted = new long[1];
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            new LogParser().parseRange(channel, start, end, inRange(from, to, entry -> {
+                accepted[0]++;
+                consumer.accept(entry);
+            }));
+        }
+        return accepted[0];
+    }
+
+    public long getIndexedLength() { return fingerprint.getLength(); }
+    public int size() { return size; }
+
+    // Первая и последняя минута лога в секундах от эпохи; 0 для пустого индекса
+    public long getFirstSecond() { return size == 0 ? 0 : minutes[0] * 60; }
+    public long getLastSecond() { return size == 0 ? 0 : minutes[size - 1] * 60 + 59; }
+
+    long requestsAt(int bucket) { return requests[bucket]; }
+    long bytesAt(int bucket) { return bytes[bucket]; }
+    int statusClassAt(int bucket, int statusClass) { return statusClasses[bucket * STATUS_CLASSES + statusClass]; }
+
+    // Первая минута, которая может пересекаться с интервалом, начинающимся в from
+    private int firstBucket(long from) {
+        int index = Arrays.binarySearch(minutes, 0, size, Math.floorDiv(from, 60));
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static Consumer<LogEntry> inRange(long from, long to, Consumer<LogEntry> consumer) {
+        return entry -> {
+            if (entry.getEpochSecond() >= from && entry.getEpochSecond() < to) {
+                consumer.accept(entry);
+            }
+        };
+    }
+
+    // Счетчики минут по мере разбора; строки почти всегда идут по порядку,
+    // поэтому последняя минута запоминается отдельно от поиска в карте
+    private static final class Builder implements LogParser.PositionedConsumer {
+        private final Map<Long, Bucket> buckets = new HashMap<>();
+        private Bucket last;
+
+        @Override
+        public void accept(LogEntry entry, long offset, long lineEnd) {
+            long minute = Math.floorDiv(entry.getEpochSecond(), 60);
+            Bucket bucket = last != null && last.minute == minute
+                    ? last
+                    : buckets.computeIfAbsent(minute, Bucket::new);
+            last = bucket;
+            bucket.start = Math.min(bucket.start, offset);
+            bucket.end = Math.max(bucket.end, lineEnd);
+            bucket.requests++;
+            bucket.bytes += entry.getBytesSent();
+            bucket.statusClasses[entry.getResponseCode() / 100]++;
+        }
+
+        void addAll(TimeIndex index) {
+            for (int i = 0; i < index.size; i++) {
+                Bucket bucket = new Bucket(index.minutes[i]);
+                bucket.start = index.startOffsets[i];
+                bucket.end = index.endOffsets[i];
+                bucket.requests = index.requests[i];
+                bucket.bytes = index.bytes[i];
+                for (int statusClass = 0; statusClass < STATUS_CLASSES; statusClass++) {
+                    bucket.statusClasses[statusClass] = index.statusClassAt(i, statusClass);
+                }
+                buckets.put(bucket.minute, bucket);
+            }
+        }
+
+        TimeIndex build(FileFingerprint fingerprint) {
+            Bucket[] sorted = buckets.values().toArray(new Bucket[0]);
+            Arrays.sort(sorted, (a, b) -> Long.compare(a.minute, b.minute));
+            int size = sorted.length;
+            long[] minutes = new long[size];
+            long[] startOffsets = new long[size];
+            long[] endOffsets = new long[size];
+            long[] requests = new long[size];
+            long[] bytes = new long[size];
+            int[] statusClasses = new int[size * STATUS_CLASSES];
+            for (int i = 0; i < size; i++) {
+                Bucket bucket = sorted[i];
+                minutes[i] = bucket.minute;
+                startOffsets[i] = bucket.start;
+                endOffsets[i] = bucket.end;
+                requests[i] = bucket.requests;
+                bytes[i] = bucket.bytes;
+                System.arraycopy(bucket.statusClasses, 0, statusClasses, i * STATUS_CLASSES, STATUS_CLASSES);
+            }
+            return new TimeIndex(fingerprint, size, minutes, startOffsets, endOffsets, requests, bytes, statusClasses);
+        }
+    }
+
+    private static final class Bucket {
+        final long minute;
+        long start = Long.MAX_VALUE;
+        long end;
+        long requests;
+        long bytes;
+        final int[] statusClasses = new int[STATUS_CLASSES];
+
+        Bucket(long minute) {
+            this.minute = minute;
+        }
+    }
+}
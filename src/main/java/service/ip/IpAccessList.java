@@ -0,0 +1,84 @@
+package service.ip;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+// Списки разрешенных и запрещенных сетей из файла. Строка файла - правило:
+//   allow 10.0.0.0/8
+//   deny 10.66.0.0/16
+//   deny 2a02:6b8::/32
+// Пустые строки и строки с '#' пропускаются. Решает самый длинный совпавший префикс,
+// так что внутри разрешенной сети можно запретить подсеть и наоборот.
+// Адрес вне всех правил разрешен, если в файле нет ни одного allow, иначе запрещен:
+// файл только из deny - черный список, с allow - белый.
+// После загрузки неизменяем, проверку можно вызывать из нескольких потоков.
+public final class IpAccessList {
+
+    private final IpPrefixTrie<Boolean> rules;
+    private final boolean allowByDefault;
+    private final int ruleCount;
+
+    private IpAccessList(IpPrefixTrie<Boolean> rules, boolean allowByDefault, int ruleCount) {
+        this.rules = rules;
+        this.allowByDefault = allowByDefault;
+        this.ruleCount = ruleCount;
+    }
+
+    public static IpAccessList load(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            IpPrefixTrie<Boolean> rules = new IpPrefixTrie<>();
+            boolean hasAllow = false;
+            int ruleCount = 0;
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int comment = line.indexOf('#');
+                String rule = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (rule.isEmpty()) {
+                    continue;
+                }
+                String[] parts = rule.split("\\s+");
+                String action = parts[0].toLowerCase(Locale.ROOT);
+                if (parts.length != 2 || !(action.equals("allow") || action.equals("deny"))) {
+                    throw new IOException(path + ":" + lineNumber + ": правило должно иметь вид allow|deny <сеть>: " + rule);
+                }
+                IpPrefix network;
+                try {
+                    network = IpPrefix.parse(parts[1]);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(path + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+                boolean allow = action.equals("allow");
+                rules.put(network, allow);
+                hasAllow |= allow;
+                ruleCount++;
+            }
+            return new IpAccessList(rules, !hasAllow, ruleCount);
+        }
+    }
+
+    // Адрес из участка строки лога; значение, которое не является адресом, ни с чем не совпадает
+    public boolean allows(CharSequence text, int start, int end) {
+        Boolean allow = rules.longestMatch(text, start, end);
+        return allow != null ? allow : allowByDefault;
+    }
+
+    public boolean allowsIpv4(int address) {
+        Boolean allow = rules.longestMatchIpv4(address);
+        return allow != null ? allow : allowByDefault;
+    }
+
+    public boolean allowsIpv6(long high, long low) {
+        Boolean allow = rules.longestMatchIpv6(high, low);
+        return allow != null ? allow : allowByDefault;
+    }
+
+    public int getRuleCount() {
+        return ruleCount;
+    }
+}
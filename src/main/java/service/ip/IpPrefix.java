@@ -0,0 +1,143 @@
+package service.ip;
+
+import model.IpAddresses;
+import java.util.Objects;
+
+// Сеть в записи CIDR (10.0.0.0/8, 2a02:6b8::/32). Адрес хранится ключом из двух long,
+// выровненным по старшему биту: у IPv4 32 бита адреса стоят в старших битах high,
+// поэтому биты префикса нумеруются одинаково для обоих семейств. Биты за длиной префикса обнулены.
+public final class IpPrefix implements Comparable<IpPrefix> {
+
+    public static final int IPV4_BITS = 32;
+    public static final int IPV6_BITS = 128;
+
+    private final boolean ipv6;
+    private final long high;
+    private final long low;
+    private final int length;
+
+    IpPrefix(boolean ipv6, long high, long low, int length) {
+        this.ipv6 = ipv6;
+        this.high = maskHigh(high, length);
+        this.low = maskLow(low, length);
+        this.length = length;
+    }
+
+    public static IpPrefix ipv4(int address, int length) {
+        checkLength(length, IPV4_BITS);
+        return new IpPrefix(false, ipv4Key(address), 0, length);
+    }
+
+    public static IpPrefix ipv6(long high, long low, int length) {
+        checkLength(length, IPV6_BITS);
+        return new IpPrefix(true, high, low, length);
+    }
+
+    // "10.0.0.0/8", "2a02:6b8::/32"; адрес без длины - сеть из одного адреса.
+    // Биты адреса за длиной префикса отбрасываются: 10.1.2.3/8 - это 10.0.0.0/8
+    public static IpPrefix parse(String text) {
+        String value = text.trim();
+        int slash = value.indexOf('/');
+        String address = slash < 0 ? value : value.substring(0, slash);
+        long[] parsed = new long[2];
+        int family = IpAddresses.parse(address, 0, address.length(), parsed);
+        if (family == IpAddresses.NOT_AN_ADDRESS) {
+            throw new IllegalArgumentException("Не IP-адрес: " + text);
+        }
+        int maxLength = family == IpAddresses.IPV4 ? IPV4_BITS : IPV6_BITS;
+        int length = maxLength;
+        if (slash >= 0) {
+            try {
+                length = Integer.parseInt(value.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Неверная длина префикса: " + text, e);
+            }
+            checkLength(length, maxLength);
+        }
+        return family == IpAddresses.IPV4
+                ? ipv4((int) parsed[1], length)
+                : ipv6(parsed[0], parsed[1], length);
+    }
+
+    public boolean isIpv6() { return ipv6; }
+    public int getLength() { return length; }
+    public int maxLength() { return ipv6 ? IPV6_BITS : IPV4_BITS; }
+    long high() { return high; }
+    long low() { return low; }
+
+    // Адрес сети IPv4
+    public int ipv4Address() {
+        return (int) (high >>> 32);
+    }
+
+    public boolean containsIpv4(int address) {
+        return !ipv6 && commonLength(high, low, ipv4Key(address), 0, length) == length;
+    }
+
+    public boolean containsIpv6(long addressHigh, long addressLow) {
+        return ipv6 && commonLength(high, low, addressHigh, addressLow, length) == length;
+    }
+
+    // Сначала IPv4, затем IPv6; внутри семейства по адресу, затем по длине
+    @Override
+    public int compareTo(IpPrefix other) {
+        if (ipv6 != other.ipv6) {
+            return ipv6 ? 1 : -1;
+        }
+        int byHigh = Long.compareUnsigned(high, other.high);
+        if (byHigh != 0) return byHigh;
+        int byLow = Long.compareUnsigned(low, other.low);
+        return byLow != 0 ? byLow : Integer.compare(length, other.length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IpPrefix)) return false;
+        IpPrefix other = (IpPrefix) o;
+        return ipv6 == other.ipv6 && high == other.high && low == other.low && length == other.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ipv6, high, low, length);
+    }
+
+    @Override
+    public String toString() {
+        String address = ipv6 ? IpAddresses.formatIpv6(high, low) : IpAddresses.formatIpv4(ipv4Address());
+        return address + "/" + length;
+    }
+
+    static long ipv4Key(int address) {
+        return (address & 0xFFFFFFFFL) << 32;
+    }
+
+    // Бит номер index, считая от старшего
+    static int bit(long high, long low, int index) {
+        return (int) (index < 64 ? high >>> (63 - index) : low >>> (127 - index)) & 1;
+    }
+
+    // Длина общего начала двух ключей, не больше limit
+    static int commonLength(long high1, long low1, long high2, long low2, int limit) {
+        long diff = high1 ^ high2;
+        int common = diff != 0 ? Long.numberOfLeadingZeros(diff) : 64 + Long.numberOfLeadingZeros(low1 ^ low2);
+        return Math.min(common, limit);
+    }
+
+    static long maskHigh(long high, int length) {
+        if (length >= 64) return high;
+        return length == 0 ? 0 : high & (-1L << (64 - length));
+    }
+
+    static long maskLow(long low, int length) {
+        if (length <= 64) return 0;
+        return length == IPV6_BITS ? low : low & (-1L << (IPV6_BITS - length));
+    }
+
+    private static void checkLength(int length, int maxLength) {
+        if (length < 0 || length > maxLength) {
+            throw new IllegalArgumentException("Длина префикса должна быть от 0 до " + maxLength + ": " + length);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package service.ip;
+
+import model.IpAddresses;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Сжатое двоичное дерево префиксов (Patricia): узел есть только там, где ветвятся адреса
+// или где лежит значение, поэтому глубина не больше числа различий, а не 32/128.
+// Каждый узел хранит сумму счетчиков своего поддерева - так одно дерево отвечает на
+// "сколько запросов из 10.1.0.0/16" и сворачивает адреса до /24, /16 или любой длины.
+// Значения узлов (V) дают поиск самого длинного совпадающего префикса для списков правил.
+// У IPv4 и IPv6 отдельные корни. Не потокобезопасно.
+public final class IpPrefixTrie<V> {
+
+    // По убыванию счетчика, при равенстве по адресу сети
+    public static final Comparator<Map.Entry<IpPrefix, Long>> DESCENDING =
+            Comparator.comparingLong((Map.Entry<IpPrefix, Long> entry) -> -entry.getValue())
+                    .thenComparing(Map.Entry::getKey);
+
+    private final Node<V> ipv4Root = new Node<>(0, 0, 0);
+    private final Node<V> ipv6Root = new Node<>(0, 0, 0);
+    private int size;
+
+    public void addIpv4(int address, long count) {
+        insert(ipv4Root, IpPrefix.ipv4Key(address), 0, IpPrefix.IPV4_BITS, count);
+    }
+
+    public void addIpv6(long high, long low, long count) {
+        insert(ipv6Root, high, low, IpPrefix.IPV6_BITS, count);
+    }
+
+    // Счетчик целой сети, например уже свернутой в другом дереве
+    public void add(IpPrefix prefix, long count) {
+        insert(root(prefix.isIpv6()), prefix.high(), prefix.low(), prefix.getLength(), count);
+    }
+
+    public void put(IpPrefix prefix, V value) {
+        insert(root(prefix.isIpv6()), prefix.high(), prefix.low(), prefix.getLength(), 0).value = value;
+    }
+
+    // Значение самого длинного префикса, в который попадает адрес, или null
+    public V longestMatchIpv4(int address) {
+        return longestMatch(ipv4Root, IpPrefix.ipv4Key(address), 0, IpPrefix.IPV4_BITS);
+    }
+
+    public V longestMatchIpv6(long high, long low) {
+        return longestMatch(ipv6Root, high, low, IpPrefix.IPV6_BITS);
+    }
+
+    // Адрес прямо из участка строки лога; null и для строк, которые не являются адресом
+    public V longestMatch(CharSequence text, int start, int end) {
+        // Массив нужен только для IPv6, IPv4 разбирается без выделения памяти
+        long ipv4 = IpAddresses.parseIpv4(text, start, end);
+        if (ipv4 != IpAddresses.INVALID) {
+            return longestMatchIpv4((int) ipv4);
+        }
+        long[] address = new long[2];
+        switch (IpAddresses.parse(text, start, end, address)) {
+            case IpAddresses.IPV4:
+                return longestMatchIpv4((int) address[1]);
+            case IpAddresses.IPV6:
+                return longestMatchIpv6(address[0], address[1]);
+            default:
+                return null;
+        }
+    }
+
+    // Сумма счетчиков всех адресов сети
+    public long count(IpPrefix prefix) {
+        Node<V> node = root(prefix.isIpv6());
+        int length = prefix.getLength();
+        while (node != null && node.length < length) {
+            node = node.child(IpPrefix.bit(prefix.high(), prefix.low(), node.length));
+        }
+        if (node == null || IpPrefix.commonLength(node.high, node.low, prefix.high(), prefix.low(), length) < length) {
+            return 0;
+        }
+        return node.count;
+    }
+
+    public long total(boolean ipv6) {
+        return root(ipv6).count;
+    }
+
+    // Счетчики, свернутые до сетей длины length: по одной записи на каждую непустую сеть
+    public List<Map.Entry<IpPrefix, Long>> rollup(boolean ipv6, int length) {
+        List<Map.Entry<IpPrefix, Long>> result = new ArrayList<>();
+        visitRollup(ipv6, length, (node, count) -> result.add(
+                new AbstractMap.SimpleImmutableEntry<>(new IpPrefix(ipv6, node.high, node.low, length), count)));
+        return result;
+    }
+
+    // limit самых нагруженных сетей длины length, по убыванию счетчика. Объект создается
+    // только для сетей, попавших в кучу, поэтому миллионы мелких подсетей почти ничего не стоят
+    public List<Map.Entry<IpPrefix, Long>> top(boolean ipv6, int length, int limit) {
+        List<Map.Entry<IpPrefix, Long>> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+        PriorityQueue<Map.Entry<IpPrefix, Long>> heap = new PriorityQueue<>(limit + 1, DESCENDING.reversed());
+        visitRollup(ipv6, length, (node, count) -> {
+            if (heap.size() == limit && count < heap.peek().getValue()) {
+                return;
+            }
+            heap.add(new AbstractMap.SimpleImmutableEntry<>(new IpPrefix(ipv6, node.high, node.low, length), count));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        });
+        result.addAll(heap);
+        result.sort(DESCENDING);
+        return result;
+    }
+
+    private void visitRollup(boolean ipv6, int length, RollupVisitor<V> visitor) {
+        int maxLength = ipv6 ? IpPrefix.IPV6_BITS : IpPrefix.IPV4_BITS;
+        if (length < 0 || length > maxLength) {
+            throw new IllegalArgumentException("Длина префикса должна быть от 0 до " + maxLength + ": " + length);
+        }
+        Deque<Node<V>> stack = new ArrayDeque<>();
+        stack.push(root(ipv6));
+        while (!stack.isEmpty()) {
+            Node<V> node = stack.pop();
+            if (node.length >= length) {
+                // Все адреса под узлом совпадают в первых node.length битах, значит и в length
+                if (node.count > 0) {
+                    visitor.visit(node, node.count);
+                }
+                continue;
+            }
+            if (node.one != null) stack.push(node.one);
+            if (node.zero != null) stack.push(node.zero);
+        }
+    }
+
+    // Число узлов, включая промежуточные
+    public int size() {
+        return size;
+    }
+
+    private Node<V> root(boolean ipv6) {
+        return ipv6 ? ipv6Root : ipv4Root;
+    }
+
+    // Узел ровно для префикса (high, low, length), при необходимости созданный;
+    // count прибавляется ко всем узлам на пути
+    private Node<V> insert(Node<V> root, long high, long low, int length, long count) {
+        high = IpPrefix.maskHigh(high, length);
+        low = IpPrefix.maskLow(low, length);
+        Node<V> node = root;
+        node.count += count;
+        while (node.length < length) {
+            int bit = IpPrefix.bit(high, low, node.length);
+            Node<V> child = node.child(bit);
+            if (child == null) {
+                child = newNode(high, low, length);
+                child.count = count;
+                node.setChild(bit, child);
+                return child;
+            }
+            int common = IpPrefix.commonLength(high, low, child.high, child.low, Math.min(length, child.length));
+            if (common == child.length) {
+                child.count += count;
+                node = child;
+                continue;
+            }
+            // Расходимся внутри сжатого ребра: вставляем узел в точке ветвления
+            Node<V> split = newNode(IpPrefix.maskHigh(high, common), IpPrefix.maskLow(low, common), common);
+            split.count = child.count + count;
+            split.setChild(IpPrefix.bit(child.high, child.low, common), child);
+            node.setChild(bit, split);
+            if (common == length) {
+                return split;
+            }
+            Node<V> leaf = newNode(high, low, length);
+            leaf.count = count;
+            split.setChild(IpPrefix.bit(high, low, common), leaf);
+            return leaf;
+        }
+        return node;
+    }
+
+    private V longestMatch(Node<V> root, long high, long low, int maxLength) {
+        V best = null;
+        Node<V> node = root;
+        while (node != null
+                && IpPrefix.commonLength(node.high, node.low, high, low, node.length) == node.length) {
+            if (node.value != null) {
+                best = node.value;
+            }
+            if (node.length == maxLength) {
+                break;
+            }
+            node = node.child(IpPrefix.bit(high, low, node.length));
+        }
+        return best;
+    }
+
+    private Node<V> newNode(long high, long low, int length) {
+        size++;
+        return new Node<>(high, low, length);
+    }
+
+    private interface RollupVisitor<V> {
+        void visit(Node<V> node, long count);
+    }
+
+    private static final class Node<V> {
+        final long high;
+        final long low;
+        final int length;
+        long count;
+        V value;
+        Node<V> zero;
+        Node<V> one;
+
+        Node(long high, long low, int length) {
+            this.high = high;
+            this.low = low;
+            this.length = length;
+        }
+
+        Node<V> child(int bit) {
+            return bit == 0 ? zero : one;
+        }
+
+        void setChild(int bit, Node<V> child) {
+            if (bit == 0) {
+                zero = child;
+            } else {
+                one = child;
+            }
+        }
+    }
+}
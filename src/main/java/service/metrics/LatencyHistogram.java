@@ -0,0 +1,76 @@
+package service.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Потокобезопасная гистограмма длительностей по степеням двойки: в корзине k значения
+// из [2^(k-1), 2^k). Точность - в пределах двух раз, зато запись - один LongAdder.add.
+// Обычно сюда сливаются локальные long[] из ParseMetrics.Recorder, а не отдельные значения.
+public final class LatencyHistogram {
+
+    public static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public static int bucketOf(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    // Наибольшее значение, попадающее в корзину
+    public static long upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    public void add(long value) {
+        buckets[bucketOf(value)].increment();
+        sum.add(value);
+    }
+
+    // Слияние локальных счетчиков корзин и суммы значений
+    public void addAll(long[] counts, long valueSum) {
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                buckets[i].add(counts[i]);
+            }
+        }
+        sum.add(valueSum);
+    }
+
+    public long[] counts() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    // Верхняя граница корзины, в которую попадает квантиль q; 0 для пустой гистограммы
+    public static long quantile(long[] counts, double q) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(counts.length - 1);
+    }
+}
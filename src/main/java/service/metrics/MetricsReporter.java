@@ -0,0 +1,244 @@
+package service.metrics;
+
+import service.FailureReason;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Периодическая выгрузка ParseMetrics в локальный файл: JSON или текстовый формат Prometheus
+// (для node_exporter textfile collector). Файл каждый раз перезаписывается целиком через
+// временный, так что читатель не увидит половину выгрузки. Скорости считаются и с момента
+// включения метрик, и за последний период.
+public final class MetricsReporter implements Closeable {
+
+    public enum Format {
+        JSON,
+        PROMETHEUS;
+
+        // .prom и .txt - Prometheus, остальное - JSON
+        public static Format forFile(Path file) {
+            String name = file.getFileName().toString();
+            return name.endsWith(".prom") || name.endsWith(".txt") ? PROMETHEUS : JSON;
+        }
+    }
+
+    private static final String PREFIX = "log_analyzer_";
+
+    private final ParseMetrics metrics;
+    private final Path file;
+    private final Format format;
+    private ScheduledExecutorService scheduler;
+    private long previousNanos = System.nanoTime();
+    private long previousLines;
+    private long previousBytes;
+
+    public MetricsReporter(ParseMetrics metrics, Path file, Format format) {
+        this.metrics = metrics;
+        this.file = file;
+        this.format = format;
+    }
+
+    // Выгрузка раз в periodSeconds в фоновом потоке-демоне
+    public synchronized void start(long periodSeconds) {
+        if (periodSeconds < 1) {
+            throw new IllegalArgumentException("periodSeconds должен быть >= 1: " + periodSeconds);
+        }
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                write();
+            } catch (IOException e) {
+                System.err.println("Не удалось записать метрики в " + file + ": " + e.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void write() throws IOException {
+        String text = format == Format.JSON ? toJson() : toPrometheus();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, text.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Останавливает выгрузку и записывает итоговые значения
+    @Override
+    public synchronized void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        write();
+    }
+
+    String toJson() {
+        Snapshot s = snapshot();
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\n");
+        field(json, "uptimeMillis", s.uptimeMillis);
+        field(json, "linesRead", s.linesRead);
+        field(json, "linesParsed", s.linesParsed);
+        field(json, "bytesRead", s.bytesRead);
+        json.append("  \"failures\": {");
+        FailureReason[] reasons = FailureReason.values();
+        for (int i = 0; i < reasons.length; i++) {
+            json.append(i == 0 ? "" : ", ").append('"').append(reasons[i].name()).append("\": ")
+                    .append(metrics.getFailures(reasons[i]));
+        }
+        json.append("},\n");
+        json.append("  \"stageNanos\": {");
+        Stage[] stages = Stage.values();
+        for (int i = 0; i < stages.length; i++) {
+            json.append(i == 0 ? "" : ", ").append('"').append(stages[i].name()).append("\": ")
+                    .append(metrics.getStageNanos(stages[i]));
+        }
+        json.append("},\n");
+        field(json, "linesPerSecond", s.linesPerSecond);
+        field(json, "bytesPerSecond", s.bytesPerSecond);
+        field(json, "recentLinesPerSecond", s.recentLinesPerSecond);
+        field(json, "recentBytesPerSecond", s.recentBytesPerSecond);
+        field(json, "parseLatencyP50Nanos", LatencyHistogram.quantile(s.latency, 0.5));
+        field(json, "parseLatencyP99Nanos", LatencyHistogram.quantile(s.latency, 0.99));
+        field(json, "parseLatencyP999Nanos", LatencyHistogram.quantile(s.latency, 0.999));
+        field(json, "allocatedBytesPerLine", metrics.getAllocatedBytesPerLine());
+        field(json, "gcCollections", s.gcCollections);
+        field(json, "gcTimeMillis", s.gcTimeMillis);
+        json.append("  \"heapUsedBytes\": ").append(s.heapUsedBytes).append('\n');
+        json.append("}\n");
+        return json.toString();
+    }
+
+    String toPrometheus() {
+        Snapshot s = snapshot();
+        StringBuilder text = new StringBuilder(4096);
+        counter(text, "lines_read_total", "Lines read from logs", s.linesRead);
+        counter(text, "lines_parsed_total", "Lines parsed into entries", s.linesParsed);
+        counter(text, "bytes_read_total", "Bytes of log lines read", s.bytesRead);
+
+        header(text, "parse_failures_total", "Lines rejected by the parser", "counter");
+        for (FailureReason reason : FailureReason.values()) {
+            text.append(PREFIX).append("parse_failures_total{reason=\"").append(reason.name().toLowerCase(Locale.ROOT))
+                    .append("\"} ").append(metrics.getFailures(reason)).append('\n');
+        }
+        header(text, "stage_nanoseconds_total", "Time spent per processing stage", "counter");
+        for (Stage stage : Stage.values()) {
+            text.append(PREFIX).append("stage_nanoseconds_total{stage=\"").append(stage.name().toLowerCase(Locale.ROOT))
+                    .append("\"} ").append(metrics.getStageNanos(stage)).append('\n');
+        }
+
+        header(text, "parse_line_nanoseconds", "Time to parse one line", "histogram");
+        long cumulative = 0;
+        int last = lastNonEmpty(s.latency);
+        for (int i = 0; i <= last; i++) {
+            cumulative += s.latency[i];
+            text.append(PREFIX).append("parse_line_nanoseconds_bucket{le=\"")
+                    .append(LatencyHistogram.upperBound(i)).append("\"} ").append(cumulative).append('\n');
+        }
+        text.append(PREFIX).append("parse_line_nanoseconds_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+        text.append(PREFIX).append("parse_line_nanoseconds_sum ").append(s.latencySum).append('\n');
+        text.append(PREFIX).append("parse_line_nanoseconds_count ").append(cumulative).append('\n');
+
+        gauge(text, "lines_per_second", "Lines per second over the last period", s.recentLinesPerSecond);
+        gauge(text, "bytes_per_second", "Bytes per second over the last period", s.recentBytesPerSecond);
+        gauge(text, "allocated_bytes_per_line", "Bytes allocated by parsing threads per line",
+                metrics.getAllocatedBytesPerLine());
+        counter(text, "gc_collections_total", "GC collections in this JVM", s.gcCollections);
+        counter(text, "gc_time_milliseconds_total", "GC time in this JVM", s.gcTimeMillis);
+        gauge(text, "heap_used_bytes", "Used heap", s.heapUsedBytes);
+        return text.toString();
+    }
+
+    // Значения для одной выгрузки; скорость за период считается от прошлого снимка
+    private Snapshot snapshot() {
+        Snapshot s = new Snapshot();
+        long now = System.nanoTime();
+        s.uptimeMillis = metrics.getUptimeMillis();
+        s.linesRead = metrics.getLinesRead();
+        s.linesParsed = metrics.getLinesParsed();
+        s.bytesRead = metrics.getBytesRead();
+        s.linesPerSecond = metrics.getLinesPerSecond();
+        s.bytesPerSecond = metrics.getBytesPerSecond();
+        double seconds = (now - previousNanos) / 1e9;
+        s.recentLinesPerSecond = seconds > 0 ? (s.linesRead - previousLines) / seconds : 0;
+        s.recentBytesPerSecond = seconds > 0 ? (s.bytesRead - previousBytes) / seconds : 0;
+        previousNanos = now;
+        previousLines = s.linesRead;
+        previousBytes = s.bytesRead;
+
+        s.latency = metrics.getParseLatency().counts();
+        s.latencySum = metrics.getParseLatency().getSum();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            s.gcCollections += Math.max(gc.getCollectionCount(), 0);
+            s.gcTimeMillis += Math.max(gc.getCollectionTime(), 0);
+        }
+        s.heapUsedBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        return s;
+    }
+
+    private static void field(StringBuilder json, String name, long value) {
+        json.append("  \"").append(name).append("\": ").append(value).append(",\n");
+    }
+
+    private static void field(StringBuilder json, String name, double value) {
+        json.append("  \"").append(name).append("\": ").append(format(value)).append(",\n");
+    }
+
+    private static void header(StringBuilder text, String name, String help, String type) {
+        text.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder text, String name, String help, long value) {
+        header(text, name, help, "counter");
+        text.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder text, String name, String help, double value) {
+        header(text, name, help, "gauge");
+        text.append(PREFIX).append(name).append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static int lastNonEmpty(long[] counts) {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] != 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Snapshot {
+        long uptimeMillis;
+        long linesRead;
+        long linesParsed;
+        long bytesRead;
+        double linesPerSecond;
+        double bytesPerSecond;
+        double recentLinesPerSecond;
+        double recentBytesPerSecond;
+        long[] latency;
+        long latencySum;
+        long gcCollections;
+        long gcTimeMillis;
+        long heapUsedBytes;
+    }
+}
@@ -0,0 +1,299 @@
+package service.metrics;
+
+import service.FailureReason;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Счетчики разбора для мониторинга: строки, байты, ошибки по причинам, время по этапам,
+// задержка разбора строки и выделение памяти на строку. Общие счетчики - LongAdder,
+// так что параллельные потоки не спорят за одну ячейку; сами парсеры копят значения
+// в своем Recorder и сливают их пачками. Пока метрики не включены через install(),
+// парсер не создает Recorder и на горячем пути остается одна проверка на null.
+public final class ParseMetrics implements ParseMetricsMXBean {
+
+    public static final String OBJECT_NAME = "log.analyzer:type=ParseMetrics";
+
+    // Раз в столько строк Recorder сливает накопленное в общие счетчики
+    static final int FLUSH_LINES = 4096;
+
+    private static volatile ParseMetrics installed;
+
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder linesParsed = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder[] failures = adders(FailureReason.values().length);
+    private final LongAdder[] stageNanos = adders(Stage.values().length);
+    private final LatencyHistogram parseLatency = new LatencyHistogram();
+    // Память считается только по тем строкам, для которых JVM смогла ее измерить
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder allocationLines = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    // Включает общие метрики; парсеры, созданные после вызова, начинают их заполнять
+    public static synchronized ParseMetrics install() {
+        if (installed == null) {
+            installed = new ParseMetrics();
+        }
+        return installed;
+    }
+
+    // null, если метрики не включены
+    public static ParseMetrics installed() {
+        return installed;
+    }
+
+    // Recorder для нового парсера или null, если метрики не включены
+    public static Recorder recorder() {
+        ParseMetrics metrics = installed;
+        return metrics == null ? null : metrics.newRecorder();
+    }
+
+    public Recorder newRecorder() {
+        return new Recorder(this);
+    }
+
+    // Регистрация в платформенном MBeanServer; повторная регистрация не ошибка
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // уже зарегистрирован
+        } catch (JMException e) {
+            throw new IllegalStateException("Не удалось зарегистрировать " + OBJECT_NAME + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public long getLinesRead() { return linesRead.sum(); }
+
+    @Override
+    public long getLinesParsed() { return linesParsed.sum(); }
+
+    @Override
+    public long getBytesRead() { return bytesRead.sum(); }
+
+    public long getFailures(FailureReason reason) {
+        return failures[reason.ordinal()].sum();
+    }
+
+    public long getStageNanos(Stage stage) {
+        return stageNanos[stage.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Long> getFailures() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (FailureReason reason : FailureReason.values()) {
+            result.put(reason.name(), getFailures(reason));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getStageNanos() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            result.put(stage.name(), getStageNanos(stage));
+        }
+        return result;
+    }
+
+    public long getFailureCount() {
+        long total = 0;
+        for (LongAdder failure : failures) {
+            total += failure.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public double getLinesPerSecond() {
+        return perSecond(getLinesRead());
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(getBytesRead());
+    }
+
+    @Override
+    public double getAllocatedBytesPerLine() {
+        long lines = allocationLines.sum();
+        return lines == 0 ? -1 : (double) allocatedBytes.sum() / lines;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    public LatencyHistogram getParseLatency() {
+        return parseLatency;
+    }
+
+    @Override
+    public long getParseLatencyP50Nanos() {
+        return LatencyHistogram.quantile(parseLatency.counts(), 0.5);
+    }
+
+    @Override
+    public long getParseLatencyP99Nanos() {
+        return LatencyHistogram.quantile(parseLatency.counts(), 0.99);
+    }
+
+    @Override
+    public long getUptimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private double perSecond(long value) {
+        long nanos = System.nanoTime() - startNanos;
+        return nanos == 0 ? 0 : value * 1e9 / nanos;
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    // Локальные счетчики одного парсера. Не потокобезопасен: один поток пишет,
+    // flush() переносит накопленное в общие LongAdder.
+    // Порядок на строку: lineStarted, lineParsed, и для разобранной строки lineConsumed.
+    public static final class Recorder {
+
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+        private static final boolean ALLOCATION_SUPPORTED = allocationSupported();
+        private static final long NO_THREAD = -1;
+
+        private final ParseMetrics metrics;
+        private final long[] failures = new long[FailureReason.values().length];
+        private final long[] stageNanos = new long[Stage.values().length];
+        private final long[] latency = new long[LatencyHistogram.BUCKETS];
+        private long latencySum;
+        private long lines;
+        private long parsed;
+        private long bytes;
+        // Конец прошлой строки в текущем проходе, 0 - проход только начался
+        private long lastLineEnd;
+        private long allocationThread = NO_THREAD;
+        private long allocationBaseline;
+        private long allocationLines;
+
+        private Recorder(ParseMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        // Возвращает время начала строки для lineParsed
+        public long lineStarted(int length) {
+            if (allocationThread == NO_THREAD) {
+                startAllocation();
+            }
+            long now = System.nanoTime();
+            if (lastLineEnd != 0) {
+                stageNanos[Stage.READ.ordinal()] += now - lastLineEnd;
+            }
+            lines++;
+            allocationLines++;
+            bytes += length + 1;
+            return now;
+        }
+
+        // Возвращает время окончания разбора для lineConsumed
+        public long lineParsed(long startNanos, boolean success) {
+            long now = System.nanoTime();
+            long elapsed = now - startNanos;
+            stageNanos[Stage.PARSE.ordinal()] += elapsed;
+            latency[LatencyHistogram.bucketOf(elapsed)]++;
+            latencySum += elapsed;
+            if (success) {
+                parsed++;
+            }
+            lastLineEnd = now;
+            if (lines >= FLUSH_LINES) {
+                flush();
+            }
+            return now;
+        }
+
+        public void lineConsumed(long parsedNanos) {
+            long now = System.nanoTime();
+            stageNanos[Stage.CONSUME.ordinal()] += now - parsedNanos;
+            lastLineEnd = now;
+        }
+
+        public void failure(FailureReason reason) {
+            failures[reason.ordinal()]++;
+        }
+
+        // Конец прохода (файла, диапазона, порции новых строк): все уходит в общие счетчики,
+        // а пауза до следующего прохода не считается чтением
+        public void finish() {
+            flush();
+            lastLineEnd = 0;
+            allocationThread = NO_THREAD;
+        }
+
+        private void flush() {
+            metrics.linesRead.add(lines);
+            metrics.linesParsed.add(parsed);
+            metrics.bytesRead.add(bytes);
+            lines = 0;
+            parsed = 0;
+            bytes = 0;
+            for (int i = 0; i < failures.length; i++) {
+                if (failures[i] != 0) {
+                    metrics.failures[i].add(failures[i]);
+                    failures[i] = 0;
+                }
+            }
+            for (int i = 0; i < stageNanos.length; i++) {
+                metrics.stageNanos[i].add(stageNanos[i]);
+                stageNanos[i] = 0;
+            }
+            metrics.parseLatency.addAll(latency, latencySum);
+            Arrays.fill(latency, 0);
+            latencySum = 0;
+
+            if (allocationThread != NO_THREAD && allocationThread == Thread.currentThread().getId()) {
+                long allocated = allocatedBytes(allocationThread);
+                if (allocated >= 0 && allocationBaseline >= 0) {
+                    metrics.allocatedBytes.add(allocated - allocationBaseline);
+                    metrics.allocationLines.add(allocationLines);
+                }
+                allocationBaseline = allocated;
+            }
+            allocationLines = 0;
+        }
+
+        private void startAllocation() {
+            if (!ALLOCATION_SUPPORTED) {
+                return;
+            }
+            allocationThread = Thread.currentThread().getId();
+            allocationBaseline = allocatedBytes(allocationThread);
+            allocationLines = 0;
+        }
+
+        private static long allocatedBytes(long threadId) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(threadId);
+        }
+
+        private static boolean allocationSupported() {
+            if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+                return false;
+            }
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package service.metrics;
+
+import java.util.Map;
+
+// Метрики разбора в JMX (jconsole, VisualVM, JMX-экспортеры) под именем ParseMetrics.OBJECT_NAME
+public interface ParseMetricsMXBean {
+
+    long getLinesRead();
+
+    long getLinesParsed();
+
+    long getBytesRead();
+
+    // Ошибки разбора по FailureReason
+    Map<String, Long> getFailures();
+
+    // Суммарное время по этапам Stage, наносекунды всех потоков
+    Map<String, Long> getStageNanos();
+
+    double getLinesPerSecond();
+
+    double getBytesPerSecond();
+
+    // Выделено памяти в потоках разбора на одну строку, вместе с агрегаторами; -1, если JVM не умеет считать
+    double getAllocatedBytesPerLine();
+
+    long getParseLatencyP50Nanos();
+
+    long getParseLatencyP99Nanos();
+
+    long getUptimeMillis();
+}
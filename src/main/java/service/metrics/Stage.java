@@ -0,0 +1,8 @@
+package service.metrics;
+
+// Этапы обработки строки, по которым копится время
+public enum Stage {
+    READ,    // чтение и поиск конца строки: время между концом прошлой строки и началом этой
+    PARSE,   // разбор строки в LogEntry
+    CONSUME  // потребитель записи, обычно агрегаторы статистики
+}
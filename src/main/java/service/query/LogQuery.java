@@ -0,0 +1,377 @@
+package service.query;
+
+import model.Device;
+import model.LogEntry;
+import service.ByteSlice;
+import service.LineTokenizer;
+import service.UserAgentCache;
+import service.ip.IpAccessList;
+import service.ip.IpPrefix;
+import service.ip.IpPrefixTrie;
+import service.stats.GroupKey;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Отбор записей по условиям, соединенным через И, и необязательная группировка.
+// Задается строкой (см. parse) или через Builder. Неизменяем, поэтому один
+// скомпилированный запрос можно отдать всем потокам и использовать для любого числа файлов.
+//
+// Дешевые условия (код ответа, метод, путь, IP, время) LogParser проверяет сразу после
+// токенайзера по позициям полей в строке: неподходящая строка отбрасывается
+// до создания строк и LogEntry. Тип клиента проверяется уже по готовой записи.
+public final class LogQuery {
+
+    private static final int STATUS_LIMIT = 1000;
+    private static final int SECONDS_PER_DAY = 86400;
+
+    private final String text;
+    private final boolean[] statuses;      // null - любой код
+    private final String[] methods;        // null - любой метод
+    private final FieldPattern[] paths;    // null - любой путь
+    private final FieldPattern[] ips;      // null - любой IP
+    // Сети из ip=10.0.0.0/8; вместе с ips - любое из значений. После сборки только читается
+    private final IpPrefixTrie<Boolean> networks;
+    private final IpAccessList accessList; // null - без списка разрешенных и запрещенных сетей
+    private final long from;               // [from, to) в локальных секундах от эпохи
+    private final long to;
+    private final int dayFrom;             // [dayFrom, dayTo) в секундах от полуночи, -1 - без условия
+    private final int dayTo;
+    private final Set<Device> devices;     // null - любой клиент
+    private final GroupKey groupBy;        // null - без группировки
+
+    private LogQuery(Builder builder) {
+        this.text = builder.text;
+        this.statuses = builder.statuses == null ? null : builder.statuses.clone();
+        this.methods = builder.methods.isEmpty() ? null : builder.methods.toArray(new String[0]);
+        this.paths = builder.paths.isEmpty() ? null : builder.paths.toArray(new FieldPattern[0]);
+        this.ips = builder.ips.isEmpty() ? null : builder.ips.toArray(new FieldPattern[0]);
+        if (builder.networks.isEmpty()) {
+            this.networks = null;
+        } else {
+            this.networks = new IpPrefixTrie<>();
+            builder.networks.forEach(network -> networks.put(network, Boolean.TRUE));
+        }
+        this.accessList = builder.accessList;
+        this.from = builder.from;
+        this.to = builder.to;
+        this.dayFrom = builder.dayFrom;
+        this.dayTo = builder.dayTo;
+        this.devices = builder.devices.isEmpty() ? null : EnumSet.copyOf(builder.devices);
+        this.groupBy = builder.groupBy;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Условия через пробел, значения одного условия через запятую (любое из них):
+    //   status=5xx,404 | status=500-599   код или класс кодов
+    //   method=GET,POST
+    //   path=/engine.php | path=/api/*    точный путь или префикс со звездочкой в конце
+    //   ip=10.0.0.1 | ip=192.168.* | ip=10.0.0.0/8,2a02:6b8::/32   адрес, префикс строки или сеть CIDR
+    //   iplist=allow.txt                  файл правил allow/deny (см. IpAccessList)
+    //   time=06:00-07:00                  время суток, может переходить через полночь
+    //   time=2022-09-25T06:00/2022-09-25T07:00
+    //   client=mobile,desktop,bot
+    //   by=path                           группировка по GroupKey
+    public static LogQuery parse(String query) {
+        Builder builder = builder();
+        builder.text = query.trim();
+        for (String term : query.trim().split("\\s+")) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            int eq = term.indexOf('=');
+            if (eq <= 0 || eq == term.length() - 1) {
+                throw new IllegalArgumentException("Условие должно иметь вид поле=значение: " + term);
+            }
+            String field = term.substring(0, eq).toLowerCase(Locale.ROOT);
+            String value = term.substring(eq + 1);
+            try {
+                applyTerm(builder, field, value);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Не удалось разобрать условие " + term + ": " + e.getMessage(), e);
+            }
+        }
+        return builder.build();
+    }
+
+    private static void applyTerm(Builder builder, String field, String value) {
+        switch (field) {
+            case "status":
+                for (String status : value.split(",")) {
+                    if (status.length() == 3 && status.toLowerCase(Locale.ROOT).endsWith("xx")) {
+                        int statusClass = Integer.parseInt(status.substring(0, 1));
+                        builder.status(statusClass * 100, statusClass * 100 + 99);
+                    } else if (status.contains("-")) {
+                        String[] bounds = status.split("-", 2);
+                        builder.status(Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]));
+                    } else {
+                        int code = Integer.parseInt(status);
+                        builder.status(code, code);
+                    }
+                }
+                break;
+            case "method":
+                for (String method : value.split(",")) {
+                    builder.method(method);
+                }
+                break;
+            case "path":
+                for (String path : value.split(",")) {
+                    builder.path(path);
+                }
+                break;
+            case "ip":
+                for (String ip : value.split(",")) {
+                    if (ip.contains("/")) {
+                        builder.network(IpPrefix.parse(ip));
+                    } else {
+                        builder.ip(ip);
+                    }
+                }
+                break;
+            case "iplist":
+                try {
+                    builder.accessList(IpAccessList.load(Paths.get(value)));
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Не удалось прочитать список сетей " + value + ": " + e.getMessage(), e);
+                }
+                break;
+            case "time":
+                if (value.contains("/")) {
+                    String[] bounds = value.split("/", 2);
+                    builder.between(LocalDateTime.parse(bounds[0]), LocalDateTime.parse(bounds[1]));
+                } else {
+                    String[] bounds = value.split("-", 2);
+                    if (bounds.length != 2) {
+                        throw new IllegalArgumentException("Время суток задается как 06:00-07:00: " + value);
+                    }
+                    builder.timeOfDay(LocalTime.parse(bounds[0]), LocalTime.parse(bounds[1]));
+                }
+                break;
+            case "client":
+                for (String device : value.split(",")) {
+                    builder.client(Device.valueOf(device.toUpperCase(Locale.ROOT)));
+                }
+                break;
+            case "by":
+                builder.groupBy(GroupKey.valueOf(value.toUpperCase(Locale.ROOT)));
+                break;
+            default:
+                throw new IllegalArgumentException("Неизвестное поле запроса: " + field);
+        }
+    }
+
+    public GroupKey getGroupBy() {
+        return groupBy;
+    }
+
+    // Есть ли условия по самим записям (без учета группировки)
+    public boolean isFiltering() {
+        return statuses != null || methods != null || paths != null || ips != null || networks != null
+                || accessList != null
+                || from != Long.MIN_VALUE || to != Long.MAX_VALUE || dayFrom >= 0 || devices != null;
+    }
+
+    // Полная проверка готовой записи
+    public boolean matches(LogEntry entry) {
+        return (statuses == null || acceptsStatus(entry.getResponseCode()))
+                && (methods == null || acceptsMethod(entry.getMethod(), 0, entry.getMethod().length()))
+                && (paths == null || anyMatches(paths, entry.getPath(), 0, entry.getPath().length()))
+                && acceptsIp(entry.getIpAddress(), 0, entry.getIpAddress().length())
+                && acceptsTime(entry.getEpochSecond())
+                && acceptsEntry(entry);
+    }
+
+    // Условия по полям строки, которые токенайзер уже нашел; ни одной строки не создается
+    public boolean acceptsTokens(LineTokenizer tokens) {
+        CharSequence line = tokens.line();
+        return (statuses == null || acceptsStatus(tokens.responseCode()))
+                && (methods == null || acceptsMethod(line, tokens.methodStart(), tokens.methodEnd()))
+                && (paths == null || anyMatches(paths, line, tokens.pathStart(), tokens.pathEnd()))
+                && acceptsIp(line, tokens.ipStart(), tokens.ipEnd());
+    }
+
+    public boolean acceptsTime(long epochSecond) {
+        if (epochSecond < from || epochSecond >= to) {
+            return false;
+        }
+        if (dayFrom < 0) {
+            return true;
+        }
+        int secondOfDay = (int) Math.floorMod(epochSecond, (long) SECONDS_PER_DAY);
+        return dayFrom <= dayTo
+                ? secondOfDay >= dayFrom && secondOfDay < dayTo
+                : secondOfDay >= dayFrom || secondOfDay < dayTo;
+    }
+
+    // Условия, которые проверяются только по готовой записи
+    public boolean acceptsEntry(LogEntry entry) {
+        return devices == null || devices.contains(UserAgentCache.DEFAULT.deviceOf(entry.getUserAgent()));
+    }
+
+    private boolean acceptsStatus(int code) {
+        return code >= 0 && code < STATUS_LIMIT && statuses[code];
+    }
+
+    // Адрес разбирается прямо из строки лога, только если есть условия по сетям
+    private boolean acceptsIp(CharSequence text, int start, int end) {
+        boolean listed = (ips == null && networks == null)
+                || (ips != null && anyMatches(ips, text, start, end))
+                || (networks != null && networks.longestMatch(text, start, end) != null);
+        return listed && (accessList == null || accessList.allows(text, start, end));
+    }
+
+    private boolean acceptsMethod(CharSequence text, int start, int end) {
+        for (String method : methods) {
+            if (method.length() == end - start && regionMatches(text, start, method)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean anyMatches(FieldPattern[] patterns, CharSequence text, int start, int end) {
+        for (FieldPattern pattern : patterns) {
+            if (pattern.matches(text, start, end)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(CharSequence text, int start, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (text.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return text != null ? text : "LogQuery";
+    }
+
+    // Точное значение или префикс. ByteSlice отдает байты UTF-8 как символы,
+    // поэтому для него значение хранится в том же виде.
+    private static final class FieldPattern {
+        private final String value;
+        private final String rawValue;
+        private final boolean prefix;
+
+        FieldPattern(String pattern) {
+            this.prefix = pattern.endsWith("*");
+            this.value = prefix ? pattern.substring(0, pattern.length() - 1) : pattern;
+            this.rawValue = new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+        }
+
+        boolean matches(CharSequence text, int start, int end) {
+            String expected = text instanceof ByteSlice ? rawValue : value;
+            int length = end - start;
+            if (prefix ? length < expected.length() : length != expected.length()) {
+                return false;
+            }
+            return regionMatches(text, start, expected);
+        }
+    }
+
+    public static final class Builder {
+        private String text;
+        private boolean[] statuses;
+        private final List<String> methods = new ArrayList<>();
+        private final List<FieldPattern> paths = new ArrayList<>();
+        private final List<FieldPattern> ips = new ArrayList<>();
+        private final List<IpPrefix> networks = new ArrayList<>();
+        private IpAccessList accessList;
+        private long from = Long.MIN_VALUE;
+        private long to = Long.MAX_VALUE;
+        private int dayFrom = -1;
+        private int dayTo = -1;
+        private final Set<Device> devices = EnumSet.noneOf(Device.class);
+        private GroupKey groupBy;
+
+        private Builder() {
+        }
+
+        // Коды ответа [fromCode, toCode] включительно; несколько вызовов объединяются через ИЛИ
+        public Builder status(int fromCode, int toCode) {
+            if (fromCode < 0 || toCode >= STATUS_LIMIT || fromCode > toCode) {
+                throw new IllegalArgumentException("Неверный диапазон кодов ответа: " + fromCode + "-" + toCode);
+            }
+            if (statuses == null) {
+                statuses = new boolean[STATUS_LIMIT];
+            }
+            Arrays.fill(statuses, fromCode, toCode + 1, true);
+            return this;
+        }
+
+        public Builder method(String method) {
+            methods.add(method.toUpperCase(Locale.ROOT));
+            return this;
+        }
+
+        // Точный путь или префикс, если заканчивается на '*'
+        public Builder path(String pattern) {
+            paths.add(new FieldPattern(pattern));
+            return this;
+        }
+
+        public Builder ip(String pattern) {
+            ips.add(new FieldPattern(pattern));
+            return this;
+        }
+
+        // Адрес из сети; несколько вызовов и ip(...) объединяются через ИЛИ
+        public Builder network(IpPrefix network) {
+            networks.add(network);
+            return this;
+        }
+
+        public Builder accessList(IpAccessList accessList) {
+            this.accessList = accessList;
+            return this;
+        }
+
+        // Интервал [from, to) по локальному времени строк
+        public Builder between(LocalDateTime from, LocalDateTime to) {
+            this.from = from.toEpochSecond(ZoneOffset.UTC);
+            this.to = to.toEpochSecond(ZoneOffset.UTC);
+            return this;
+        }
+
+        // Время суток [from, to); если to раньше from, интервал проходит через полночь
+        public Builder timeOfDay(LocalTime from, LocalTime to) {
+            this.dayFrom = from.toSecondOfDay();
+            this.dayTo = to.toSecondOfDay();
+            return this;
+        }
+
+        public Builder client(Device device) {
+            devices.add(device);
+            return this;
+        }
+
+        public Builder groupBy(GroupKey key) {
+            this.groupBy = key;
+            return this;
+        }
+
+        public LogQuery build() {
+            return new LogQuery(this);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package service.rate;
+
+// Клиент пересек порог RateLimits в одном из окон. Повторно по тому же окну и причине
+// клиент помечается, только если сначала опустился ниже порога.
+public final class RateAlert {
+
+    public enum Kind {
+        RATE,       // запросов в окне больше порога
+        ERROR_RATE  // доля ответов 4xx/5xx в окне больше порога
+    }
+
+    private final String client;
+    private final Kind kind;
+    private final long windowSeconds;
+    private final long requests;
+    private final long errors;
+    private final long epochSecond;
+
+    RateAlert(String client, Kind kind, long windowSeconds, long requests, long errors, long epochSecond) {
+        this.client = client;
+        this.kind = kind;
+        this.windowSeconds = windowSeconds;
+        this.requests = requests;
+        this.errors = errors;
+        this.epochSecond = epochSecond;
+    }
+
+    // Адрес или подсеть в записи CIDR, если клиенты сворачиваются до подсетей
+    public String getClient() { return client; }
+    public Kind getKind() { return kind; }
+    public long getWindowSeconds() { return windowSeconds; }
+    public long getRequests() { return requests; }
+    public long getErrors() { return errors; }
+    // Локальное время записи, на которой порог был пересечен
+    public long getEpochSecond() { return epochSecond; }
+
+    @Override
+    public String toString() {
+        return client + " " + kind + " " + requests + "/" + errors + " за " + windowSeconds + " с";
+    }
+}
@@ -0,0 +1,231 @@
+package service.rate;
+
+import service.ip.IpPrefix;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// Настройки RateTracker: скользящие окна с порогами числа запросов, порог доли ошибок,
+// до какой подсети сворачивать клиентов и сколько клиентов держать в памяти.
+// Задается строкой (см. parse) или через Builder, после сборки неизменяем.
+public final class RateLimits {
+
+    public static final int DEFAULT_MAX_CLIENTS = 1 << 18;
+    // Без такого минимума клиент помечался бы уже на первом ответе 4xx
+    public static final long DEFAULT_MIN_REQUESTS_FOR_ERRORS = 20;
+    public static final RateLimits DEFAULT = parse("10s=100,1m=300,5m=1000 errors=50%");
+
+    // Окно делится на столько корзин или меньше; шаг скольжения - длина корзины
+    static final int MAX_BUCKETS = 6;
+    private static final int MAX_WINDOWS = 8;
+
+    private final long[] windowSeconds;
+    private final int[] buckets;
+    private final long[] maxRequests;      // 0 - окно без порога, только учет
+    private final double maxErrorRatio;    // 0 - без порога ошибок
+    private final long minRequestsForErrors;
+    private final int ipv4Prefix;
+    private final int ipv6Prefix;
+    private final int maxClients;
+
+    private RateLimits(Builder builder) {
+        int count = builder.windows.size();
+        this.windowSeconds = new long[count];
+        this.buckets = new int[count];
+        this.maxRequests = new long[count];
+        for (int i = 0; i < count; i++) {
+            long[] window = builder.windows.get(i);
+            windowSeconds[i] = window[0];
+            buckets[i] = bucketsFor(window[0]);
+            maxRequests[i] = window[1];
+        }
+        this.maxErrorRatio = builder.maxErrorRatio;
+        this.minRequestsForErrors = builder.minRequestsForErrors;
+        this.ipv4Prefix = builder.ipv4Prefix;
+        this.ipv6Prefix = builder.ipv6Prefix;
+        this.maxClients = builder.maxClients;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Окна через запятую, остальные параметры через пробел:
+    //   10s=100,1m=300,5m=1000   длина окна (s, m, h) и порог запросов клиента в нем, 0 - без порога
+    //   errors=50%               доля ответов 4xx/5xx в окне, после которой клиент помечается
+    //   minRequests=20           доля ошибок проверяется, только когда запросов в окне не меньше (по умолчанию 20)
+    //   prefix=24 | prefix=24/64 сворачивать клиентов до подсети IPv4 (и IPv6)
+    //   clients=1000000          сколько клиентов держать в памяти одновременно
+    public static RateLimits parse(String spec) {
+        Builder builder = builder();
+        for (String term : spec.trim().split("\\s+")) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            int eq = term.indexOf('=');
+            if (eq <= 0 || eq == term.length() - 1) {
+                throw new IllegalArgumentException("Параметр должен иметь вид имя=значение: " + term);
+            }
+            String name = term.substring(0, eq).toLowerCase(Locale.ROOT);
+            String value = term.substring(eq + 1);
+            try {
+                switch (name) {
+                    case "errors":
+                        builder.maxErrorRatio(value.endsWith("%")
+                                ? Double.parseDouble(value.substring(0, value.length() - 1)) / 100
+                                : Double.parseDouble(value));
+                        break;
+                    case "minrequests":
+                        builder.minRequestsForErrors(Long.parseLong(value));
+                        break;
+                    case "prefix": {
+                        String[] lengths = value.split("/", 2);
+                        builder.prefix(Integer.parseInt(lengths[0]),
+                                lengths.length > 1 ? Integer.parseInt(lengths[1]) : IpPrefix.IPV6_BITS);
+                        break;
+                    }
+                    case "clients":
+                        builder.maxClients(Integer.parseInt(value));
+                        break;
+                    default:
+                        // Первый параметр - список окон: "10s=100,1m=300"
+                        for (String window : term.split(",")) {
+                            String[] parts = window.split("=", 2);
+                            if (parts.length != 2) {
+                                throw new IllegalArgumentException("Окно задается как 10s=100: " + window);
+                            }
+                            builder.window(parseSeconds(parts[0]), Long.parseLong(parts[1]));
+                        }
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Не удалось разобрать параметр " + term + ": " + e.getMessage(), e);
+            }
+        }
+        return builder.build();
+    }
+
+    // "10s", "1m", "2h"; число без суффикса - секунды
+    static long parseSeconds(String text) {
+        String value = text.trim().toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (value.endsWith("s")) {
+            value = value.substring(0, value.length() - 1);
+        } else if (value.endsWith("m")) {
+            unit = 60;
+            value = value.substring(0, value.length() - 1);
+        } else if (value.endsWith("h")) {
+            unit = 3600;
+            value = value.substring(0, value.length() - 1);
+        }
+        return Long.parseLong(value) * unit;
+    }
+
+    // Наибольший делитель длины окна, не больше MAX_BUCKETS: корзины делят окно без остатка
+    private static int bucketsFor(long seconds) {
+        for (int count = MAX_BUCKETS; count > 1; count--) {
+            if (seconds % count == 0) {
+                return count;
+            }
+        }
+        return 1;
+    }
+
+    public int windowCount() { return windowSeconds.length; }
+    public long windowSeconds(int window) { return windowSeconds[window]; }
+    public int buckets(int window) { return buckets[window]; }
+    public long bucketSeconds(int window) { return windowSeconds[window] / buckets[window]; }
+    public long maxRequests(int window) { return maxRequests[window]; }
+    public double getMaxErrorRatio() { return maxErrorRatio; }
+    public long getMinRequestsForErrors() { return minRequestsForErrors; }
+    public int getIpv4Prefix() { return ipv4Prefix; }
+    public int getIpv6Prefix() { return ipv6Prefix; }
+    public int getMaxClients() { return maxClients; }
+
+    public long longestWindowSeconds() {
+        return Arrays.stream(windowSeconds).max().orElse(0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < windowSeconds.length; i++) {
+            text.append(i == 0 ? "" : ",").append(windowSeconds[i]).append("s=").append(maxRequests[i]);
+        }
+        if (maxErrorRatio > 0) {
+            text.append(String.format(Locale.ROOT, " errors=%.0f%% minRequests=%d", maxErrorRatio * 100, minRequestsForErrors));
+        }
+        if (ipv4Prefix < IpPrefix.IPV4_BITS || ipv6Prefix < IpPrefix.IPV6_BITS) {
+            text.append(" prefix=").append(ipv4Prefix).append('/').append(ipv6Prefix);
+        }
+        return text.append(" clients=").append(maxClients).toString();
+    }
+
+    public static final class Builder {
+        private final List<long[]> windows = new ArrayList<>();
+        private double maxErrorRatio;
+        private long minRequestsForErrors = DEFAULT_MIN_REQUESTS_FOR_ERRORS;
+        private int ipv4Prefix = IpPrefix.IPV4_BITS;
+        private int ipv6Prefix = IpPrefix.IPV6_BITS;
+        private int maxClients = DEFAULT_MAX_CLIENTS;
+
+        private Builder() {
+        }
+
+        // maxRequests = 0 - окно только считается, без порога
+        public Builder window(long seconds, long maxRequests) {
+            if (seconds < 1) {
+                throw new IllegalArgumentException("Окно должно быть не короче секунды: " + seconds);
+            }
+            if (maxRequests < 0) {
+                throw new IllegalArgumentException("Порог запросов должен быть >= 0: " + maxRequests);
+            }
+            if (windows.size() == MAX_WINDOWS) {
+                throw new IllegalArgumentException("Окон не может быть больше " + MAX_WINDOWS);
+            }
+            windows.add(new long[]{seconds, maxRequests});
+            return this;
+        }
+
+        // ratio от 0 до 1; 0 выключает проверку
+        public Builder maxErrorRatio(double ratio) {
+            if (!(ratio >= 0 && ratio <= 1)) {
+                throw new IllegalArgumentException("Доля ошибок должна быть от 0 до 1: " + ratio);
+            }
+            this.maxErrorRatio = ratio;
+            return this;
+        }
+
+        public Builder minRequestsForErrors(long minRequests) {
+            if (minRequests < 1) {
+                throw new IllegalArgumentException("minRequests должен быть >= 1: " + minRequests);
+            }
+            this.minRequestsForErrors = minRequests;
+            return this;
+        }
+
+        public Builder prefix(int ipv4Length, int ipv6Length) {
+            if (ipv4Length < 0 || ipv4Length > IpPrefix.IPV4_BITS || ipv6Length < 0 || ipv6Length > IpPrefix.IPV6_BITS) {
+                throw new IllegalArgumentException("Неверная длина префикса: " + ipv4Length + "/" + ipv6Length);
+            }
+            this.ipv4Prefix = ipv4Length;
+            this.ipv6Prefix = ipv6Length;
+            return this;
+        }
+
+        public Builder maxClients(int maxClients) {
+            if (maxClients < 1) {
+                throw new IllegalArgumentException("clients должен быть >= 1: " + maxClients);
+            }
+            this.maxClients = maxClients;
+            return this;
+        }
+
+        public RateLimits build() {
+            if (windows.isEmpty()) {
+                throw new IllegalArgumentException("Нужно хотя бы одно окно, например 10s=100");
+            }
+            return new RateLimits(this);
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package service.rate;
+
+import model.IpAddresses;
+import model.LogEntry;
+import service.ip.IpPrefix;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+// Частота запросов каждого клиента (адреса или подсети) в нескольких скользящих окнах
+// по времени записей: одинаково работает и при разборе готового файла, и при слежении за логом.
+// У клиента на каждое окно кольцо корзин (запросы и ошибки) и текущие суммы окна, поэтому
+// запись стоит нескольких инкрементов, а проверка порогов - сравнения с суммой.
+// Корзины, из которых время ушло, обнуляются лениво при следующем запросе того же клиента.
+//
+// Все состояние лежит в примитивных массивах: хэш-таблица номеров клиентов с открытой
+// адресацией и плотные массивы ключей и счетчиков. Клиент без запросов дольше самого
+// длинного окна выселяется, число клиентов ограничено RateLimits.getMaxClients(); если все
+// места заняты активными клиентами, запросы новых не учитываются (getUntrackedEvents).
+//
+// Окнам нужны записи примерно по порядку времени, так что трекер получает записи
+// из одного потока. Не потокобезопасен.
+public final class RateTracker implements Consumer<LogEntry> {
+
+    private static final long FREE = Long.MIN_VALUE;
+    private static final int INITIAL_CLIENTS = 1024;
+    private static final int ERROR_FLAGS_SHIFT = 8;
+
+    private final RateLimits limits;
+    private final Consumer<RateAlert> alerts;
+    private final int windows;
+    private final int[] bucketCounts;
+    private final long[] bucketSeconds;
+    private final long[] maxRequests;
+    // Начало данных окна внутри блока клиента: [запросов, ошибок, (запросы, ошибки) по корзинам]
+    private final int[] windowOffsets;
+    private final int stride;
+    private final long longestWindow;
+    private final long shortestBucket;
+
+    // Клиенты: номер - индекс в этих массивах
+    private long[] highs;
+    private long[] lows;
+    private boolean[] ipv6s;
+    private long[] lastSeconds;      // FREE - место свободно
+    private int[] flags;             // биты окон, по которым клиент уже помечен
+    private int[] counters;
+    private int clientCount;         // сколько номеров выдано, включая освобожденные
+    private int[] freeIds;
+    private int freeCount;
+    private int live;
+
+    // Номер клиента + 1, 0 - пустой слот
+    private int[] table;
+
+    private long latestSecond = FREE;
+    private long nextSweep = FREE;
+    private long nextForcedSweep = FREE;
+    private long evictedClients;
+    private long untrackedEvents;
+    private long skippedEntries;
+    private long lateEvents;
+    private long alertCount;
+    private final long[] address = new long[2];
+
+    // alerts получает пометки сразу, в потоке, который передает записи
+    public RateTracker(RateLimits limits, Consumer<RateAlert> alerts) {
+        this.limits = limits;
+        this.alerts = alerts;
+        this.windows = limits.windowCount();
+        this.bucketCounts = new int[windows];
+        this.bucketSeconds = new long[windows];
+        this.maxRequests = new long[windows];
+        this.windowOffsets = new int[windows];
+        int offset = 0;
+        long longest = 0;
+        long shortest = Long.MAX_VALUE;
+        for (int w = 0; w < windows; w++) {
+            bucketCounts[w] = limits.buckets(w);
+            bucketSeconds[w] = limits.bucketSeconds(w);
+            maxRequests[w] = limits.maxRequests(w);
+            windowOffsets[w] = offset;
+            offset += 2 + 2 * bucketCounts[w];
+            longest = Math.max(longest, limits.windowSeconds(w));
+            shortest = Math.min(shortest, bucketSeconds[w]);
+        }
+        this.stride = offset;
+        this.longestWindow = longest;
+        this.shortestBucket = shortest;
+        allocate(Math.min(INITIAL_CLIENTS, limits.getMaxClients()));
+    }
+
+    @Override
+    public void accept(LogEntry entry) {
+        String ip = entry.getIpAddress();
+        boolean error = entry.getResponseCode() >= 400;
+        // Разбор IPv4 без массива - самый частый случай
+        long ipv4 = IpAddresses.parseIpv4(ip);
+        if (ipv4 != IpAddresses.INVALID) {
+            recordIpv4((int) ipv4, entry.getEpochSecond(), error);
+            return;
+        }
+        switch (IpAddresses.parse(ip, 0, ip.length(), address)) {
+            case IpAddresses.IPV4:
+                recordIpv4((int) address[1], entry.getEpochSecond(), error);
+                break;
+            case IpAddresses.IPV6:
+                recordIpv6(address[0], address[1], entry.getEpochSecond(), error);
+                break;
+            default:
+                skippedEntries++;
+        }
+    }
+
+    public void recordIpv4(int ip, long epochSecond, boolean error) {
+        int prefix = limits.getIpv4Prefix();
+        long key = prefix == 0 ? 0 : (ip & 0xFFFFFFFFL) & (-1L << (IpPrefix.IPV4_BITS - prefix));
+        record(false, key, 0, epochSecond, error);
+    }
+
+    public void recordIpv6(long high, long low, long epochSecond, boolean error) {
+        int prefix = limits.getIpv6Prefix();
+        if (prefix < IpPrefix.IPV6_BITS) {
+            high = prefix >= 64 ? high : prefix == 0 ? 0 : high & (-1L << (64 - prefix));
+            low = prefix <= 64 ? 0 : low & (-1L << (IpPrefix.IPV6_BITS - prefix));
+        }
+        record(true, high, low, epochSecond, error);
+    }
+
+    private void record(boolean ipv6, long high, long low, long second, boolean error) {
+        if (latestSecond == FREE || second > latestSecond) {
+            latestSecond = second;
+            if (nextSweep == FREE) {
+                nextSweep = second + longestWindow;
+            } else if (second >= nextSweep) {
+                // Раз в самое длинное окно выселяем тех, кто затих, даже если места хватает
+                sweep();
+                nextSweep = second + longestWindow;
+            }
+        }
+        int id = find(ipv6, high, low);
+        if (id < 0) {
+            id = add(ipv6, high, low, second);
+            if (id < 0) {
+                untrackedEvents++;
+                return;
+            }
+        }
+        update(id, second, error);
+    }
+
+    private void update(int id, long second, boolean error) {
+        long last = lastSeconds[id];
+        int base = id * stride;
+        int[] counts = counters;
+        for (int w = 0; w < windows; w++) {
+            int buckets = bucketCounts[w];
+            long span = bucketSeconds[w];
+            int offset = base + windowOffsets[w];
+            long bucket = Math.floorDiv(second, span);
+            if (second != last) {
+                long head = Math.floorDiv(last, span);
+                if (bucket > head) {
+                    // Время клиента ушло вперед: корзины, выпавшие из окна, вычитаются из сумм
+                    long expired = Math.min(bucket - head, buckets);
+                    for (long k = 1; k <= expired; k++) {
+                        int slot = offset + 2 + 2 * (int) Math.floorMod(head + k, (long) buckets);
+                        counts[offset] -= counts[slot];
+                        counts[offset + 1] -= counts[slot + 1];
+                        counts[slot] = 0;
+                        counts[slot + 1] = 0;
+                    }
+                } else if (bucket <= head - buckets) {
+                    // Запись опоздала больше чем на окно
+                    lateEvents++;
+                    continue;
+                }
+            }
+            int slot = offset + 2 + 2 * (int) Math.floorMod(bucket, (long) buckets);
+            counts[slot]++;
+            counts[offset]++;
+            if (error) {
+                counts[slot + 1]++;
+                counts[offset + 1]++;
+            }
+            check(id, w, counts[offset], counts[offset + 1], second);
+        }
+        if (second > last) {
+            lastSeconds[id] = second;
+        }
+    }
+
+    private void check(int id, int window, long requests, long errors, long second) {
+        long max = maxRequests[window];
+        if (max > 0) {
+            int bit = 1 << window;
+            if (requests <= max) {
+                flags[id] &= ~bit;
+            } else if ((flags[id] & bit) == 0) {
+                flags[id] |= bit;
+                alert(id, RateAlert.Kind.RATE, window, requests, errors, second);
+            }
+        }
+        double ratio = limits.getMaxErrorRatio();
+        if (ratio > 0) {
+            int bit = 1 << (window + ERROR_FLAGS_SHIFT);
+            if (requests < limits.getMinRequestsForErrors() || errors < ratio * requests) {
+                flags[id] &= ~bit;
+            } else if ((flags[id] & bit) == 0) {
+                flags[id] |= bit;
+                alert(id, RateAlert.Kind.ERROR_RATE, window, requests, errors, second);
+            }
+        }
+    }
+
+    private void alert(int id, RateAlert.Kind kind, int window, long requests, long errors, long second) {
+        alertCount++;
+        alerts.accept(new RateAlert(clientLabel(id), kind, limits.windowSeconds(window), requests, errors, second));
+    }
+
+    // Самые активные клиенты в окне на момент самой поздней записи
+    public List<Map.Entry<String, Long>> top(int window, int limit) {
+        Comparator<long[]> descending = (c1, c2) -> Long.compare(c2[1], c1[1]);
+        PriorityQueue<long[]> heap = new PriorityQueue<>(Math.max(limit, 1) + 1, descending.reversed());
+        if (limit > 0) {
+            for (int id = 0; id < clientCount; id++) {
+                if (lastSeconds[id] == FREE) {
+                    continue;
+                }
+                long requests = requestsInWindow(id, window);
+                if (requests == 0 || (heap.size() == limit && requests <= heap.peek()[1])) {
+                    continue;
+                }
+                heap.add(new long[]{id, requests});
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+        }
+        List<long[]> ranked = new ArrayList<>(heap);
+        ranked.sort(descending);
+        List<Map.Entry<String, Long>> result = new ArrayList<>(ranked.size());
+        for (long[] client : ranked) {
+            result.add(new AbstractMap.SimpleImmutableEntry<>(clientLabel((int) client[0]), client[1]));
+        }
+        return result;
+    }
+
+    // Запросы клиента в окне, отсчитанном от самой поздней записи вообще, а не от его собственной
+    private long requestsInWindow(int id, int window) {
+        int buckets = bucketCounts[window];
+        long span = bucketSeconds[window];
+        long head = Math.floorDiv(lastSeconds[id], span);
+        long oldest = Math.floorDiv(latestSecond, span) - buckets + 1;
+        int offset = id * stride + windowOffsets[window];
+        long requests = 0;
+        for (long bucket = head; bucket >= oldest && bucket > head - buckets; bucket--) {
+            requests += counters[offset + 2 + 2 * (int) Math.floorMod(bucket, (long) buckets)];
+        }
+        return requests;
+    }
+
+    private String clientLabel(int id) {
+        if (ipv6s[id]) {
+            int prefix = limits.getIpv6Prefix();
+            return prefix < IpPrefix.IPV6_BITS
+                    ? IpPrefix.ipv6(highs[id], lows[id], prefix).toString()
+                    : IpAddresses.formatIpv6(highs[id], lows[id]);
+        }
+        int prefix = limits.getIpv4Prefix();
+        return prefix < IpPrefix.IPV4_BITS
+                ? IpPrefix.ipv4((int) highs[id], prefix).toString()
+                : IpAddresses.formatIpv4((int) highs[id]);
+    }
+
+    public RateLimits getLimits() { return limits; }
+    public int getTrackedClients() { return live; }
+    public long getEvictedClients() { return evictedClients; }
+    // Запросы новых клиентов, для которых не нашлось места
+    public long getUntrackedEvents() { return untrackedEvents; }
+    // Записи, у которых вместо адреса что-то другое
+    public long getSkippedEntries() { return skippedEntries; }
+    // Учеты в окнах, пропущенные из-за записей старше окна
+    public long getLateEvents() { return lateEvents; }
+    public long getAlertCount() { return alertCount; }
+    // Время самой поздней записи; Long.MIN_VALUE, пока записей не было
+    public long getLatestSecond() { return latestSecond; }
+
+    private int find(boolean ipv6, long high, long low) {
+        int mask = table.length - 1;
+        int slot = hash(ipv6, high, low) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int id = entry - 1;
+            if (highs[id] == high && lows[id] == low && ipv6s[id] == ipv6) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Новый клиент; -1, если места нет и выселить некого
+    private int add(boolean ipv6, long high, long low, long second) {
+        if (freeCount == 0 && clientCount == highs.length) {
+            if (highs.length < limits.getMaxClients()) {
+                allocate((int) Math.min((long) highs.length * 2, limits.getMaxClients()));
+            } else if (nextForcedSweep == FREE || latestSecond >= nextForcedSweep) {
+                // Не чаще раза в корзину: при наплыве активных клиентов полный проход ничего не даст
+                sweep();
+                nextForcedSweep = latestSecond + shortestBucket;
+            }
+            if (freeCount == 0 && clientCount == highs.length) {
+                return -1;
+            }
+        }
+        int id = freeCount > 0 ? freeIds[--freeCount] : clientCount++;
+        highs[id] = high;
+        lows[id] = low;
+        ipv6s[id] = ipv6;
+        lastSeconds[id] = second;
+        flags[id] = 0;
+        insertIntoTable(id);
+        live++;
+        return id;
+    }
+
+    // Выселяет клиентов без запросов в самом длинном окне и перестраивает таблицу
+    private void sweep() {
+        long idleBefore = latestSecond - longestWindow;
+        boolean evicted = false;
+        for (int id = 0; id < clientCount; id++) {
+            if (lastSeconds[id] != FREE && lastSeconds[id] <= idleBefore) {
+                lastSeconds[id] = FREE;
+                Arrays.fill(counters, id * stride, (id + 1) * stride, 0);
+                freeIds[freeCount++] = id;
+                live--;
+                evictedClients++;
+                evicted = true;
+            }
+        }
+        if (evicted) {
+            rebuildTable();
+        }
+    }
+
+    private void allocate(int capacity) {
+        int oldCapacity = highs == null ? 0 : highs.length;
+        highs = highs == null ? new long[capacity] : Arrays.copyOf(highs, capacity);
+        lows = lows == null ? new long[capacity] : Arrays.copyOf(lows, capacity);
+        ipv6s = ipv6s == null ? new boolean[capacity] : Arrays.copyOf(ipv6s, capacity);
+        flags = flags == null ? new int[capacity] : Arrays.copyOf(flags, capacity);
+        counters = counters == null ? new int[capacity * stride] : Arrays.copyOf(counters, capacity * stride);
+        freeIds = freeIds == null ? new int[capacity] : Arrays.copyOf(freeIds, capacity);
+        lastSeconds = lastSeconds == null ? new long[capacity] : Arrays.copyOf(lastSeconds, capacity);
+        Arrays.fill(lastSeconds, oldCapacity, capacity, FREE);
+        // Таблица заполнена не больше чем наполовину
+        table = new int[Integer.highestOneBit(Math.max(capacity, 1)) << 2];
+        rebuildTable();
+    }
+
+    private void rebuildTable() {
+        Arrays.fill(table, 0);
+        for (int id = 0; id < clientCount; id++) {
+            if (lastSeconds[id] != FREE) {
+                insertIntoTable(id);
+            }
+        }
+    }
+
+    private void insertIntoTable(int id) {
+        int mask = table.length - 1;
+        int slot = hash(ipv6s[id], highs[id], lows[id]) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id + 1;
+    }
+
+    // Финализатор MurmurHash3: соседние адреса одной подсети расходятся по таблице
+    private static int hash(boolean ipv6, long high, long low) {
+        long h = high * 31 + low + (ipv6 ? 0x9E3779B97F4A7C15L : 0);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
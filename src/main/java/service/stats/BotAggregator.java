@@ -0,0 +1,46 @@
+package service.stats;
+
+import model.LogEntry;
+import model.UserAgentInfo;
+import service.UserAgentCache;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Запросы ботов и краулеров по имени бота; остальные записи пропускаются
+public class BotAggregator implements LogAggregator<BotAggregator>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, Long> counts = new HashMap<>();
+    private long total;
+
+    @Override
+    public void accept(LogEntry entry) {
+        UserAgentInfo info = UserAgentCache.DEFAULT.infoOf(entry.getUserAgent());
+        if (info.isBot()) {
+            counts.merge(info.getBotName(), 1L, Long::sum);
+            total++;
+        }
+    }
+
+    @Override
+    public void merge(BotAggregator other) {
+        other.counts.forEach((name, count) -> counts.merge(name, count, Long::sum));
+        total += other.total;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    // Боты по убыванию числа запросов
+    public Map<String, Long> getCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+        return result;
+    }
+}
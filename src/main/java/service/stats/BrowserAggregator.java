@@ -0,0 +1,43 @@
+package service.stats;
+
+import model.Browser;
+import model.LogEntry;
+import model.UserAgentInfo;
+import service.UserAgentCache;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Запросы людей по семействам браузеров; боты считаются отдельно в BotAggregator
+public class BrowserAggregator implements LogAggregator<BrowserAggregator>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long[] counts = new long[Browser.values().length];
+
+    @Override
+    public void accept(LogEntry entry) {
+        UserAgentInfo info = UserAgentCache.DEFAULT.infoOf(entry.getUserAgent());
+        if (!info.isBot()) {
+            counts[info.getBrowser().ordinal()]++;
+        }
+    }
+
+    @Override
+    public void merge(BrowserAggregator other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+    }
+
+    // Встретившиеся браузеры в порядке Browser
+    public Map<String, Long> getCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Browser browser : Browser.values()) {
+            if (counts[browser.ordinal()] > 0) {
+                result.put(browser.getDisplayName(), counts[browser.ordinal()]);
+            }
+        }
+        return result;
+    }
+}
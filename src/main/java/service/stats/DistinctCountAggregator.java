@@ -0,0 +1,41 @@
+package service.stats;
+
+import model.LogEntry;
+import java.io.Serializable;
+
+// Число различных значений поля (уникальные IP, пути) без хранения самих значений
+public class DistinctCountAggregator implements LogAggregator<DistinctCountAggregator>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final KeyField field;
+    private final HyperLogLog sketch;
+
+    public DistinctCountAggregator(KeyField field) {
+        this(field, HyperLogLog.DEFAULT_PRECISION);
+    }
+
+    public DistinctCountAggregator(KeyField field, int precision) {
+        this.field = field;
+        this.sketch = new HyperLogLog(precision);
+    }
+
+    @Override
+    public void accept(LogEntry entry) {
+        sketch.add(field.extract(entry));
+    }
+
+    @Override
+    public void merge(DistinctCountAggregator other) {
+        if (other.field != field) {
+            throw new IllegalArgumentException("Нельзя слить агрегаторы разных полей: " + field + " и " + other.field);
+        }
+        sketch.merge(other.sketch);
+    }
+
+    public KeyField getField() { return field; }
+
+    public long estimate() {
+        return sketch.estimate();
+    }
+}
@@ -0,0 +1,56 @@
+package service.stats;
+
+import model.LogEntry;
+import service.UserAgentCache;
+
+// Признак, по которому GroupedAggregator делит записи на группы
+public enum GroupKey {
+    STATUS {
+        public String keyOf(LogEntry entry) { return Integer.toString(entry.getResponseCode()); }
+    },
+    STATUS_CLASS {
+        public String keyOf(LogEntry entry) { return entry.getResponseCode() / 100 + "xx"; }
+    },
+    METHOD {
+        public String keyOf(LogEntry entry) { return entry.getMethod(); }
+    },
+    PATH {
+        public String keyOf(LogEntry entry) { return entry.getPath(); }
+    },
+    IP {
+        public String keyOf(LogEntry entry) { return entry.getIpAddress(); }
+    },
+    REFERER {
+        public String keyOf(LogEntry entry) { return entry.getReferer(); }
+    },
+    USER_AGENT {
+        public String keyOf(LogEntry entry) { return entry.getUserAgent(); }
+    },
+    HOUR {
+        public String keyOf(LogEntry entry) { return String.format("%02d:00", entry.getHour()); }
+    },
+    BROWSER {
+        public String keyOf(LogEntry entry) {
+            return UserAgentCache.DEFAULT.browserOf(entry.getUserAgent()).getDisplayName();
+        }
+    },
+    DEVICE {
+        public String keyOf(LogEntry entry) {
+            return UserAgentCache.DEFAULT.deviceOf(entry.getUserAgent()).getDisplayName();
+        }
+    },
+    OS {
+        public String keyOf(LogEntry entry) {
+            return UserAgentCache.DEFAULT.osOf(entry.getUserAgent()).getDisplayName();
+        }
+    },
+    // Имя бота; все обычные клиенты попадают в одну группу "-"
+    BOT {
+        public String keyOf(LogEntry entry) {
+            String bot = UserAgentCache.DEFAULT.infoOf(entry.getUserAgent()).getBotName();
+            return bot != null ? bot : "-";
+        }
+    };
+
+    public abstract String keyOf(LogEntry entry);
+}
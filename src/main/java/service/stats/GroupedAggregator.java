@@ -0,0 +1,84 @@
+package service.stats;
+
+import model.LogEntry;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Отдельный агрегатор на каждое значение GroupKey (путь, IP, код ответа, ...).
+// Число групп ограничено: записи новых значений сверх maxGroups попадают в OTHER_GROUP,
+// чтобы группировка по полю с миллионами значений не съела память.
+public class GroupedAggregator<A extends LogAggregator<A>> implements LogAggregator<GroupedAggregator<A>>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String OTHER_GROUP = "(прочие)";
+
+    private final GroupKey key;
+    private final Factory<A> factory;
+    private final int maxGroups;
+    private final HashMap<String, A> groups = new HashMap<>();
+
+    public GroupedAggregator(GroupKey key, int maxGroups, Factory<A> factory) {
+        if (maxGroups < 1) {
+            throw new IllegalArgumentException("maxGroups должен быть >= 1: " + maxGroups);
+        }
+        this.key = key;
+        this.maxGroups = maxGroups;
+        this.factory = factory;
+    }
+
+    @Override
+    public void accept(LogEntry entry) {
+        groupOrCreate(key.keyOf(entry)).accept(entry);
+    }
+
+    @Override
+    public void merge(GroupedAggregator<A> other) {
+        if (other.key != key) {
+            throw new IllegalArgumentException("Нельзя слить разные группировки: " + key + " и " + other.key);
+        }
+        other.groups.forEach((group, aggregator) -> groupOrCreate(group).merge(aggregator));
+    }
+
+    public GroupKey getKey() { return key; }
+
+    public int size() {
+        return groups.size();
+    }
+
+    // Агрегатор группы или null, если записей с таким значением не было
+    public A get(String group) {
+        return groups.get(group);
+    }
+
+    // Не больше limit групп в порядке order
+    public Map<String, A> top(Comparator<A> order, int limit) {
+        List<Map.Entry<String, A>> sorted = new ArrayList<>(groups.entrySet());
+        sorted.sort(Map.Entry.comparingByValue(order));
+        Map<String, A> result = new LinkedHashMap<>();
+        for (Map.Entry<String, A> group : sorted) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.put(group.getKey(), group.getValue());
+        }
+        return result;
+    }
+
+    private A groupOrCreate(String group) {
+        A aggregator = groups.get(group);
+        if (aggregator == null) {
+            if (groups.size() >= maxGroups && !group.equals(OTHER_GROUP)) {
+                return groupOrCreate(OTHER_GROUP);
+            }
+            aggregator = factory.get();
+            groups.put(group, aggregator);
+        }
+        return aggregator;
+    }
+}
@@ -0,0 +1,27 @@
+package service.stats;
+
+import model.LogEntry;
+import java.io.Serializable;
+
+public class HourlyAggregator implements LogAggregator<HourlyAggregator>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long[] counts = new long[24];
+
+    @Override
+    public void accept(LogEntry entry) {
+        counts[entry.getHour()]++;
+    }
+
+    @Override
+    public void merge(HourlyAggregator other) {
+        for (int hour = 0; hour < counts.length; hour++) {
+            counts[hour] += other.counts[hour];
+        }
+    }
+
+    public long[] getCounts() {
+        return counts.clone();
+    }
+}
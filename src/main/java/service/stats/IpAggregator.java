@@ -0,0 +1,198 @@
+package service.stats;
+
+import model.IpAddresses;
+import model.LogEntry;
+import service.ip.IpPrefix;
+import service.ip.IpPrefixTrie;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Точные счетчики запросов по клиентским адресам. Адрес разбирается в число
+// (IPv4 - int, IPv6 - два long) и считается в IpCounterMap, без строки и Long на каждый адрес.
+// Свертка в подсети (/24, /16, любая длина или заданные сети) идет через IpPrefixTrie,
+// которое строится по счетчикам один раз при первом запросе отчета.
+// Значения, которые не являются адресом ("-", адрес с зоной), считаются отдельно по строкам.
+public class IpAggregator implements LogAggregator<IpAggregator>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int OTHER = 7;
+    private static final Comparator<Ranked> DESCENDING = Comparator
+            .comparingLong((Ranked ranked) -> -ranked.count)
+            .thenComparingInt(ranked -> ranked.family)
+            .thenComparing((r1, r2) -> Long.compareUnsigned(r1.high, r2.high))
+            .thenComparing((r1, r2) -> Long.compareUnsigned(r1.low, r2.low))
+            .thenComparing(ranked -> ranked.text, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final IpCounterMap counts = new IpCounterMap();
+    private final Map<String, long[]> others = new HashMap<>();
+    private transient long[] address;
+    private transient IpPrefixTrie<Void> trie;
+
+    @Override
+    public void accept(LogEntry entry) {
+        String ip = entry.getIpAddress();
+        trie = null;
+        long ipv4 = IpAddresses.parseIpv4(ip);
+        if (ipv4 != IpAddresses.INVALID) {
+            counts.addIpv4((int) ipv4, 1);
+            return;
+        }
+        if (address == null) {
+            address = new long[2];
+        }
+        switch (IpAddresses.parse(ip, 0, ip.length(), address)) {
+            case IpAddresses.IPV4:
+                counts.addIpv4((int) address[1], 1);
+                break;
+            case IpAddresses.IPV6:
+                counts.addIpv6(address[0], address[1], 1);
+                break;
+            default:
+                others.computeIfAbsent(ip, k -> new long[1])[0]++;
+        }
+    }
+
+    @Override
+    public void merge(IpAggregator other) {
+        trie = null;
+        counts.merge(other.counts);
+        other.others.forEach((ip, count) -> others.computeIfAbsent(ip, k -> new long[1])[0] += count[0]);
+    }
+
+    // Самые частые адреса; при равенстве сначала IPv4, затем IPv6 по возрастанию адреса
+    public List<Map.Entry<String, Long>> top(int limit) {
+        PriorityQueue<Ranked> heap = new PriorityQueue<>(Math.max(limit, 1) + 1, DESCENDING.reversed());
+        if (limit > 0) {
+            counts.forEach(new IpCounterMap.Visitor() {
+                @Override
+                public void ipv4(int ip, long count) {
+                    offer(heap, limit, count, IpAddresses.IPV4, (ip & 0xFFFFFFFFL) << 32, 0, null);
+                }
+
+                @Override
+                public void ipv6(long high, long low, long count) {
+                    offer(heap, limit, count, IpAddresses.IPV6, high, low, null);
+                }
+            });
+            others.forEach((ip, count) -> offer(heap, limit, count[0], OTHER, 0, 0, ip));
+        }
+        List<Ranked> ranked = new ArrayList<>(heap);
+        ranked.sort(DESCENDING);
+        List<Map.Entry<String, Long>> result = new ArrayList<>(ranked.size());
+        for (Ranked entry : ranked) {
+            String key;
+            if (entry.family == IpAddresses.IPV4) {
+                key = IpAddresses.formatIpv4((int) (entry.high >>> 32));
+            } else if (entry.family == IpAddresses.IPV6) {
+                key = IpAddresses.formatIpv6(entry.high, entry.low);
+            } else {
+                key = entry.text;
+            }
+            result.add(new AbstractMap.SimpleImmutableEntry<>(key, entry.count));
+        }
+        return result;
+    }
+
+    // Самые нагруженные подсети: IPv4 сворачивается до /ipv4Length, IPv6 - до /ipv6Length
+    public List<Map.Entry<IpPrefix, Long>> topSubnets(int ipv4Length, int ipv6Length, int limit) {
+        IpPrefixTrie<Void> subnets = trie();
+        List<Map.Entry<IpPrefix, Long>> top = subnets.top(false, ipv4Length, limit);
+        top.addAll(subnets.top(true, ipv6Length, limit));
+        top.sort(IpPrefixTrie.DESCENDING);
+        return new ArrayList<>(top.subList(0, Math.min(Math.max(limit, 0), top.size())));
+    }
+
+    // Запросы из заданной сети, в том числе вложенных друг в друга сетей
+    public long count(IpPrefix network) {
+        return trie().count(network);
+    }
+
+    // Число различных адресов, включая значения, которые не являются адресом
+    public int size() {
+        return counts.size() + others.size();
+    }
+
+    public IpCounterMap getCounts() { return counts; }
+
+    // Дерево подсетей по текущим счетчикам; строится заново после новых записей.
+    // Адреса вставляются по возрастанию: соседние вставки идут по одному пути дерева,
+    // который еще в кэше процессора, - на миллионах адресов это в разы быстрее
+    public IpPrefixTrie<Void> trie() {
+        if (trie == null) {
+            // Адрес в старших 32 битах, номер в ipv4Counts в младших: сортировка long упорядочит по адресу
+            long[] ipv4 = new long[counts.ipv4Size()];
+            long[] ipv4Counts = new long[counts.ipv4Size()];
+            long[][] ipv6 = new long[counts.ipv6Size()][];
+            counts.forEach(new IpCounterMap.Visitor() {
+                int ipv4Index;
+                int ipv6Index;
+
+                @Override
+                public void ipv4(int ip, long count) {
+                    ipv4Counts[ipv4Index] = count;
+                    ipv4[ipv4Index] = ((ip & 0xFFFFFFFFL) << 32 ^ Long.MIN_VALUE) | ipv4Index;
+                    ipv4Index++;
+                }
+
+                @Override
+                public void ipv6(long high, long low, long count) {
+                    ipv6[ipv6Index++] = new long[]{high, low, count};
+                }
+            });
+            Arrays.sort(ipv4);
+            Arrays.sort(ipv6, (a1, a2) -> {
+                int byHigh = Long.compareUnsigned(a1[0], a2[0]);
+                return byHigh != 0 ? byHigh : Long.compareUnsigned(a1[1], a2[1]);
+            });
+            IpPrefixTrie<Void> built = new IpPrefixTrie<>();
+            for (long packed : ipv4) {
+                built.addIpv4((int) ((packed ^ Long.MIN_VALUE) >>> 32), ipv4Counts[(int) packed]);
+            }
+            for (long[] address : ipv6) {
+                built.addIpv6(address[0], address[1], address[2]);
+            }
+            trie = built;
+        }
+        return trie;
+    }
+
+    // Большинство адресов отсекается сравнением счетчика с худшим в куче, без создания объекта
+    private static void offer(PriorityQueue<Ranked> heap, int limit, long count, int family,
+                              long high, long low, String text) {
+        if (heap.size() == limit && count < heap.peek().count) {
+            return;
+        }
+        Ranked candidate = new Ranked(count, family, high, low, text);
+        if (heap.size() == limit) {
+            if (DESCENDING.compare(candidate, heap.peek()) > 0) {
+                return;
+            }
+            heap.poll();
+        }
+        heap.add(candidate);
+    }
+
+    private static final class Ranked {
+        final long count;
+        final int family;
+        final long high;
+        final long low;
+        final String text;
+
+        Ranked(long count, int family, long high, long low, String text) {
+            this.count = count;
+            this.family = family;
+            this.high = high;
+            this.low = low;
+            this.text = text;
+        }
+    }
+}
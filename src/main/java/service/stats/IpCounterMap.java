@@ -0,0 +1,172 @@
+package service.stats;
+
+import java.io.Serializable;
+
+// Счетчики запросов по упакованным адресам: открытая адресация с линейным пробированием
+// прямо в примитивных массивах, без объекта на ключ и без упаковки long.
+// IPv4 - ключ int, IPv6 - два long. Пустой слот - нулевой счетчик, поэтому добавлять
+// можно только положительные значения. Таблица растет при заполнении наполовину.
+public final class IpCounterMap implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] ipv4Keys = new int[INITIAL_CAPACITY];
+    private long[] ipv4Counts = new long[INITIAL_CAPACITY];
+    private int ipv4Size;
+
+    private long[] ipv6Highs = new long[INITIAL_CAPACITY];
+    private long[] ipv6Lows = new long[INITIAL_CAPACITY];
+    private long[] ipv6Counts = new long[INITIAL_CAPACITY];
+    private int ipv6Size;
+
+    public void addIpv4(int address, long count) {
+        int mask = ipv4Keys.length - 1;
+        int slot = (int) mix(address) & mask;
+        while (ipv4Counts[slot] != 0) {
+            if (ipv4Keys[slot] == address) {
+                ipv4Counts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        ipv4Keys[slot] = address;
+        ipv4Counts[slot] = count;
+        if (++ipv4Size * 2 > ipv4Keys.length) {
+            growIpv4();
+        }
+    }
+
+    public void addIpv6(long high, long low, long count) {
+        int mask = ipv6Highs.length - 1;
+        int slot = (int) mix(high * 31 + low) & mask;
+        while (ipv6Counts[slot] != 0) {
+            if (ipv6Highs[slot] == high && ipv6Lows[slot] == low) {
+                ipv6Counts[slot] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        ipv6Highs[slot] = high;
+        ipv6Lows[slot] = low;
+        ipv6Counts[slot] = count;
+        if (++ipv6Size * 2 > ipv6Highs.length) {
+            growIpv6();
+        }
+    }
+
+    public long getIpv4(int address) {
+        int mask = ipv4Keys.length - 1;
+        int slot = (int) mix(address) & mask;
+        while (ipv4Counts[slot] != 0) {
+            if (ipv4Keys[slot] == address) {
+                return ipv4Counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    public long getIpv6(long high, long low) {
+        int mask = ipv6Highs.length - 1;
+        int slot = (int) mix(high * 31 + low) & mask;
+        while (ipv6Counts[slot] != 0) {
+            if (ipv6Highs[slot] == high && ipv6Lows[slot] == low) {
+                return ipv6Counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    public void merge(IpCounterMap other) {
+        other.forEach(new Visitor() {
+            @Override
+            public void ipv4(int address, long count) {
+                addIpv4(address, count);
+            }
+
+            @Override
+            public void ipv6(long high, long low, long count) {
+                addIpv6(high, low, count);
+            }
+        });
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < ipv4Keys.length; i++) {
+            if (ipv4Counts[i] != 0) {
+                visitor.ipv4(ipv4Keys[i], ipv4Counts[i]);
+            }
+        }
+        for (int i = 0; i < ipv6Highs.length; i++) {
+            if (ipv6Counts[i] != 0) {
+                visitor.ipv6(ipv6Highs[i], ipv6Lows[i], ipv6Counts[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return ipv4Size + ipv6Size;
+    }
+
+    public int ipv4Size() { return ipv4Size; }
+    public int ipv6Size() { return ipv6Size; }
+
+    private void growIpv4() {
+        int[] oldKeys = ipv4Keys;
+        long[] oldCounts = ipv4Counts;
+        ipv4Keys = new int[oldKeys.length * 2];
+        ipv4Counts = new long[ipv4Keys.length];
+        int mask = ipv4Keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = (int) mix(oldKeys[i]) & mask;
+                while (ipv4Counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                ipv4Keys[slot] = oldKeys[i];
+                ipv4Counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private void growIpv6() {
+        long[] oldHighs = ipv6Highs;
+        long[] oldLows = ipv6Lows;
+        long[] oldCounts = ipv6Counts;
+        ipv6Highs = new long[oldHighs.length * 2];
+        ipv6Lows = new long[ipv6Highs.length];
+        ipv6Counts = new long[ipv6Highs.length];
+        int mask = ipv6Highs.length - 1;
+        for (int i = 0; i < oldHighs.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = (int) mix(oldHighs[i] * 31 + oldLows[i]) & mask;
+                while (ipv6Counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                ipv6Highs[slot] = oldHighs[i];
+                ipv6Lows[slot] = oldLows[i];
+                ipv6Counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    // Соседние адреса одной подсети должны разойтись по разным слотам (финализатор MurmurHash3)
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public interface Visitor {
+        void ipv4(int address, long count);
+
+        void ipv6(long high, long low, long count);
+    }
+}
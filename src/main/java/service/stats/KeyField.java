@@ -0,0 +1,22 @@
+package service.stats;
+
+import model.LogEntry;
+
+// Строковое поле записи, по которому считаются частые и различные значения.
+// Перечисление, а не Function, чтобы агрегаторы можно было сравнивать при слиянии.
+public enum KeyField {
+    IP {
+        String extract(LogEntry entry) { return entry.getIpAddress(); }
+    },
+    PATH {
+        String extract(LogEntry entry) { return entry.getPath(); }
+    },
+    REFERER {
+        String extract(LogEntry entry) { return entry.getReferer(); }
+    },
+    USER_AGENT {
+        String extract(LogEntry entry) { return entry.getUserAgent(); }
+    };
+
+    abstract String extract(LogEntry entry);
+}
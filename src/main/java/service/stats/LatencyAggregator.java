@@ -0,0 +1,38 @@
+package service.stats;
+
+import model.ExtendedLogEntry;
+import model.LogEntry;
+import java.io.Serializable;
+
+// Распределение времени обработки запросов и ответа upstream в микросекундах.
+// Учитываются только ExtendedLogEntry, где время есть; для combined-лога остается пустым.
+public class LatencyAggregator implements LogAggregator<LatencyAggregator>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final LogHistogram requestTimes = new LogHistogram();
+    private final LogHistogram upstreamTimes = new LogHistogram();
+
+    @Override
+    public void accept(LogEntry entry) {
+        if (!(entry instanceof ExtendedLogEntry)) {
+            return;
+        }
+        ExtendedLogEntry extended = (ExtendedLogEntry) entry;
+        if (extended.getRequestTimeMicros() != ExtendedLogEntry.NO_TIME) {
+            requestTimes.add(extended.getRequestTimeMicros());
+        }
+        if (extended.getUpstreamTimeMicros() != ExtendedLogEntry.NO_TIME) {
+            upstreamTimes.add(extended.getUpstreamTimeMicros());
+        }
+    }
+
+    @Override
+    public void merge(LatencyAggregator other) {
+        requestTimes.merge(other.requestTimes);
+        upstreamTimes.merge(other.upstreamTimes);
+    }
+
+    public LogHistogram getRequestTimes() { return requestTimes; }
+    public LogHistogram getUpstreamTimes() { return upstreamTimes; }
+}
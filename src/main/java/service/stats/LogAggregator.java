@@ -0,0 +1,22 @@
+package service.stats;
+
+import model.LogEntry;
+import java.io.Serializable;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Инкрементальный подсчет статистики: записи подаются по одной,
+// состояние занимает память только под агрегаты.
+// Частичные результаты одного типа можно сливать через merge.
+public interface LogAggregator<A extends LogAggregator<A>> extends Consumer<LogEntry> {
+
+    @Override
+    void accept(LogEntry entry);
+
+    void merge(A other);
+
+    // Фабрика частей составных агрегаторов; сериализуема, чтобы состояние
+    // вместе с ней можно было сохранить в контрольную точку (см. Checkpoint)
+    interface Factory<A> extends Supplier<A>, Serializable {
+    }
+}
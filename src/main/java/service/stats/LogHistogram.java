@@ -0,0 +1,113 @@
+package service.stats;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+// Гистограмма неотрицательных long с логарифмическими корзинами, как в HdrHistogram.
+// Значения до 255 хранятся точно, дальше каждая степень двойки делится на 128 корзин,
+// поэтому квантиль отличается от точного не больше чем на 0.4%.
+// Память - до 7296 счетчиков независимо от числа значений, слияние - сумма счетчиков.
+public final class LogHistogram implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private long[] counts = new long[2 * SUB_COUNT];
+    private long count;
+    private long total;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public void add(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Значение должно быть >= 0: " + value);
+        }
+        int index = indexOf(value);
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length * 2));
+        }
+        counts[index]++;
+        count++;
+        total += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    public void merge(LogHistogram other) {
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        total += other.total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    // Значение, не больше которого доля quantile всех значений; 0 для пустой гистограммы
+    public long quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("quantile должен быть от 0 до 1: " + quantile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long width = bucketWidth(i);
+                long middle = bucketStart(i) + (width - 1) / 2;
+                return Math.max(min, Math.min(max, middle));
+            }
+        }
+        return max;
+    }
+
+    public long[] quantiles(double... quantiles) {
+        long[] result = new long[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            result[i] = quantile(quantiles[i]);
+        }
+        return result;
+    }
+
+    public long getCount() { return count; }
+    public long getTotal() { return total; }
+    public long getMin() { return count == 0 ? 0 : min; }
+    public long getMax() { return max; }
+    public double getMean() { return count == 0 ? 0 : (double) total / count; }
+
+    // Корзина: для значений от 2^k (k >= 7) старшие 8 бит значения
+    static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        int mantissa = (int) (value >>> shift) - SUB_COUNT;
+        return (shift + 1) * SUB_COUNT + mantissa;
+    }
+
+    static long bucketStart(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long mantissa = index % SUB_COUNT + SUB_COUNT;
+        return mantissa << shift;
+    }
+
+    static long bucketWidth(int index) {
+        return index < SUB_COUNT ? 1 : 1L << (index / SUB_COUNT - 1);
+    }
+}
@@ -0,0 +1,48 @@
+package service.stats;
+
+import model.HttpMethod;
+import model.LogEntry;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class MethodAggregator implements LogAggregator<MethodAggregator>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long[] counts = new long[HttpMethod.values().length];
+    // Редкие методы вроде PROPFIND считаем по имени, чтобы не потерять их в отчете
+    private final Map<String, Long> otherCounts = new HashMap<>();
+
+    @Override
+    public void accept(LogEntry entry) {
+        HttpMethod method = HttpMethod.of(entry.getMethod());
+        if (method == HttpMethod.OTHER) {
+            otherCounts.merge(entry.getMethod(), 1L, Long::sum);
+        } else {
+            counts[method.ordinal()]++;
+        }
+    }
+
+    @Override
+    public void merge(MethodAggregator other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        other.otherCounts.forEach((method, count) -> otherCounts.merge(method, count, Long::sum));
+    }
+
+    // Сначала известные методы в порядке HttpMethod, затем остальные по имени
+    public Map<String, Long> getCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (HttpMethod method : HttpMethod.values()) {
+            if (counts[method.ordinal()] > 0) {
+                result.put(method.name(), counts[method.ordinal()]);
+            }
+        }
+        result.putAll(new TreeMap<>(otherCounts));
+        return result;
+    }
+}
@@ -0,0 +1,34 @@
+package service.stats;
+
+import model.LogEntry;
+import java.io.Serializable;
+
+// Два независимых агрегатора за один проход, например общая статистика и группировка
+public class PairAggregator<A extends LogAggregator<A>, B extends LogAggregator<B>>
+        implements LogAggregator<PairAggregator<A, B>>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final A first;
+    private final B second;
+
+    public PairAggregator(A first, B second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public void accept(LogEntry entry) {
+        first.accept(entry);
+        second.accept(entry);
+    }
+
+    @Override
+    public void merge(PairAggregator<A, B> other) {
+        first.merge(other.first);
+        second.merge(other.second);
+    }
+
+    public A getFirst() { return first; }
+    public B getSecond() { return second; }
+}
@@ -0,0 +1,94 @@
+package service.stats;
+
+import model.LogEntry;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Отдельный агрегатор на каждый час или класс ответа (2xx, 4xx, ...).
+// Агрегатор части создается при первой записи в нее, пустые части памяти не занимают.
+public class PartitionedAggregator<A extends LogAggregator<A>> implements LogAggregator<PartitionedAggregator<A>>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Partition {
+        HOUR(24) {
+            int indexOf(LogEntry entry) { return entry.getHour(); }
+            String label(int index) { return String.format("%02d:00", index); }
+        },
+        // Парсер принимает любые трехзначные коды, поэтому классов десять
+        STATUS_CLASS(10) {
+            int indexOf(LogEntry entry) { return entry.getResponseCode() / 100; }
+            String label(int index) { return index + "xx"; }
+        };
+
+        private final int size;
+
+        Partition(int size) {
+            this.size = size;
+        }
+
+        abstract int indexOf(LogEntry entry);
+
+        abstract String label(int index);
+
+        public int size() { return size; }
+    }
+
+    private final Partition partition;
+    private final Factory<A> factory;
+    private final LogAggregator<?>[] parts;
+
+    public PartitionedAggregator(Partition partition, Factory<A> factory) {
+        this.partition = partition;
+        this.factory = factory;
+        this.parts = new LogAggregator<?>[partition.size()];
+    }
+
+    @Override
+    public void accept(LogEntry entry) {
+        partOrCreate(partition.indexOf(entry)).accept(entry);
+    }
+
+    @Override
+    public void merge(PartitionedAggregator<A> other) {
+        if (other.partition != partition) {
+            throw new IllegalArgumentException("Нельзя слить разные разбиения: " + partition + " и " + other.partition);
+        }
+        for (int i = 0; i < parts.length; i++) {
+            A part = other.get(i);
+            if (part != null) {
+                partOrCreate(i).merge(part);
+            }
+        }
+    }
+
+    public Partition getPartition() { return partition; }
+
+    // Агрегатор части или null, если записей в ней не было
+    @SuppressWarnings("unchecked")
+    public A get(int index) {
+        return (A) parts[index];
+    }
+
+    // Непустые части по порядку: "00:00" или "2xx" -> агрегатор
+    public Map<String, A> getParts() {
+        Map<String, A> result = new LinkedHashMap<>();
+        for (int i = 0; i < parts.length; i++) {
+            A part = get(i);
+            if (part != null) {
+                result.put(partition.label(i), part);
+            }
+        }
+        return result;
+    }
+
+    private A partOrCreate(int index) {
+        A part = get(index);
+        if (part == null) {
+            part = factory.get();
+            parts[index] = part;
+        }
+        return part;
+    }
+}
@@ -0,0 +1,49 @@
+package service.stats;
+
+import model.LogEntry;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ResponseCodeAggregator implements LogAggregator<ResponseCodeAggregator>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Парсер принимает только трехзначные коды, поэтому хватает массива на 1000
+    private final long[] counts = new long[1000];
+
+    @Override
+    public void accept(LogEntry entry) {
+        counts[entry.getResponseCode()]++;
+    }
+
+    @Override
+    public void merge(ResponseCodeAggregator other) {
+        for (int code = 0; code < counts.length; code++) {
+            counts[code] += other.counts[code];
+        }
+    }
+
+    public long count(int code) {
+        return counts[code];
+    }
+
+    // Коды по возрастанию, только встретившиеся
+    public Map<Integer, Long> getCounts() {
+        Map<Integer, Long> result = new TreeMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                result.put(code, counts[code]);
+            }
+        }
+        return result;
+    }
+
+    public long countBetween(int fromInclusive, int toExclusive) {
+        long total = 0;
+        for (int code = Math.max(fromInclusive, 0); code < Math.min(toExclusive, counts.length); code++) {
+            total += counts[code];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,32 @@
+package service.stats;
+
+import model.LogEntry;
+import java.io.Serializable;
+
+// Распределение размеров ответов: квантили без хранения самих размеров
+public class ResponseSizeAggregator implements LogAggregator<ResponseSizeAggregator>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final LogHistogram histogram = new LogHistogram();
+
+    @Override
+    public void accept(LogEntry entry) {
+        histogram.add(entry.getBytesSent());
+    }
+
+    @Override
+    public void merge(ResponseSizeAggregator other) {
+        histogram.merge(other.histogram);
+    }
+
+    public long quantile(double quantile) {
+        return histogram.quantile(quantile);
+    }
+
+    public long[] quantiles(double... quantiles) {
+        return histogram.quantiles(quantiles);
+    }
+
+    public LogHistogram getHistogram() { return histogram; }
+}
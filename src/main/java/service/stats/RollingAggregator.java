@@ -0,0 +1,105 @@
+package service.stats;
+
+import model.LogEntry;
+import java.io.Serializable;
+import java.util.Arrays;
+
+// Статистика за последние N минут по времени записей: кольцо поминутных агрегаторов.
+// Когда приходит запись новой минуты, ячейка самой старой минуты переиспользуется,
+// поэтому память не растет при бесконечном чтении. Записи старше окна отбрасываются.
+public class RollingAggregator<A extends LogAggregator<A>> implements LogAggregator<RollingAggregator<A>>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final long NO_MINUTE = Long.MIN_VALUE;
+
+    private final int windowMinutes;
+    private final Factory<A> factory;
+    private final LogAggregator<?>[] buckets;
+    private final long[] bucketMinutes;
+    private long latestMinute = NO_MINUTE;
+    private long lateEntries;
+
+    public RollingAggregator(int windowMinutes, Factory<A> factory) {
+        if (windowMinutes < 1) {
+            throw new IllegalArgumentException("windowMinutes должен быть >= 1: " + windowMinutes);
+        }
+        this.windowMinutes = windowMinutes;
+        this.factory = factory;
+        this.buckets = new LogAggregator<?>[windowMinutes];
+        this.bucketMinutes = new long[windowMinutes];
+        Arrays.fill(bucketMinutes, NO_MINUTE);
+    }
+
+    @Override
+    public void accept(LogEntry entry) {
+        A bucket = bucketFor(Math.floorDiv(entry.getEpochSecond(), 60));
+        if (bucket != null) {
+            bucket.accept(entry);
+        } else {
+            lateEntries++;
+        }
+    }
+
+    @Override
+    public void merge(RollingAggregator<A> other) {
+        for (int i = 0; i < other.buckets.length; i++) {
+            if (other.bucketMinutes[i] != NO_MINUTE) {
+                A bucket = bucketFor(other.bucketMinutes[i]);
+                if (bucket != null) {
+                    bucket.merge(other.bucketAt(i));
+                }
+            }
+        }
+        lateEntries += other.lateEntries;
+    }
+
+    // Сумма всех минут окна
+    public A snapshot() {
+        A result = factory.get();
+        for (int i = 0; i < buckets.length; i++) {
+            if (inWindow(bucketMinutes[i])) {
+                result.merge(bucketAt(i));
+            }
+        }
+        return result;
+    }
+
+    // Агрегатор одной минуты (секунды от эпохи / 60) или null, если ее нет в окне
+    public A minute(long epochMinute) {
+        int slot = slotOf(epochMinute);
+        return bucketMinutes[slot] == epochMinute && inWindow(epochMinute) ? bucketAt(slot) : null;
+    }
+
+    // Самая поздняя минута среди записей; Long.MIN_VALUE, пока записей не было
+    public long getLatestMinute() { return latestMinute; }
+    public int getWindowMinutes() { return windowMinutes; }
+    public long getLateEntries() { return lateEntries; }
+
+    private A bucketFor(long epochMinute) {
+        if (latestMinute == NO_MINUTE || epochMinute > latestMinute) {
+            latestMinute = epochMinute;
+        } else if (!inWindow(epochMinute)) {
+            return null;
+        }
+        int slot = slotOf(epochMinute);
+        if (bucketMinutes[slot] != epochMinute) {
+            buckets[slot] = factory.get();
+            bucketMinutes[slot] = epochMinute;
+        }
+        return bucketAt(slot);
+    }
+
+    private boolean inWindow(long epochMinute) {
+        return epochMinute != NO_MINUTE && epochMinute > latestMinute - windowMinutes;
+    }
+
+    private int slotOf(long epochMinute) {
+        return (int) Math.floorMod(epochMinute, (long) windowMinutes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private A bucketAt(int slot) {
+        return (A) buckets[slot];
+    }
+}
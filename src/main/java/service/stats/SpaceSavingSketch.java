@@ -0,0 +1,199 @@
+package service.stats;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Приближенный поиск самых частых ключей алгоритмом Space-Saving в памяти O(capacity).
+// Для каждого ключа в выдаче count - оценка сверху, а count - error - гарантированный минимум.
+// Погрешность не больше total / capacity. Два наброска одной емкости можно слить.
+public class SpaceSavingSketch<K extends Comparable<K>> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters;
+    // Минимальная куча счетчиков: при вытеснении заменяется самый маленький
+    private final List<Counter<K>> heap;
+    private long total;
+
+    public SpaceSavingSketch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity должен быть >= 1: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new ArrayList<>(capacity);
+    }
+
+    public void add(K key) {
+        add(key, 1);
+    }
+
+    public void add(K key, long count) {
+        total += count;
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            counter.count += count;
+            siftDown(counter.index);
+        } else if (heap.size() < capacity) {
+            counter = new Counter<>(key, count, 0);
+            counters.put(key, counter);
+            counter.index = heap.size();
+            heap.add(counter);
+            siftUp(counter.index);
+        } else {
+            // Новый ключ занимает место самого редкого и наследует его счетчик как погрешность
+            counter = heap.get(0);
+            counters.remove(counter.key);
+            counter.key = key;
+            counter.error = counter.count;
+            counter.count += count;
+            counters.put(key, counter);
+            siftDown(0);
+        }
+    }
+
+    // Слияние по схеме mergeable summaries: отсутствующий в наброске ключ мог иметь
+    // там не больше его минимального счетчика, это добавляется к оценке и погрешности
+    public void merge(SpaceSavingSketch<K> other) {
+        if (other.capacity != capacity) {
+            throw new IllegalArgumentException("Нельзя слить наброски разной емкости: "
+                    + capacity + " и " + other.capacity);
+        }
+        long thisMin = heap.size() < capacity ? 0 : heap.get(0).count;
+        long otherMin = other.heap.size() < other.capacity ? 0 : other.heap.get(0).count;
+
+        Map<K, Counter<K>> merged = new HashMap<>();
+        for (Counter<K> counter : heap) {
+            Counter<K> theirs = other.counters.get(counter.key);
+            long count = counter.count + (theirs != null ? theirs.count : otherMin);
+            long error = counter.error + (theirs != null ? theirs.error : otherMin);
+            merged.put(counter.key, new Counter<>(counter.key, count, error));
+        }
+        for (Counter<K> theirs : other.heap) {
+            if (!merged.containsKey(theirs.key)) {
+                merged.put(theirs.key, new Counter<>(theirs.key,
+                        theirs.count + thisMin, theirs.error + thisMin));
+            }
+        }
+
+        List<Counter<K>> kept = new ArrayList<>(merged.values());
+        kept.sort(byCountDescending());
+        if (kept.size() > capacity) {
+            kept = kept.subList(0, capacity);
+        }
+
+        total += other.total;
+        counters.clear();
+        heap.clear();
+        for (Counter<K> counter : kept) {
+            counters.put(counter.key, counter);
+            counter.index = heap.size();
+            heap.add(counter);
+            siftUp(counter.index);
+        }
+    }
+
+    // Самые частые ключи по убыванию оценки
+    public List<Estimate<K>> top(int limit) {
+        List<Counter<K>> sorted = new ArrayList<>(heap);
+        sorted.sort(byCountDescending());
+        List<Estimate<K>> result = new ArrayList<>();
+        for (int i = 0; i < Math.min(limit, sorted.size()); i++) {
+            Counter<K> counter = sorted.get(i);
+            result.add(new Estimate<>(counter.key, counter.count, counter.error));
+        }
+        return result;
+    }
+
+    public long getTotal() { return total; }
+    public int getCapacity() { return capacity; }
+
+    // Гарантированная верхняя граница ошибки для любого ключа
+    public long getMaxError() {
+        return heap.size() < capacity ? 0 : heap.get(0).count;
+    }
+
+    private static <K extends Comparable<K>> Comparator<Counter<K>> byCountDescending() {
+        return (a, b) -> {
+            int byCount = Long.compare(b.count, a.count);
+            return byCount != 0 ? byCount : a.key.compareTo(b.key);
+        };
+    }
+
+    private void siftUp(int index) {
+        Counter<K> counter = heap.get(index);
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            Counter<K> parentCounter = heap.get(parent);
+            if (parentCounter.count <= counter.count) {
+                break;
+            }
+            place(parentCounter, index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter<K> counter = heap.get(index);
+        int size = heap.size();
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap.get(child + 1).count < heap.get(child).count) {
+                child++;
+            }
+            Counter<K> childCounter = heap.get(child);
+            if (counter.count <= childCounter.count) {
+                break;
+            }
+            place(childCounter, index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter<K> counter, int index) {
+        heap.set(index, counter);
+        counter.index = index;
+    }
+
+    private static final class Counter<K> implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        K key;
+        long count;
+        long error;
+        int index;
+
+        Counter(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    public static final class Estimate<K> {
+        private final K key;
+        private final long count;
+        private final long error;
+
+        Estimate(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public K getKey() { return key; }
+        public long getCount() { return count; }
+        public long getError() { return error; }
+        public long getGuaranteedCount() { return count - error; }
+    }
+}
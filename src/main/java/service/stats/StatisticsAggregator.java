@@ -0,0 +1,134 @@
+package service.stats;
+
+import model.LogEntry;
+import service.ip.IpPrefix;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Все отчеты StatisticsCalculator за один проход по записям.
+// Счетчики внутри - примитивные массивы, результат снимается через report().
+public class StatisticsAggregator implements LogAggregator<StatisticsAggregator>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int DEFAULT_TOP_LIMIT = 10;
+    // Квантили размера и времени ответа в отчете: p50, p95, p99, p99.9
+    static final double[] SIZE_QUANTILES = {0.5, 0.95, 0.99, 0.999};
+    // Уровни свертки адресов в подсети для отчета: длина префикса IPv4 и IPv6
+    static final int[][] SUBNET_LEVELS = {{24, 64}, {16, 48}};
+
+    private long totalRequests;
+    private final ResponseCodeAggregator responseCodes = new ResponseCodeAggregator();
+    // Точный подсчет по упакованным адресам или приближенный топ - ровно одно из двух
+    private final IpAggregator ips;
+    private final TopKeyAggregator topIps;
+    private final TrafficAggregator traffic = new TrafficAggregator();
+    private final MethodAggregator methods = new MethodAggregator();
+    private final HourlyAggregator hourly = new HourlyAggregator();
+    private final BrowserAggregator browsers = new BrowserAggregator();
+    private final BotAggregator bots = new BotAggregator();
+    private final DistinctCountAggregator distinctIps = new DistinctCountAggregator(KeyField.IP);
+    private final DistinctCountAggregator distinctPaths = new DistinctCountAggregator(KeyField.PATH);
+    private final PartitionedAggregator<ResponseSizeAggregator> sizesByStatusClass =
+            new PartitionedAggregator<>(PartitionedAggregator.Partition.STATUS_CLASS, ResponseSizeAggregator::new);
+    private final LatencyAggregator latency = new LatencyAggregator();
+
+    public StatisticsAggregator() {
+        this(0);
+    }
+
+    // topIpSketchCapacity > 0 включает приближенный топ IP в памяти фиксированного размера
+    public StatisticsAggregator(int topIpSketchCapacity) {
+        this.ips = topIpSketchCapacity > 0 ? null : new IpAggregator();
+        this.topIps = topIpSketchCapacity > 0 ? TopKeyAggregator.approximate(KeyField.IP, topIpSketchCapacity) : null;
+    }
+
+    @Override
+    public void accept(LogEntry entry) {
+        totalRequests++;
+        responseCodes.accept(entry);
+        if (ips != null) {
+            ips.accept(entry);
+        } else {
+            topIps.accept(entry);
+        }
+        traffic.accept(entry);
+        methods.accept(entry);
+        hourly.accept(entry);
+        browsers.accept(entry);
+        bots.accept(entry);
+        distinctIps.accept(entry);
+        distinctPaths.accept(entry);
+        sizesByStatusClass.accept(entry);
+        latency.accept(entry);
+    }
+
+    @Override
+    public void merge(StatisticsAggregator other) {
+        totalRequests += other.totalRequests;
+        responseCodes.merge(other.responseCodes);
+        if ((other.ips == null) != (ips == null)) {
+            throw new IllegalArgumentException("Нельзя слить точный и приближенный подсчет IP");
+        }
+        if (ips != null) {
+            ips.merge(other.ips);
+        } else {
+            topIps.merge(other.topIps);
+        }
+        traffic.merge(other.traffic);
+        methods.merge(other.methods);
+        hourly.merge(other.hourly);
+        browsers.merge(other.browsers);
+        bots.merge(other.bots);
+        distinctIps.merge(other.distinctIps);
+        distinctPaths.merge(other.distinctPaths);
+        sizesByStatusClass.merge(other.sizesByStatusClass);
+        latency.merge(other.latency);
+    }
+
+    public StatisticsReport report() {
+        return report(DEFAULT_TOP_LIMIT);
+    }
+
+    public StatisticsReport report(int topLimit) {
+        // Общее распределение размеров - сумма распределений по классам ответов
+        ResponseSizeAggregator allSizes = new ResponseSizeAggregator();
+        Map<String, long[]> sizeQuantilesByStatusClass = new LinkedHashMap<>();
+        sizesByStatusClass.getParts().forEach((label, sizes) -> {
+            allSizes.merge(sizes);
+            sizeQuantilesByStatusClass.put(label, sizes.quantiles(SIZE_QUANTILES));
+        });
+
+        // Подсети считаются только в точном режиме: набросок не хранит все адреса
+        Map<String, List<Map.Entry<IpPrefix, Long>>> topSubnets = new LinkedHashMap<>();
+        if (ips != null) {
+            for (int[] level : SUBNET_LEVELS) {
+                topSubnets.put("/" + level[0] + " и /" + level[1], ips.topSubnets(level[0], level[1], topLimit));
+            }
+        }
+
+        return new StatisticsReport(totalRequests, responseCodes.getCounts(),
+                ips != null ? ips.top(topLimit) : topIps.top(topLimit),
+                ips != null ? 0 : topIps.getMaxError(), topSubnets, traffic, methods.getCounts(), hourly.getCounts(), browsers.getCounts(), bots,
+                distinctIps.estimate(), distinctPaths.estimate(),
+                allSizes.quantiles(SIZE_QUANTILES), sizeQuantilesByStatusClass, latency);
+    }
+
+    public long getTotalRequests() { return totalRequests; }
+    public ResponseCodeAggregator getResponseCodes() { return responseCodes; }
+    // null в точном режиме
+    public TopKeyAggregator getTopIps() { return topIps; }
+    // null в приближенном режиме
+    public IpAggregator getIps() { return ips; }
+    public TrafficAggregator getTraffic() { return traffic; }
+    public MethodAggregator getMethods() { return methods; }
+    public HourlyAggregator getHourly() { return hourly; }
+    public BrowserAggregator getBrowsers() { return browsers; }
+    public BotAggregator getBots() { return bots; }
+    public DistinctCountAggregator getDistinctIps() { return distinctIps; }
+    public DistinctCountAggregator getDistinctPaths() { return distinctPaths; }
+    public PartitionedAggregator<ResponseSizeAggregator> getSizesByStatusClass() { return sizesByStatusClass; }
+    public LatencyAggregator getLatency() { return latency; }
+}
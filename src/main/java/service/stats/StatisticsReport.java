@@ -0,0 +1,102 @@
+package service.stats;
+
+import service.ip.IpPrefix;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Неизменяемый итог StatisticsAggregator; вывод делает StatisticsCalculator
+public final class StatisticsReport {
+
+    private final long totalRequests;
+    private final Map<Integer, Long> responseCodes;
+    private final List<Map.Entry<String, Long>> topIps;
+    private final long topIpsMaxError; // 0 - точный подсчет
+    // Уровень свертки ("/24 и /64") -> самые нагруженные подсети; пусто при приближенном подсчете
+    private final Map<String, List<Map.Entry<IpPrefix, Long>>> topSubnets;
+    private final long totalBytes;
+    private final long maxBytes;
+    private final double averageBytes;
+    private final Map<String, Long> methods;
+    private final long[] hourly;
+    // Только запросы людей, боты - в bots
+    private final Map<String, Long> browsers;
+    private final long botRequests;
+    private final Map<String, Long> bots;
+    private final long distinctIps;
+    private final long distinctPaths;
+    // p50, p95, p99, p99.9 размера ответа
+    private final long[] sizeQuantiles;
+    private final Map<String, long[]> sizeQuantilesByStatusClass;
+    // Число записей со временем и p50, p95, p99, p99.9 в микросекундах
+    private final long requestTimeCount;
+    private final long[] requestTimeQuantiles;
+    private final long upstreamTimeCount;
+    private final long[] upstreamTimeQuantiles;
+
+    StatisticsReport(long totalRequests, Map<Integer, Long> responseCodes,
+                     List<Map.Entry<String, Long>> topIps, long topIpsMaxError,
+                     Map<String, List<Map.Entry<IpPrefix, Long>>> topSubnets, TrafficAggregator traffic,
+                     Map<String, Long> methods, long[] hourly, Map<String, Long> browsers, BotAggregator bots,
+                     long distinctIps, long distinctPaths, long[] sizeQuantiles,
+                     Map<String, long[]> sizeQuantilesByStatusClass, LatencyAggregator latency) {
+        this.totalRequests = totalRequests;
+        this.responseCodes = Collections.unmodifiableMap(responseCodes);
+        this.topIps = Collections.unmodifiableList(topIps);
+        this.topIpsMaxError = topIpsMaxError;
+        this.topSubnets = Collections.unmodifiableMap(topSubnets);
+        this.totalBytes = traffic.getTotalBytes();
+        this.maxBytes = traffic.getMaxBytes();
+        this.averageBytes = traffic.getAverageBytes();
+        this.methods = Collections.unmodifiableMap(methods);
+        this.hourly = hourly;
+        this.browsers = Collections.unmodifiableMap(browsers);
+        this.botRequests = bots.getTotal();
+        this.bots = Collections.unmodifiableMap(bots.getCounts());
+        this.distinctIps = distinctIps;
+        this.distinctPaths = distinctPaths;
+        this.sizeQuantiles = sizeQuantiles;
+        this.sizeQuantilesByStatusClass = Collections.unmodifiableMap(sizeQuantilesByStatusClass);
+        this.requestTimeCount = latency.getRequestTimes().getCount();
+        this.requestTimeQuantiles = latency.getRequestTimes().quantiles(StatisticsAggregator.SIZE_QUANTILES);
+        this.upstreamTimeCount = latency.getUpstreamTimes().getCount();
+        this.upstreamTimeQuantiles = latency.getUpstreamTimes().quantiles(StatisticsAggregator.SIZE_QUANTILES);
+    }
+
+    public long getTotalRequests() { return totalRequests; }
+    public Map<Integer, Long> getResponseCodes() { return responseCodes; }
+    public List<Map.Entry<String, Long>> getTopIps() { return topIps; }
+    public long getTopIpsMaxError() { return topIpsMaxError; }
+    public Map<String, List<Map.Entry<IpPrefix, Long>>> getTopSubnets() { return topSubnets; }
+    public long getTotalBytes() { return totalBytes; }
+    public long getMaxBytes() { return maxBytes; }
+    public double getAverageBytes() { return averageBytes; }
+    public Map<String, Long> getMethods() { return methods; }
+    public long getHourlyCount(int hour) { return hourly[hour]; }
+    public Map<String, Long> getBrowsers() { return browsers; }
+    public long getBotRequests() { return botRequests; }
+    // Имя бота -> число запросов, по убыванию
+    public Map<String, Long> getBots() { return bots; }
+    public long getDistinctIps() { return distinctIps; }
+    public long getDistinctPaths() { return distinctPaths; }
+    public long[] getSizeQuantiles() { return sizeQuantiles.clone(); }
+
+    // Класс ответа ("2xx") -> p50, p95, p99, p99.9 размера ответа
+    public Map<String, long[]> getSizeQuantilesByStatusClass() { return sizeQuantilesByStatusClass; }
+
+    // 0, если в формате лога нет времени ответа
+    public long getRequestTimeCount() { return requestTimeCount; }
+    public long[] getRequestTimeQuantiles() { return requestTimeQuantiles.clone(); }
+    public long getUpstreamTimeCount() { return upstreamTimeCount; }
+    public long[] getUpstreamTimeQuantiles() { return upstreamTimeQuantiles.clone(); }
+
+    public long countResponseCodes(int fromInclusive, int toExclusive) {
+        long total = 0;
+        for (Map.Entry<Integer, Long> entry : responseCodes.entrySet()) {
+            if (entry.getKey() >= fromInclusive && entry.getKey() < toExclusive) {
+                total += entry.getValue();
+            }
+        }
+        return total;
+    }
+}
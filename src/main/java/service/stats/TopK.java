@@ -0,0 +1,43 @@
+package service.stats;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Точный выбор k самых частых ключей кучей размера k вместо сортировки всех ключей: O(n log k)
+public final class TopK {
+
+    private TopK() {
+    }
+
+    public static <K extends Comparable<K>> List<Map.Entry<K, Long>> exact(Map<K, long[]> counts, int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        Comparator<Map.Entry<K, Long>> descending = (e1, e2) -> {
+            int byCount = Long.compare(e2.getValue(), e1.getValue());
+            return byCount != 0 ? byCount : e1.getKey().compareTo(e2.getKey());
+        };
+        // В вершине кучи - худший из отобранных
+        PriorityQueue<Map.Entry<K, Long>> heap = new PriorityQueue<>(k + 1, descending.reversed());
+        for (Map.Entry<K, long[]> entry : counts.entrySet()) {
+            long count = entry.getValue()[0];
+            if (heap.size() == k) {
+                // Большинство ключей отсекается одним сравнением, без создания объектов
+                Map.Entry<K, Long> worst = heap.peek();
+                if (count < worst.getValue()
+                        || (count == worst.getValue() && entry.getKey().compareTo(worst.getKey()) > 0)) {
+                    continue;
+                }
+                heap.poll();
+            }
+            heap.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), count));
+        }
+        List<Map.Entry<K, Long>> result = new ArrayList<>(heap);
+        result.sort(descending);
+        return result;
+    }
+}
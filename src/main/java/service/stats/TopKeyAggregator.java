@@ -0,0 +1,92 @@
+package service.stats;
+
+import model.LogEntry;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Самые частые значения поля (IP, путь, referer).
+// Точный режим хранит счетчик на каждое значение и выбирает top кучей размера k.
+// Приближенный режим держит Space-Saving набросок фиксированной емкости -
+// память не растет при миллионах различных IP во время сканирования или DDoS.
+public class TopKeyAggregator implements LogAggregator<TopKeyAggregator>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final KeyField field;
+    // Ровно одно из двух в зависимости от режима
+    private final Map<String, long[]> exactCounts;
+    private final SpaceSavingSketch<String> sketch;
+
+    private TopKeyAggregator(KeyField field, int sketchCapacity) {
+        this.field = field;
+        this.exactCounts = sketchCapacity > 0 ? null : new HashMap<>();
+        this.sketch = sketchCapacity > 0 ? new SpaceSavingSketch<>(sketchCapacity) : null;
+    }
+
+    public static TopKeyAggregator exact(KeyField field) {
+        return new TopKeyAggregator(field, 0);
+    }
+
+    // Погрешность счетчиков не больше числа записей / sketchCapacity
+    public static TopKeyAggregator approximate(KeyField field, int sketchCapacity) {
+        if (sketchCapacity < 1) {
+            throw new IllegalArgumentException("sketchCapacity должен быть >= 1: " + sketchCapacity);
+        }
+        return new TopKeyAggregator(field, sketchCapacity);
+    }
+
+    @Override
+    public void accept(LogEntry entry) {
+        String key = field.extract(entry);
+        if (sketch != null) {
+            sketch.add(key);
+        } else {
+            // Изменяемый счетчик вместо Long, чтобы не упаковывать число на каждой записи
+            exactCounts.computeIfAbsent(key, k -> new long[1])[0]++;
+        }
+    }
+
+    @Override
+    public void merge(TopKeyAggregator other) {
+        if (other.field != field || (other.sketch == null) != (sketch == null)) {
+            throw new IllegalArgumentException("Нельзя слить агрегаторы разных полей или режимов");
+        }
+        if (sketch != null) {
+            sketch.merge(other.sketch);
+        } else {
+            other.exactCounts.forEach((key, count) -> exactCounts.computeIfAbsent(key, k -> new long[1])[0] += count[0]);
+        }
+    }
+
+    public KeyField getField() { return field; }
+
+    public boolean isApproximate() {
+        return sketch != null;
+    }
+
+    // Граница ошибки счетчиков в выдаче top (0 в точном режиме)
+    public long getMaxError() {
+        return sketch != null ? sketch.getMaxError() : 0;
+    }
+
+    // При равенстве счетчиков порядок по значению, чтобы результат не зависел от порядка слияния
+    public List<Map.Entry<String, Long>> top(int limit) {
+        if (sketch == null) {
+            return TopK.exact(exactCounts, limit);
+        }
+        return sketch.top(limit).stream()
+                .map(estimate -> new AbstractMap.SimpleImmutableEntry<>(estimate.getKey(), estimate.getCount()))
+                .collect(Collectors.toList());
+    }
+
+    public List<SpaceSavingSketch.Estimate<String>> topEstimates(int limit) {
+        if (sketch == null) {
+            throw new IllegalStateException("Оценки с погрешностью есть только в приближенном режиме");
+        }
+        return sketch.top(limit);
+    }
+}
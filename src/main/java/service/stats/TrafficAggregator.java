@@ -0,0 +1,45 @@
+package service.stats;
+
+import model.LogEntry;
+import java.io.Serializable;
+
+// Сумма, минимум, максимум и количество за один проход, как LongSummaryStatistics
+public class TrafficAggregator implements LogAggregator<TrafficAggregator>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long count;
+    private long totalBytes;
+    private long minBytes = Long.MAX_VALUE;
+    private long maxBytes;
+
+    @Override
+    public void accept(LogEntry entry) {
+        add(entry.getBytesSent());
+    }
+
+    public void add(long bytes) {
+        count++;
+        totalBytes += bytes;
+        if (bytes < minBytes) {
+            minBytes = bytes;
+        }
+        if (bytes > maxBytes) {
+            maxBytes = bytes;
+        }
+    }
+
+    @Override
+    public void merge(TrafficAggregator other) {
+        count += other.count;
+        totalBytes += other.totalBytes;
+        minBytes = Math.min(minBytes, other.minBytes);
+        maxBytes = Math.max(maxBytes, other.maxBytes);
+    }
+
+    public long getCount() { return count; }
+    public long getTotalBytes() { return totalBytes; }
+    public long getMinBytes() { return count == 0 ? 0 : minBytes; }
+    public long getMaxBytes() { return maxBytes; }
+    public double getAverageBytes() { return count == 0 ? 0 : (double) totalBytes / count; }
+}
@@ -0,0 +1,135 @@
+package service.store;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Кодирование колонок блока: числа - varint (со zigzag для разностей), затем Deflate.
+// Запись идет в растущий массив, чтение - по позиции; экземпляр переиспользуется.
+final class BlockCodec {
+
+    private byte[] buffer = new byte[64 * 1024];
+    private int length;
+    private int position;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+
+    // Запись
+
+    void reset() {
+        length = 0;
+    }
+
+    void writeVarLong(long value) {
+        ensureCapacity(length + 10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeBytes(byte[] bytes) {
+        writeVarLong(bytes.length);
+        ensureCapacity(length + bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    int length() {
+        return length;
+    }
+
+    // Сжатое содержимое буфера
+    byte[] compress() {
+        deflater.reset();
+        deflater.setInput(buffer, 0, length);
+        deflater.finish();
+        byte[] out = new byte[Math.max(64, length / 2)];
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            size += deflater.deflate(out, size, out.length - size);
+        }
+        return Arrays.copyOf(out, size);
+    }
+
+    // Чтение
+
+    void decompress(byte[] compressed, int rawLength) throws IOException {
+        ensureCapacity(rawLength);
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int size = 0;
+            while (size < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(buffer, size, rawLength - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                size += n;
+            }
+            if (size != rawLength) {
+                throw new IOException("Поврежденный блок: ожидалось " + rawLength + " байт, получено " + size);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Поврежденный блок: " + e.getMessage(), e);
+        }
+        length = rawLength;
+        position = 0;
+    }
+
+    long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= length) {
+                throw new IOException("Поврежденный блок: число обрывается");
+            }
+            byte b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Поврежденный блок: слишком длинное число");
+    }
+
+    long readSignedVarLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    byte[] readBytes() throws IOException {
+        int size = readVarInt();
+        if (size < 0 || position + size > length) {
+            throw new IOException("Поврежденный блок: строка выходит за границы");
+        }
+        byte[] bytes = Arrays.copyOfRange(buffer, position, position + size);
+        position += size;
+        return bytes;
+    }
+
+    void end() {
+        deflater.end();
+        inflater.end();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+}
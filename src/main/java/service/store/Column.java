@@ -0,0 +1,23 @@
+package service.store;
+
+// Колонки файла ColumnarLogFile. Строковые колонки хранятся номерами в словаре файла.
+public enum Column {
+    TIME(false),
+    IP(true),
+    METHOD(true),
+    PATH(true),
+    STATUS(false),
+    BYTES(false),
+    REFERER(true),
+    USER_AGENT(true);
+
+    private final boolean dictionary;
+
+    Column(boolean dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public boolean isDictionary() {
+        return dictionary;
+    }
+}
@@ -0,0 +1,317 @@
+package service.store;
+
+import model.LogEntry;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Чтение колоночного файла ColumnarFileWriter без разбора текста.
+// Читаются и распаковываются только запрошенные колонки, блоки вне интервала времени
+// пропускаются по min/max из оглавления, словари загружаются при первой необходимости.
+// Записи передаются как Cursor - переиспользуемое представление LogEntry, поэтому
+// агрегаторы статистики работают прямо по файлу. Экземпляр не потокобезопасен.
+public class ColumnarFileReader implements Closeable {
+
+    public static final Set<Column> ALL_COLUMNS = EnumSet.allOf(Column.class);
+
+    private static final Column[] COLUMNS = Column.values();
+
+    private final FileChannel channel;
+    private final BlockCodec codec = new BlockCodec();
+
+    private final long[] dictionaryOffsets = new long[COLUMNS.length];
+    private final int[] dictionaryRawLengths = new int[COLUMNS.length];
+    private final int[] dictionaryLengths = new int[COLUMNS.length];
+    private final String[][] dictionaries = new String[COLUMNS.length][];
+
+    private final int blockCount;
+    private final long[] blockOffsets;
+    private final int[] blockRows;
+    private final long[] blockMinTimes;
+    private final long[] blockMaxTimes;
+    private final int[][] columnRawLengths;
+    private final int[][] columnLengths;
+    private long rowCount;
+
+    // Колонки текущего блока
+    private final Cursor cursor = new Cursor();
+    private long[] times = new long[0];
+    private int[] statuses = new int[0];
+    private long[] bytesSent = new long[0];
+    private final int[][] ids = new int[COLUMNS.length][0];
+    private final boolean[] loaded = new boolean[COLUMNS.length];
+
+    private long blocksRead;
+    private long blocksSkipped;
+
+    public ColumnarFileReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < 8 + ColumnarFileWriter.TRAILER_SIZE) {
+                throw new IOException("Слишком короткий колоночный файл: " + file);
+            }
+            DataInputStream header = input(0, 8);
+            DataInputStream trailer = input(size - ColumnarFileWriter.TRAILER_SIZE, ColumnarFileWriter.TRAILER_SIZE);
+            if (header.readInt() != ColumnarFileWriter.MAGIC || header.readInt() != ColumnarFileWriter.VERSION) {
+                throw new IOException("Неизвестный формат колоночного файла: " + file);
+            }
+            long footerOffset = trailer.readLong();
+            if (trailer.readInt() != ColumnarFileWriter.MAGIC || footerOffset < 8
+                    || footerOffset > size - ColumnarFileWriter.TRAILER_SIZE) {
+                throw new IOException("Файл не дописан или поврежден: " + file);
+            }
+
+            DataInputStream footer = input(footerOffset, (int) (size - ColumnarFileWriter.TRAILER_SIZE - footerOffset));
+            for (Column column : COLUMNS) {
+                if (column.isDictionary()) {
+                    dictionaryOffsets[column.ordinal()] = footer.readLong();
+                    dictionaryRawLengths[column.ordinal()] = footer.readInt();
+                    dictionaryLengths[column.ordinal()] = footer.readInt();
+                }
+            }
+            blockCount = footer.readInt();
+            blockOffsets = new long[blockCount];
+            blockRows = new int[blockCount];
+            blockMinTimes = new long[blockCount];
+            blockMaxTimes = new long[blockCount];
+            columnRawLengths = new int[blockCount][COLUMNS.length];
+            columnLengths = new int[blockCount][COLUMNS.length];
+            for (int block = 0; block < blockCount; block++) {
+                blockOffsets[block] = footer.readLong();
+                blockRows[block] = footer.readInt();
+                blockMinTimes[block] = footer.readLong();
+                blockMaxTimes[block] = footer.readLong();
+                for (int column = 0; column < COLUMNS.length; column++) {
+                    columnRawLengths[block][column] = footer.readInt();
+                    columnLengths[block][column] = footer.readInt();
+                }
+                rowCount += blockRows[block];
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long scan(Set<Column> columns, Consumer<LogEntry> consumer) throws IOException {
+        return scan(columns, Long.MIN_VALUE, Long.MAX_VALUE, consumer);
+    }
+
+    // Записи со временем в [from, to) с колонками columns; геттеры остальных колонок бросают
+    // IllegalStateException. Возвращает число переданных записей.
+    public long scan(Set<Column> columns, long from, long to, Consumer<LogEntry> consumer) throws IOException {
+        blocksRead = 0;
+        blocksSkipped = 0;
+        long accepted = 0;
+        for (int block = 0; block < blockCount; block++) {
+            if (blockMaxTimes[block] < from || blockMinTimes[block] >= to) {
+                blocksSkipped++;
+                continue;
+            }
+            // Время нужно для фильтра, если блок попал в интервал не целиком
+            boolean filter = blockMinTimes[block] < from || blockMaxTimes[block] >= to;
+            loadBlock(block, columns, filter);
+            blocksRead++;
+
+            for (int row = 0; row < blockRows[block]; row++) {
+                if (filter && (times[row] < from || times[row] >= to)) {
+                    continue;
+                }
+                consumer.accept(cursor.moveTo(row));
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    public long getRowCount() { return rowCount; }
+    public int getBlockCount() { return blockCount; }
+
+    // Сколько блоков прочитал и пропустил последний scan
+    public long getBlocksRead() { return blocksRead; }
+    public long getBlocksSkipped() { return blocksSkipped; }
+
+    public long getMinTime() {
+        long min = Long.MAX_VALUE;
+        for (long time : blockMinTimes) {
+            min = Math.min(min, time);
+        }
+        return min;
+    }
+
+    public long getMaxTime() {
+        long max = Long.MIN_VALUE;
+        for (long time : blockMaxTimes) {
+            max = Math.max(max, time);
+        }
+        return max;
+    }
+
+    @Override
+    public void close() throws IOException {
+        codec.end();
+        channel.close();
+    }
+
+    private void loadBlock(int block, Set<Column> columns, boolean needTime) throws IOException {
+        int rows = blockRows[block];
+        if (times.length < rows) {
+            times = new long[rows];
+            statuses = new int[rows];
+            bytesSent = new long[rows];
+        }
+
+        long offset = blockOffsets[block];
+        for (Column column : COLUMNS) {
+            int index = column.ordinal();
+            int length = columnLengths[block][index];
+            loaded[index] = columns.contains(column) || (column == Column.TIME && needTime);
+            if (loaded[index]) {
+                if (column.isDictionary()) {
+                    // Словарь читается тем же codec, поэтому до распаковки колонки
+                    dictionary(column);
+                }
+                codec.decompress(read(offset, length), columnRawLengths[block][index]);
+                decodeColumn(column, block);
+            }
+            offset += length;
+        }
+    }
+
+    private void decodeColumn(Column column, int block) throws IOException {
+        int rows = blockRows[block];
+        switch (column) {
+            case TIME:
+                // Время записано разностями, первая - от минимума блока
+                long time = blockMinTimes[block];
+                for (int row = 0; row < rows; row++) {
+                    time += codec.readSignedVarLong();
+                    times[row] = time;
+                }
+                break;
+            case STATUS:
+                for (int row = 0; row < rows; row++) {
+                    statuses[row] = codec.readVarInt();
+                }
+                break;
+            case BYTES:
+                for (int row = 0; row < rows; row++) {
+                    bytesSent[row] = codec.readVarLong();
+                }
+                break;
+            default:
+                int[] columnIds = ids[column.ordinal()];
+                if (columnIds.length < rows) {
+                    columnIds = new int[rows];
+                    ids[column.ordinal()] = columnIds;
+                }
+                for (int row = 0; row < rows; row++) {
+                    columnIds[row] = codec.readVarInt();
+                }
+        }
+    }
+
+    private String[] dictionary(Column column) throws IOException {
+        int index = column.ordinal();
+        if (dictionaries[index] == null) {
+            codec.decompress(read(dictionaryOffsets[index], dictionaryLengths[index]), dictionaryRawLengths[index]);
+            String[] values = new String[codec.readVarInt()];
+            for (int id = 0; id < values.length; id++) {
+                values[id] = new String(codec.readBytes(), StandardCharsets.UTF_8);
+            }
+            dictionaries[index] = values;
+        }
+        return dictionaries[index];
+    }
+
+    private byte[] read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Колоночный файл обрывается на позиции " + (offset + buffer.position()));
+            }
+        }
+        return buffer.array();
+    }
+
+    private DataInputStream input(long offset, int length) throws IOException {
+        return new DataInputStream(new ByteArrayInputStream(read(offset, length)));
+    }
+
+    // Строка текущего блока с геттерами LogEntry
+    public final class Cursor extends LogEntry {
+
+        private int row;
+        private LocalDateTime timestamp;
+
+        Cursor moveTo(int row) {
+            this.row = row;
+            this.timestamp = null;
+            return this;
+        }
+
+        @Override
+        public String getIpAddress() { return string(Column.IP); }
+
+        @Override
+        public LocalDateTime getTimestamp() {
+            if (timestamp == null) {
+                timestamp = LocalDateTime.ofEpochSecond(getEpochSecond(), 0, ZoneOffset.UTC);
+            }
+            return timestamp;
+        }
+
+        @Override
+        public long getEpochSecond() {
+            check(Column.TIME);
+            return times[row];
+        }
+
+        @Override
+        public String getMethod() { return string(Column.METHOD); }
+
+        @Override
+        public String getPath() { return string(Column.PATH); }
+
+        @Override
+        public int getResponseCode() {
+            check(Column.STATUS);
+            return statuses[row];
+        }
+
+        @Override
+        public long getBytesSent() {
+            check(Column.BYTES);
+            return bytesSent[row];
+        }
+
+        @Override
+        public String getReferer() { return string(Column.REFERER); }
+
+        @Override
+        public String getUserAgent() { return string(Column.USER_AGENT); }
+
+        private String string(Column column) {
+            check(column);
+            return dictionaries[column.ordinal()][ids[column.ordinal()][row]];
+        }
+
+        private void check(Column column) {
+            if (!loaded[column.ordinal()]) {
+                throw new IllegalStateException("Колонка " + column + " не запрошена при чтении");
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package service.store;
+
+import model.LogEntry;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+// Запись разобранных записей в колоночный файл (читает ColumnarFileReader).
+// Записи копятся блоками по blockRows строк; каждая колонка блока кодируется varint
+// (время - разностями соседних строк) и сжимается отдельно, чтобы читатель мог
+// достать только нужные колонки. У блока хранятся минимальное и максимальное время.
+// Строки заменяются номерами в словарях, словари и оглавление блоков пишутся в конец:
+//   "LACF" версия | блоки | словари | оглавление | смещение оглавления "LACF"
+public class ColumnarFileWriter implements Consumer<LogEntry>, Closeable {
+
+    static final int MAGIC = 0x4C414346; // "LACF"
+    static final int VERSION = 1;
+    static final int TRAILER_SIZE = 12;
+    public static final int DEFAULT_BLOCK_ROWS = 64 * 1024;
+
+    private static final Column[] COLUMNS = Column.values();
+
+    private final OutputStream out;
+    private long position;
+    private final int blockRows;
+    private final BlockCodec codec = new BlockCodec();
+    private final StringDictionary[] dictionaries = new StringDictionary[COLUMNS.length];
+
+    // Текущий блок
+    private int rows;
+    private final long[] times;
+    private final int[] statuses;
+    private final long[] bytesSent;
+    private final int[][] ids = new int[COLUMNS.length][];
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+
+    private final ByteArrayOutputStream directoryBytes = new ByteArrayOutputStream();
+    private final DataOutputStream directory = new DataOutputStream(directoryBytes);
+    private int blockCount;
+
+    public ColumnarFileWriter(Path file) throws IOException {
+        this(file, DEFAULT_BLOCK_ROWS);
+    }
+
+    public ColumnarFileWriter(Path file, int blockRows) throws IOException {
+        if (blockRows < 1) {
+            throw new IllegalArgumentException("blockRows должен быть >= 1: " + blockRows);
+        }
+        this.blockRows = blockRows;
+        this.times = new long[blockRows];
+        this.statuses = new int[blockRows];
+        this.bytesSent = new long[blockRows];
+        for (Column column : COLUMNS) {
+            if (column.isDictionary()) {
+                dictionaries[column.ordinal()] = new StringDictionary();
+                ids[column.ordinal()] = new int[blockRows];
+            }
+        }
+        this.out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(header);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        write(header.toByteArray());
+    }
+
+    @Override
+    public void accept(LogEntry entry) {
+        try {
+            add(entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void add(LogEntry entry) throws IOException {
+        long time = entry.getEpochSecond();
+        times[rows] = time;
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+        statuses[rows] = entry.getResponseCode();
+        bytesSent[rows] = entry.getBytesSent();
+        setId(Column.IP, entry.getIpAddress());
+        setId(Column.METHOD, entry.getMethod());
+        setId(Column.PATH, entry.getPath());
+        setId(Column.REFERER, entry.getReferer());
+        setId(Column.USER_AGENT, entry.getUserAgent());
+        if (++rows == blockRows) {
+            flushBlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+
+            // Словари: для каждой строковой колонки смещение и размеры сжатого блока
+            ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+            DataOutputStream footer = new DataOutputStream(footerBytes);
+            for (Column column : COLUMNS) {
+                if (column.isDictionary()) {
+                    StringDictionary dictionary = dictionaries[column.ordinal()];
+                    codec.reset();
+                    codec.writeVarLong(dictionary.size());
+                    for (int id = 0; id < dictionary.size(); id++) {
+                        codec.writeBytes(dictionary.valueOf(id).getBytes(StandardCharsets.UTF_8));
+                    }
+                    footer.writeLong(position);
+                    footer.writeInt(codec.length());
+                    footer.writeInt(writeCompressed());
+                }
+            }
+            footer.writeInt(blockCount);
+            directory.flush();
+            directoryBytes.writeTo(footer);
+
+            long footerOffset = position;
+            footer.writeLong(footerOffset);
+            footer.writeInt(MAGIC);
+            write(footerBytes.toByteArray());
+        } finally {
+            codec.end();
+            out.close();
+        }
+    }
+
+    private void setId(Column column, String value) {
+        // null (у представлений без поля) храним как пустую строку
+        ids[column.ordinal()][rows] = dictionaries[column.ordinal()].idOf(value != null ? value : "");
+    }
+
+    private void flushBlock() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        directory.writeLong(position);
+        directory.writeInt(rows);
+        directory.writeLong(minTime);
+        directory.writeLong(maxTime);
+
+        for (Column column : COLUMNS) {
+            codec.reset();
+            switch (column) {
+                case TIME:
+                    long previous = minTime;
+                    for (int row = 0; row < rows; row++) {
+                        codec.writeSignedVarLong(times[row] - previous);
+                        previous = times[row];
+                    }
+                    break;
+                case STATUS:
+                    for (int row = 0; row < rows; row++) {
+                        codec.writeVarLong(statuses[row]);
+                    }
+                    break;
+                case BYTES:
+                    for (int row = 0; row < rows; row++) {
+                        codec.writeVarLong(bytesSent[row]);
+                    }
+                    break;
+                default:
+                    int[] columnIds = ids[column.ordinal()];
+                    for (int row = 0; row < rows; row++) {
+                        codec.writeVarLong(columnIds[row]);
+                    }
+            }
+            directory.writeInt(codec.length());
+            directory.writeInt(writeCompressed());
+        }
+
+        blockCount++;
+        rows = 0;
+        minTime = Long.MAX_VALUE;
+        maxTime = Long.MIN_VALUE;
+    }
+
+    // Сжимает содержимое codec в файл; возвращает размер сжатых данных
+    private int writeCompressed() throws IOException {
+        byte[] compressed = codec.compress();
+        write(compressed);
+        return compressed.length;
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        out.write(bytes);
+        position += bytes.length;
+    }
+}
@@ -0,0 +1,220 @@
+package service.store;
+
+import model.HttpMethod;
+import model.IpAddresses;
+import model.LogEntry;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// Колоночное хранение разобранных записей: по массиву на поле вместо объекта на строку.
+// Строковые поля хранятся номерами в словарях, IPv4 - числом, метод - кодом HttpMethod.
+// Около 35 байт на запись против нескольких сотен у LogEntry.
+// Записи читаются через Cursor - переиспользуемое представление с геттерами LogEntry.
+public class ColumnarLogStore implements Consumer<LogEntry> {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NONE = -1;
+
+    private int size;
+    private int[] ipv4 = new int[INITIAL_CAPACITY];
+    private long[] epochSeconds = new long[INITIAL_CAPACITY];
+    private short[] statuses = new short[INITIAL_CAPACITY];
+    private long[] bytesSent = new long[INITIAL_CAPACITY];
+    private byte[] methods = new byte[INITIAL_CAPACITY];
+    private int[] pathIds = new int[INITIAL_CAPACITY];
+    private int[] refererIds = new int[INITIAL_CAPACITY];
+    private int[] userAgentIds = new int[INITIAL_CAPACITY];
+
+    private final StringDictionary paths = new StringDictionary();
+    private final StringDictionary referers = new StringDictionary();
+    private final StringDictionary userAgents = new StringDictionary();
+
+    // Редкие значения, которые не ложатся в основные колонки (IPv6, нестандартные методы):
+    // номер в словаре или NONE. Колонка заводится при первом таком значении, до этого null
+    private int[] otherIpIds;
+    private int[] otherMethodIds;
+    private final StringDictionary otherIps = new StringDictionary();
+    private final StringDictionary otherMethods = new StringDictionary();
+
+    @Override
+    public void accept(LogEntry entry) {
+        add(entry);
+    }
+
+    public int add(LogEntry entry) {
+        ensureCapacity(size + 1);
+        int row = size;
+
+        long ip = IpAddresses.parseIpv4(entry.getIpAddress());
+        if (ip == IpAddresses.INVALID) {
+            otherIpIds = otherColumn(otherIpIds);
+            otherIpIds[row] = otherIps.idOf(entry.getIpAddress());
+        } else {
+            ipv4[row] = (int) ip;
+            if (otherIpIds != null) {
+                otherIpIds[row] = NONE;
+            }
+        }
+        HttpMethod method = HttpMethod.of(entry.getMethod());
+        if (method == HttpMethod.OTHER) {
+            otherMethodIds = otherColumn(otherMethodIds);
+            otherMethodIds[row] = otherMethods.idOf(entry.getMethod());
+        } else if (otherMethodIds != null) {
+            otherMethodIds[row] = NONE;
+        }
+
+        epochSeconds[row] = entry.getEpochSecond();
+        statuses[row] = (short) entry.getResponseCode();
+        bytesSent[row] = entry.getBytesSent();
+        methods[row] = (byte) method.ordinal();
+        pathIds[row] = paths.idOf(entry.getPath());
+        refererIds[row] = referers.idOf(entry.getReferer());
+        userAgentIds[row] = userAgents.idOf(entry.getUserAgent());
+
+        size++;
+        return row;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Прямой доступ к колонкам для быстрых проходов без LogEntry
+    public long getEpochSecond(int row) { return epochSeconds[check(row)]; }
+    public int getResponseCode(int row) { return statuses[check(row)]; }
+    public long getBytesSent(int row) { return bytesSent[check(row)]; }
+    public HttpMethod getHttpMethod(int row) { return HttpMethod.byOrdinal(methods[check(row)]); }
+    public int getPathId(int row) { return pathIds[check(row)]; }
+    public int getRefererId(int row) { return refererIds[check(row)]; }
+    public int getUserAgentId(int row) { return userAgentIds[check(row)]; }
+
+    public StringDictionary getPaths() { return paths; }
+    public StringDictionary getReferers() { return referers; }
+    public StringDictionary getUserAgents() { return userAgents; }
+
+    // Новый курсор, стоящий на строке row
+    public Cursor get(int row) {
+        Cursor cursor = new Cursor();
+        cursor.moveTo(row);
+        return cursor;
+    }
+
+    // Обход всех записей одним курсором; потребитель не должен сохранять полученный объект
+    public void forEach(Consumer<? super LogEntry> consumer) {
+        Cursor cursor = new Cursor();
+        for (int row = 0; row < size; row++) {
+            cursor.moveTo(row);
+            consumer.accept(cursor);
+        }
+    }
+
+    public void trimToSize() {
+        resize(size);
+    }
+
+    private int check(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Строка " + row + " вне диапазона 0.." + (size - 1));
+        }
+        return row;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > epochSeconds.length) {
+            resize(Math.max(required, epochSeconds.length + (epochSeconds.length >> 1)));
+        }
+    }
+
+    // Колонка редких значений емкостью как у остальных; для уже добавленных строк - NONE
+    private int[] otherColumn(int[] column) {
+        if (column != null) {
+            return column;
+        }
+        int[] created = new int[epochSeconds.length];
+        Arrays.fill(created, NONE);
+        return created;
+    }
+
+    private void resize(int capacity) {
+        if (otherIpIds != null) {
+            otherIpIds = Arrays.copyOf(otherIpIds, capacity);
+        }
+        if (otherMethodIds != null) {
+            otherMethodIds = Arrays.copyOf(otherMethodIds, capacity);
+        }
+        ipv4 = Arrays.copyOf(ipv4, capacity);
+        epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        bytesSent = Arrays.copyOf(bytesSent, capacity);
+        methods = Arrays.copyOf(methods, capacity);
+        pathIds = Arrays.copyOf(pathIds, capacity);
+        refererIds = Arrays.copyOf(refererIds, capacity);
+        userAgentIds = Arrays.copyOf(userAgentIds, capacity);
+    }
+
+    // Представление строки хранилища в виде LogEntry; moveTo переставляет его на другую строку
+    public final class Cursor extends LogEntry {
+
+        private int row = -1;
+        private LocalDateTime timestamp;
+        // Последний отформатированный IPv4: подряд идущие строки часто от одного клиента
+        private int formattedIpv4;
+        private String formattedIp;
+
+        public Cursor moveTo(int row) {
+            this.row = check(row);
+            this.timestamp = null;
+            return this;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        @Override
+        public String getIpAddress() {
+            if (otherIpIds != null && otherIpIds[row] != NONE) {
+                return otherIps.valueOf(otherIpIds[row]);
+            }
+            if (formattedIp == null || formattedIpv4 != ipv4[row]) {
+                formattedIpv4 = ipv4[row];
+                formattedIp = IpAddresses.formatIpv4(formattedIpv4);
+            }
+            return formattedIp;
+        }
+
+        @Override
+        public LocalDateTime getTimestamp() {
+            if (timestamp == null) {
+                timestamp = LocalDateTime.ofEpochSecond(epochSeconds[row], 0, ZoneOffset.UTC);
+            }
+            return timestamp;
+        }
+
+        @Override
+        public long getEpochSecond() { return epochSeconds[row]; }
+
+        @Override
+        public String getMethod() {
+            HttpMethod method = HttpMethod.byOrdinal(methods[row]);
+            return method == HttpMethod.OTHER ? otherMethods.valueOf(otherMethodIds[row]) : method.name();
+        }
+
+        @Override
+        public String getPath() { return paths.valueOf(pathIds[row]); }
+
+        @Override
+        public int getResponseCode() { return statuses[row]; }
+
+        @Override
+        public long getBytesSent() { return bytesSent[row]; }
+
+        @Override
+        public String getReferer() { return referers.valueOf(refererIds[row]); }
+
+        @Override
+        public String getUserAgent() { return userAgents.valueOf(userAgentIds[row]); }
+    }
+}
@@ -0,0 +1,133 @@
+package service.useragent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+// Автомат Ахо-Корасик: все шаблоны ищутся за один проход по строке без учета регистра.
+// Переходы сведены в таблицу состояний по ASCII, так что на символ приходится одно
+// обращение к массиву. Шаблоны - ASCII в нижнем регистре; символ вне ASCII не входит
+// ни в один шаблон и возвращает автомат в начало. Неизменяем и потокобезопасен.
+public final class MultiPatternMatcher {
+
+    private static final int ALPHABET = 128;
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final int patternCount;
+    // transitions[state * ALPHABET + c] - следующее состояние
+    private final int[] transitions;
+    // Номера шаблонов, которые заканчиваются в состоянии, включая суффиксы по ссылкам неудач
+    private final int[][] outputs;
+
+    public MultiPatternMatcher(List<String> patterns) {
+        this.patternCount = patterns.size();
+        List<int[]> trie = new ArrayList<>();
+        List<int[]> ends = new ArrayList<>();
+        trie.add(newState());
+        ends.add(NO_OUTPUT);
+
+        for (int id = 0; id < patterns.size(); id++) {
+            String pattern = patterns.get(id);
+            if (pattern.isEmpty()) {
+                throw new IllegalArgumentException("Пустой шаблон №" + id);
+            }
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c >= ALPHABET || (c >= 'A' && c <= 'Z')) {
+                    throw new IllegalArgumentException("Шаблон должен быть ASCII в нижнем регистре: " + pattern);
+                }
+                int next = trie.get(state)[c];
+                if (next < 0) {
+                    next = trie.size();
+                    trie.add(newState());
+                    ends.add(NO_OUTPUT);
+                    trie.get(state)[c] = next;
+                }
+                state = next;
+            }
+            ends.set(state, append(ends.get(state), id));
+        }
+
+        // Обход в ширину: ссылки неудач и недостающие переходы берутся у состояния по ссылке
+        int states = trie.size();
+        int[] failure = new int[states];
+        this.transitions = new int[states * ALPHABET];
+        this.outputs = new int[states][];
+        Queue<Integer> queue = new ArrayDeque<>();
+        outputs[0] = ends.get(0);
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = trie.get(0)[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = next;
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = merge(ends.get(state), outputs[failure[state]]);
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = trie.get(state)[c];
+                if (next < 0) {
+                    transitions[state * ALPHABET + c] = transitions[failure[state] * ALPHABET + c];
+                } else {
+                    transitions[state * ALPHABET + c] = next;
+                    failure[next] = transitions[failure[state] * ALPHABET + c];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    // Отмечает в matched (длиной не меньше числа шаблонов) все шаблоны, найденные в text
+    public void match(CharSequence text, boolean[] matched) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= ALPHABET) {
+                state = 0;
+                continue;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            state = transitions[state * ALPHABET + c];
+            for (int id : outputs[state]) {
+                matched[id] = true;
+            }
+        }
+    }
+
+    private static int[] newState() {
+        int[] next = new int[ALPHABET];
+        Arrays.fill(next, -1);
+        return next;
+    }
+
+    private static int[] append(int[] ids, int id) {
+        int[] result = Arrays.copyOf(ids, ids.length + 1);
+        result[ids.length] = id;
+        return result;
+    }
+
+    private static int[] merge(int[] own, int[] inherited) {
+        if (inherited.length == 0) {
+            return own;
+        }
+        if (own.length == 0) {
+            return inherited;
+        }
+        int[] result = Arrays.copyOf(own, own.length + inherited.length);
+        System.arraycopy(inherited, 0, result, own.length, inherited.length);
+        return result;
+    }
+}
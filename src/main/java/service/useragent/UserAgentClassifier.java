@@ -0,0 +1,186 @@
+package service.useragent;
+
+import model.Browser;
+import model.Device;
+import model.OperatingSystem;
+import model.UserAgentInfo;
+import service.LruCache;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Классификация user agent по таблице правил: браузер, ОС, мобильное устройство, бот.
+// Все шаблоны таблицы ищутся одним проходом MultiPatternMatcher, затем в каждой категории
+// побеждает первое сработавшее правило. Порядок правил и задает приоритет: Edge, Opera
+// и Яндекс.Браузер пишут в user agent и "Chrome/", Chrome пишет "Safari/", а Android -
+// "Linux", поэтому более частные правила стоят раньше общих.
+// Результаты кэшируются по исходной строке в LruCache ограниченного размера.
+public final class UserAgentClassifier {
+
+    public static final int DEFAULT_CACHE_SIZE = 1 << 14;
+    public static final UserAgentClassifier DEFAULT = new UserAgentClassifier(DEFAULT_CACHE_SIZE);
+
+    // Имя для ботов, которых нет в таблице поименно
+    public static final String OTHER_BOTS = "Other bots";
+
+    private static final Rule[] RULES = {
+            // Боты: сначала известные по имени, в конце общие признаки
+            bot("googlebot", "Googlebot"),
+            bot("yandexbot", "YandexBot"),
+            bot("yandex.com/bots", "YandexBot"),
+            bot("bingbot", "Bingbot"),
+            bot("baiduspider", "Baiduspider"),
+            bot("duckduckbot", "DuckDuckBot"),
+            bot("slurp", "Yahoo! Slurp"),
+            bot("applebot", "Applebot"),
+            bot("petalbot", "PetalBot"),
+            bot("semrushbot", "SemrushBot"),
+            bot("ahrefsbot", "AhrefsBot"),
+            bot("mj12bot", "MJ12bot"),
+            bot("dotbot", "DotBot"),
+            bot("facebookexternalhit", "Facebook"),
+            bot("twitterbot", "Twitterbot"),
+            bot("telegrambot", "TelegramBot"),
+            bot("curl/", "curl"),
+            bot("wget/", "Wget"),
+            bot("python-requests/", "python-requests"),
+            bot("go-http-client/", "Go http client"),
+            // "bot" только как конец имени продукта: голая подстрока ловит и телефоны
+            // вроде "CUBOT P30". "+http" - ссылка на страницу бота, как принято у краулеров
+            bot("bot/", OTHER_BOTS),
+            bot("bot;", OTHER_BOTS),
+            bot("bot)", OTHER_BOTS),
+            bot("bot-", OTHER_BOTS),
+            bot("+http", OTHER_BOTS),
+            bot("crawl", OTHER_BOTS),
+            bot("spider", OTHER_BOTS),
+
+            // Браузеры: производные от Chromium раньше Chrome, Chrome раньше Safari
+            browser("edg/", Browser.EDGE),
+            browser("edge/", Browser.EDGE),
+            browser("edga/", Browser.EDGE),
+            browser("edgios/", Browser.EDGE),
+            browser("opr/", Browser.OPERA),
+            browser("opera", Browser.OPERA),
+            browser("opios/", Browser.OPERA),
+            browser("yabrowser/", Browser.YANDEX),
+            browser("firefox/", Browser.FIREFOX),
+            browser("fxios/", Browser.FIREFOX),
+            browser("chrome/", Browser.CHROME),
+            browser("crios/", Browser.CHROME),
+            browser("chromium/", Browser.CHROME),
+            browser("safari/", Browser.SAFARI),
+
+            // ОС: Android пишет Linux, iOS пишет "like Mac OS X"
+            os("android", OperatingSystem.ANDROID),
+            os("iphone", OperatingSystem.IOS),
+            os("ipad", OperatingSystem.IOS),
+            os("ipod", OperatingSystem.IOS),
+            os("cros ", OperatingSystem.CHROME_OS),
+            os("windows", OperatingSystem.WINDOWS),
+            os("macintosh", OperatingSystem.MAC_OS),
+            os("mac os x", OperatingSystem.MAC_OS),
+            os("linux", OperatingSystem.LINUX),
+
+            // Мобильные устройства
+            mobile("mobile"),
+            mobile("android"),
+            mobile("iphone"),
+            mobile("ipad"),
+            mobile("ipod"),
+            mobile("windows phone"),
+            mobile("opera mini")
+    };
+
+    private static final MultiPatternMatcher MATCHER;
+
+    static {
+        // Один шаблон может встречаться в нескольких правилах; в автомат он попадает один раз
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (Rule rule : RULES) {
+            rule.patternId = ids.computeIfAbsent(rule.pattern, pattern -> ids.size());
+        }
+        MATCHER = new MultiPatternMatcher(new ArrayList<>(ids.keySet()));
+    }
+
+    private final LruCache<String, UserAgentInfo> cache;
+
+    public UserAgentClassifier(int cacheSize) {
+        this.cache = new LruCache<>(cacheSize);
+    }
+
+    public UserAgentInfo classify(String userAgent) {
+        UserAgentInfo info = cache.get(userAgent);
+        if (info == null) {
+            info = classifyUncached(userAgent);
+            cache.put(userAgent, info);
+        }
+        return info;
+    }
+
+    // Без кэша - для замеров и разовых проверок
+    public static UserAgentInfo classifyUncached(CharSequence userAgent) {
+        boolean[] matched = new boolean[MATCHER.getPatternCount()];
+        MATCHER.match(userAgent, matched);
+
+        String botName = null;
+        Browser browser = null;
+        OperatingSystem os = null;
+        boolean mobile = false;
+        for (Rule rule : RULES) {
+            if (!matched[rule.patternId]) {
+                continue;
+            }
+            switch (rule.kind) {
+                case BOT:
+                    if (botName == null) botName = (String) rule.value;
+                    break;
+                case BROWSER:
+                    if (browser == null) browser = (Browser) rule.value;
+                    break;
+                case OS:
+                    if (os == null) os = (OperatingSystem) rule.value;
+                    break;
+                default:
+                    mobile = true;
+                    break;
+            }
+        }
+
+        Device device = botName != null ? Device.BOT : mobile ? Device.MOBILE : Device.DESKTOP;
+        return new UserAgentInfo(browser != null ? browser : Browser.OTHER,
+                os != null ? os : OperatingSystem.OTHER, device, botName);
+    }
+
+    private static Rule bot(String pattern, String name) {
+        return new Rule(Kind.BOT, pattern, name);
+    }
+
+    private static Rule browser(String pattern, Browser browser) {
+        return new Rule(Kind.BROWSER, pattern, browser);
+    }
+
+    private static Rule os(String pattern, OperatingSystem os) {
+        return new Rule(Kind.OS, pattern, os);
+    }
+
+    private static Rule mobile(String pattern) {
+        return new Rule(Kind.MOBILE, pattern, Boolean.TRUE);
+    }
+
+    private enum Kind { BOT, BROWSER, OS, MOBILE }
+
+    private static final class Rule {
+        final Kind kind;
+        final String pattern;
+        final Object value;
+        int patternId;
+
+        Rule(Kind kind, String pattern, Object value) {
+            this.kind = kind;
+            this.pattern = pattern;
+            this.value = value;
+        }
+    }
+}